@@ -0,0 +1,26 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate & the allocated bytes per operation<br>
+ * ({@code gc.alloc.rate.norm}) to the score of each benchmark.
+ */
+public class BenchmarksRunner {
+    /**
+     * @param args Optional regular expressions of the benchmarks to run (e.g. {@code PathsBenchmark.bfs}), all of them by default.
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+
+        if (args.length == 0)
+            options.include(".*Benchmark.*");
+        for (String benchmark : args)
+            options.include(benchmark);
+
+        new Runner(options.addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import clientserver.MatrixService;
+import components.Matrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * A burst of identical submarines queries, which arrive together before any of them is cached.<br>
+ * With a shared {@link MatrixService} the queries are coalesced into a single computation,<br>
+ * and with a service for each query every one of them is computed - the difference is the saving of the coalescing.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class CoalescingBenchmark {
+    @Param({"RANDOM", "ISLANDS"})
+    private Grids.Shape shape;
+
+    @Param("1024")
+    private int size;
+
+    @Param({"8", "32"})
+    private int burst;
+
+    private Matrix matrix;
+    private ExecutorService clients;
+    private MatrixService sharedService;
+    private MatrixService[] services;
+
+    @Setup
+    public void setUp() {
+        this.matrix = Matrix.of(Grids.generate(shape, size, size, 0.5, 42));
+        this.clients = Executors.newFixedThreadPool(burst);
+    }
+
+    /**
+     * New services for each burst, so all the queries miss the result cache.
+     */
+    @Setup(Level.Invocation)
+    public void coldServices() {
+        this.sharedService = new MatrixService();
+        this.services = new MatrixService[burst];
+
+        for (int i = 0; i < burst; i++)
+            services[i] = new MatrixService();
+    }
+
+    @TearDown
+    public void tearDown() {
+        clients.shutdown();
+    }
+
+    @Benchmark
+    public int coalescedBurst() throws Exception {
+        return runBurst(i -> sharedService);
+    }
+
+    @Benchmark
+    public int separateBurst() throws Exception {
+        return runBurst(i -> services[i]);
+    }
+
+    private int runBurst(IntFunction<MatrixService> serviceOf) throws Exception {
+        @SuppressWarnings("unchecked")
+        Future<Integer>[] results = new Future[burst];
+
+        for (int i = 0; i < burst; i++) {
+            MatrixService service = serviceOf.apply(i);
+            results[i] = clients.submit((Callable<Integer>) () -> service.countSubmarines(matrix));
+        }
+        int submarines = 0;
+
+        for (Future<Integer> result : results)
+            submarines += result.get();
+        return submarines;
+    }
+}
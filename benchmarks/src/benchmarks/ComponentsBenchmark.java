@@ -0,0 +1,116 @@
+package benchmarks;
+
+import algorithms.ComponentLabeling;
+import algorithms.ComputePool;
+import algorithms.ConnectedComponentsLabeler;
+import algorithms.SubmarineValidator;
+import algorithms.ThreadedDFS;
+import components.Index;
+import components.Matrix;
+import components.SummedAreaTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connected components & the submarines of a matrix.<br>
+ * {@link ThreadedDFS#stronglyConnectedComponents(Matrix)} builds a set of {@link Index} objects for each component,<br>
+ * while the labelers return flat labels - the GC profiler shows the difference in the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ComponentsBenchmark {
+    @Param({"RANDOM", "OPEN_FIELD", "MAZE", "ISLANDS"})
+    private Grids.Shape shape;
+
+    @Param({"256", "2048"})
+    private int size;
+
+    @Param("0.5")
+    private double density;
+
+    private Matrix matrix;
+    private ComponentLabeling labeling;
+    private List<HashSet<Index>> connectedComponents;
+    private int[][] rectangles;
+
+    @Setup
+    public void setUp() {
+        this.matrix = Matrix.of(Grids.generate(shape, size, size, density, 42));
+        this.labeling = ThreadedDFS.labelComponents(matrix);
+        this.connectedComponents = labeling.toConnectedComponents();
+
+        //random windows for the summed-area table queries
+        Random random = new Random(7);
+        this.rectangles = new int[1024][];
+
+        for (int i = 0; i < rectangles.length; i++) {
+            int fromRow = random.nextInt(size);
+            int fromColumn = random.nextInt(size);
+            rectangles[i] = new int[]{fromRow, fromColumn, fromRow + random.nextInt(size - fromRow),
+                    fromColumn + random.nextInt(size - fromColumn)};
+        }
+    }
+
+    @Benchmark
+    public List<HashSet<Index>> stronglyConnectedComponents() {
+        return new ThreadedDFS<Index>().stronglyConnectedComponents(matrix);
+    }
+
+    @Benchmark
+    public ComponentLabeling labelSequential() {
+        return new ConnectedComponentsLabeler().label(matrix);
+    }
+
+    @Benchmark
+    public ComponentLabeling labelParallel() {
+        return new ConnectedComponentsLabeler(ConnectedComponentsLabeler.DEFAULT_TILE_ROWS).label(matrix);
+    }
+
+    /**
+     * The submarines of the component sets, with a summed-area table lookup for each bounding box.<br>
+     * The table is kept with the matrix, so only its first build is measured in the warmup.
+     */
+    @Benchmark
+    public int findSubmarinesAmount() {
+        return new SubmarineValidator().findSubmarinesAmount(connectedComponents, matrix);
+    }
+
+    /**
+     * The submarines from the component statistics which the labeling gathered, without any component sets.
+     */
+    @Benchmark
+    public int countSubmarines() {
+        return new SubmarineValidator().countSubmarines(labeling);
+    }
+
+    /**
+     * The whole submarines query from scratch - labeling & counting.
+     */
+    @Benchmark
+    public int labelAndCountSubmarines() {
+        return new SubmarineValidator().countSubmarines(new ConnectedComponentsLabeler().label(matrix));
+    }
+
+    @Benchmark
+    public SummedAreaTable buildSummedAreaTable() {
+        return new SummedAreaTable(matrix, ComputePool.get());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public int countOnesInRectangles() {
+        int ones = 0;
+
+        for (int[] rectangle : rectangles)
+            ones += matrix.getSummedAreaTable(ComputePool.get()).countOnes(rectangle[0], rectangle[1], rectangle[2], rectangle[3]);
+        return ones;
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import algorithms.ThreadedBellmanFord;
+import components.Index;
+import components.Matrix;
+import components.TraversableMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The exhaustive enumeration of all the simple paths between the corners of a full grid,<br>
+ * which the lightest paths were once found by, against the lightest paths search of the same grid.<br>
+ * The amount of paths is exponential - a 4x4 grid already has almost 100,000 paths, and a 5x5 grid doesn't fit in the heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class EnumerationBenchmark {
+    @Param({"2", "3", "4"})
+    private int size;
+
+    private TraversableMatrix graph;
+    private int destination;
+
+    @Setup
+    public void setUp() {
+        this.graph = new TraversableMatrix(new Matrix(Grids.generate(Grids.Shape.RANDOM, size, size, 1, 42)));
+        this.destination = size * size - 1;
+    }
+
+    @Benchmark
+    public List<int[]> enumerateAllPaths() {
+        return new ThreadedBellmanFord<Index>().getAllPaths(graph, 0, destination);
+    }
+
+    @Benchmark
+    public List<int[]> lightestPath() {
+        return new ThreadedBellmanFord<Index>().getLightestPath(graph, 0, destination);
+    }
+}
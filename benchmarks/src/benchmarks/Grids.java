@@ -0,0 +1,176 @@
+package benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * Seeded generators of the benchmark grids, so every fork & every run measures the same matrices.<br>
+ * The grids are binary (1 is a passable cell), and {@link #weights} turns a grid into node weights of the same shape.
+ */
+public final class Grids {
+    /**
+     * The shapes of the generated grids.
+     */
+    public enum Shape {
+        /**
+         * Each cell is 1 with the given density.
+         */
+        RANDOM,
+        /**
+         * All the cells are 1, apart from a few scattered obstacles - the worst case for the amount of paths.
+         */
+        OPEN_FIELD,
+        /**
+         * A perfect maze of 1 corridors between 0 walls - a single long path between any two cells.
+         */
+        MAZE,
+        /**
+         * Many small rectangles & blobs of 1 in a sea of 0 - the worst case for the amount of components.
+         */
+        ISLANDS
+    }
+
+    //the obstacles density of an open field
+    private static final double OPEN_FIELD_OBSTACLES = 0.02;
+    private static final int MAX_ISLAND_SIDE = 4;
+
+    private Grids() {
+    }
+
+    /**
+     * @param shape   The shape of the grid.
+     * @param rows    Amount of rows.
+     * @param columns Amount of columns.
+     * @param density The density of the ones of a {@link Shape#RANDOM} grid, and of the islands of a {@link Shape#ISLANDS} grid.
+     * @param seed    The seed of the generator.
+     * @return The generated grid.
+     */
+    public static int[][] generate(Shape shape, int rows, int columns, double density, long seed) {
+        Random random = new Random(seed);
+
+        return switch (shape) {
+            case RANDOM -> random(rows, columns, density, random);
+            case OPEN_FIELD -> openField(rows, columns, random);
+            case MAZE -> maze(rows, columns, random);
+            case ISLANDS -> islands(rows, columns, density, random);
+        };
+    }
+
+    /**
+     * Weighs the cells of a binary grid - every cell can be passed through a weighted path,<br>
+     * but the 0 cells cost about 100 times more than the 1 cells, so the lightest paths follow the shape of the grid.
+     *
+     * @param grid The binary grid.
+     * @param seed The seed of the generator.
+     * @return A grid of positive node weights - between 1 & 9 for the 1 cells, and between 100 & 999 for the 0 cells.
+     */
+    public static int[][] weights(int[][] grid, long seed) {
+        Random random = new Random(seed);
+        int[][] weights = new int[grid.length][];
+
+        for (int row = 0; row < grid.length; row++) {
+            weights[row] = new int[grid[row].length];
+
+            for (int column = 0; column < grid[row].length; column++)
+                weights[row][column] = grid[row][column] == 1 ? 1 + random.nextInt(9) : 100 + random.nextInt(900);
+        }
+        return weights;
+    }
+
+    private static int[][] random(int rows, int columns, double density, Random random) {
+        int[][] grid = new int[rows][columns];
+
+        for (int[] row : grid) {
+            for (int column = 0; column < columns; column++)
+                row[column] = random.nextDouble() < density ? 1 : 0;
+        }
+        return grid;
+    }
+
+    private static int[][] openField(int rows, int columns, Random random) {
+        int[][] grid = random(rows, columns, 1 - OPEN_FIELD_OBSTACLES, random);
+
+        //the corners are the sources & destinations of the paths benchmarks
+        grid[0][0] = grid[rows - 1][columns - 1] = 1;
+        return grid;
+    }
+
+    /**
+     * Carves a maze with a randomized depth first search over the cells of even rows & columns.<br>
+     * The walls between two carved cells are opened, so the corridors are 1 cell wide.
+     */
+    private static int[][] maze(int rows, int columns, Random random) {
+        int[][] grid = new int[rows][columns];
+        ArrayDeque<int[]> stack = new ArrayDeque<>();
+        int[][] directions = {{0, 2}, {2, 0}, {0, -2}, {-2, 0}};
+
+        grid[0][0] = 1;
+        stack.push(new int[]{0, 0});
+
+        while (!stack.isEmpty()) {
+            int[] cell = stack.peek();
+            int[] next = null;
+            int candidates = 0;
+
+            //picking a random unvisited neighbor, by reservoir sampling
+            for (int[] direction : directions) {
+                int row = cell[0] + direction[0];
+                int column = cell[1] + direction[1];
+
+                if (row >= 0 && row < rows && column >= 0 && column < columns && grid[row][column] == 0 &&
+                        random.nextInt(++candidates) == 0)
+                    next = new int[]{row, column};
+            }
+            if (next == null) {
+                stack.pop();
+                continue;
+            }
+            grid[(cell[0] + next[0]) / 2][(cell[1] + next[1]) / 2] = 1;
+            grid[next[0]][next[1]] = 1;
+            stack.push(next);
+        }
+        //connecting the last corner, when the dimensions are even
+        grid[rows - 1][columns - 1] = 1;
+        if (rows > 1)
+            grid[rows - 2][columns - 1] = 1;
+        return grid;
+    }
+
+    /**
+     * Drops islands of up to {@value #MAX_ISLAND_SIDE}x{@value #MAX_ISLAND_SIDE} cells on free spots,<br>
+     * keeping a sea cell around each island, so no two islands touch (diagonally either).<br>
+     * Half of the islands are full rectangles (valid submarines), and half have a random cell removed.
+     */
+    private static int[][] islands(int rows, int columns, double density, Random random) {
+        int[][] grid = new int[rows][columns];
+        long islandsCount = (long) (rows * (long) columns * density / (MAX_ISLAND_SIDE * MAX_ISLAND_SIDE));
+
+        for (long island = 0; island < islandsCount; island++) {
+            int height = 1 + random.nextInt(MAX_ISLAND_SIDE);
+            int width = 1 + random.nextInt(MAX_ISLAND_SIDE);
+            int top = random.nextInt(rows);
+            int left = random.nextInt(columns);
+
+            if (top + height > rows || left + width > columns || !isSea(grid, top - 1, left - 1, top + height, left + width))
+                continue;
+
+            for (int row = top; row < top + height; row++) {
+                for (int column = left; column < left + width; column++)
+                    grid[row][column] = 1;
+            }
+            if (random.nextBoolean() && height * width > 2)
+                grid[top + random.nextInt(height)][left + random.nextInt(width)] = 0;
+        }
+        return grid;
+    }
+
+    private static boolean isSea(int[][] grid, int fromRow, int fromColumn, int toRow, int toColumn) {
+        for (int row = Math.max(0, fromRow); row <= Math.min(grid.length - 1, toRow); row++) {
+            for (int column = Math.max(0, fromColumn); column <= Math.min(grid[row].length - 1, toColumn); column++) {
+                if (grid[row][column] != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+}
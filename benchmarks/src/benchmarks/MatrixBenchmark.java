@@ -0,0 +1,118 @@
+package benchmarks;
+
+import components.BinaryMatrix;
+import components.Index;
+import components.Matrix;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The neighbors lookups & the rows scans of {@link Matrix}.<br>
+ * The rows scans run twice - with the vector row kernels, and in a fork which disables them,<br>
+ * so the two scores of each scan show the speedup of the SIMD kernels on wide rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class MatrixBenchmark {
+    @Param({"RANDOM", "OPEN_FIELD", "MAZE", "ISLANDS"})
+    private Grids.Shape shape;
+
+    @Param({"256", "2048"})
+    private int size;
+
+    @Param("0.5")
+    private double density;
+
+    private int[][] grid;
+    private Matrix matrix;
+
+    @Setup
+    public void setUp() {
+        this.grid = Grids.generate(shape, size, size, density, 42);
+        this.matrix = new Matrix(grid);
+    }
+
+    /**
+     * The neighbors of every cell, as a new collection of new {@link Index} objects each time.
+     */
+    @Benchmark
+    public void getNeighbors(Blackhole blackhole) {
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++)
+                blackhole.consume(matrix.getNeighbors(new Index(row, column)));
+        }
+    }
+
+    /**
+     * The neighbors of every cell, without allocations.
+     */
+    @Benchmark
+    public void forEachNeighbor(Blackhole blackhole) {
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++)
+                matrix.forEachNeighbor(row, column, (neighborRow, neighborColumn) -> blackhole.consume(neighborColumn));
+        }
+    }
+
+    @Benchmark
+    public Object getIndicesOfOnes() {
+        return matrix.getIndicesOfOnes();
+    }
+
+    @Benchmark
+    public void forEachOne(Blackhole blackhole) {
+        matrix.forEachOne((row, column) -> blackhole.consume(column));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Dmatrix.vector.enabled=false"})
+    public void forEachOneScalar(Blackhole blackhole) {
+        matrix.forEachOne((row, column) -> blackhole.consume(column));
+    }
+
+    @Benchmark
+    public int countOnes() {
+        return matrix.countOnes();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Dmatrix.vector.enabled=false"})
+    public int countOnesScalar() {
+        return matrix.countOnes();
+    }
+
+    @Benchmark
+    public Matrix toBinaryMatrix() {
+        return Matrix.of(grid);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Dmatrix.vector.enabled=false"})
+    public Matrix toBinaryMatrixScalar() {
+        return Matrix.of(grid);
+    }
+
+    /**
+     * The same scan over a bit-packed matrix, which is done a word at a time regardless of the kernels.
+     */
+    @Benchmark
+    public void forEachOneBinary(Blackhole blackhole, BinaryState state) {
+        state.binaryMatrix.forEachOne((row, column) -> blackhole.consume(column));
+    }
+
+    @State(Scope.Benchmark)
+    public static class BinaryState {
+        private BinaryMatrix binaryMatrix;
+
+        @Setup
+        public void setUp(MatrixBenchmark benchmark) {
+            this.binaryMatrix = new BinaryMatrix(benchmark.grid);
+        }
+    }
+}
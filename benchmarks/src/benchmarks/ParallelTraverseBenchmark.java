@@ -0,0 +1,58 @@
+package benchmarks;
+
+import algorithms.ComponentLabeling;
+import algorithms.ConnectedComponentsLabeler;
+import algorithms.ThreadedDFS;
+import components.Index;
+import components.Matrix;
+import components.TraversableMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The legacy {@link ThreadedDFS#parallelTraverse} - a task for each root, and a hash set for each component -<br>
+ * against the labelers on the same grids.<br>
+ * The legacy traversal revisits the cells of a component from every root, so it's measured on small grids only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ParallelTraverseBenchmark {
+    @Param({"RANDOM", "ISLANDS"})
+    private Grids.Shape shape;
+
+    @Param({"16", "32", "64"})
+    private int size;
+
+    private Matrix matrix;
+    private TraversableMatrix graph;
+
+    @Setup
+    public void setUp() {
+        this.matrix = new Matrix(Grids.generate(shape, size, size, 0.5, 42));
+        this.graph = new TraversableMatrix(matrix);
+    }
+
+    @Benchmark
+    public HashSet<HashSet<Index>> parallelTraverse() {
+        return new ThreadedDFS<Index>().parallelTraverse(graph, matrix.getIndicesOfOnes());
+    }
+
+    @Benchmark
+    public ComponentLabeling labelSequential() {
+        return new ConnectedComponentsLabeler().label(matrix);
+    }
+
+    /**
+     * The parallel labeler, with tiles small enough to fork even on these grids.
+     */
+    @Benchmark
+    public ComponentLabeling labelParallel() {
+        return new ConnectedComponentsLabeler(4).label(matrix);
+    }
+}
@@ -0,0 +1,171 @@
+package benchmarks;
+
+import algorithms.*;
+import components.Index;
+import components.Matrix;
+import components.TraversableMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shortest & lightest paths searches, from the top left corner of a grid to its bottom right corner.<br>
+ * The amount of shortest paths can be exponential in the grid size, so the full paths are taken only up to<br>
+ * {@value #MAX_PATHS} paths. The exhaustive enumeration of all the simple paths is in {@link EnumerationBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class PathsBenchmark {
+    private static final int MAX_PATHS = 1000;
+    //a deadline which never passes, so the searches only pay for reading the clock
+    private static final long UNREACHED_DEADLINE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"RANDOM", "OPEN_FIELD", "MAZE"})
+    private Grids.Shape shape;
+
+    @Param({"64", "512"})
+    private int size;
+
+    @Param("0.7")
+    private double density;
+
+    private TraversableMatrix graph;
+    private TraversableMatrix weightedGraph;
+    private int source;
+    private int destination;
+
+    @Setup
+    public void setUp() {
+        int[][] grid = Grids.generate(shape, size, size, density, 42);
+
+        //the corners are always passable, so the searches have endpoints
+        grid[0][0] = grid[size - 1][size - 1] = 1;
+        this.graph = new TraversableMatrix(Matrix.of(grid));
+        this.weightedGraph = new TraversableMatrix(new Matrix(Grids.weights(grid, 42)));
+        this.source = graph.toNodeId(new Index(0, 0));
+        this.destination = graph.toNodeId(new Index(size - 1, size - 1));
+    }
+
+    /**
+     * The expanded nodes of the directed searches, which are summed over each iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SearchCounters {
+        public long searches;
+        public long expandedNodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.searches = 0;
+            this.expandedNodes = 0;
+        }
+
+        private PredecessorDag count(PointToPointSearch search, PredecessorDag dag) {
+            searches++;
+            expandedNodes += search.getExpandedNodes();
+            return dag;
+        }
+    }
+
+    @Benchmark
+    public PredecessorDag bfsShortestPathsDag() {
+        return new ThreadedBFS<Index>().getShortestPathsDag(graph, source, destination);
+    }
+
+    @Benchmark
+    public long bfsCountShortestPaths() {
+        return new ThreadedBFS<Index>().countShortestPaths(graph, source, destination);
+    }
+
+    @Benchmark
+    public int bfsShortestPaths() {
+        Iterator<int[]> paths = new ThreadedBFS<Index>().getShortestPathsIterator(graph, source, destination);
+        int pathsCount = 0;
+
+        for (; pathsCount < MAX_PATHS && paths.hasNext(); pathsCount++)
+            paths.next();
+        return pathsCount;
+    }
+
+    /**
+     * The same search with a deadline, so the cancellation checkpoints also read the clock.
+     */
+    @Benchmark
+    public PredecessorDag bfsShortestPathsDagWithDeadline() {
+        return new ThreadedBFS<Index>(CancellationToken.withTimeout(UNREACHED_DEADLINE_MILLIS))
+                .getShortestPathsDag(graph, source, destination);
+    }
+
+    @Benchmark
+    public PredecessorDag aStarShortestPathsDag(SearchCounters counters) {
+        PointToPointSearch search = new PointToPointSearch(PointToPointSearch.Algorithm.A_STAR);
+        return counters.count(search, search.getShortestPathsDag(graph, source, destination, PathMetric.UNWEIGHTED));
+    }
+
+    @Benchmark
+    public PredecessorDag bidirectionalShortestPathsDag(SearchCounters counters) {
+        PointToPointSearch search = new PointToPointSearch(PointToPointSearch.Algorithm.BIDIRECTIONAL);
+        return counters.count(search, search.getShortestPathsDag(graph, source, destination, PathMetric.UNWEIGHTED));
+    }
+
+    /**
+     * The bucket statistics of the delta-stepping searches, which are summed over each iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DeltaSteppingCounters {
+        //0 chooses the delta by the weights of the graph
+        @Param({"0", "16", "256"})
+        private int delta;
+
+        public long buckets;
+        public long phases;
+        public long relaxations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.buckets = 0;
+            this.phases = 0;
+            this.relaxations = 0;
+        }
+
+        private PredecessorDag count(DeltaSteppingLightestPaths search, PredecessorDag dag) {
+            for (DeltaSteppingLightestPaths.BucketTiming timing : search.getBucketTimings()) {
+                buckets++;
+                phases += timing.getPhases();
+                relaxations += timing.getRelaxations();
+            }
+            return dag;
+        }
+    }
+
+    @Benchmark
+    public List<int[]> bellmanFordLightestPath() {
+        return new ThreadedBellmanFord<Index>().getLightestPath(weightedGraph, source, destination);
+    }
+
+    @Benchmark
+    public PredecessorDag deltaSteppingLightestPathsDag(DeltaSteppingCounters counters) {
+        DeltaSteppingLightestPaths search = new DeltaSteppingLightestPaths(counters.delta);
+        return counters.count(search, search.getLightestPathsDag(weightedGraph, source, destination));
+    }
+
+    @Benchmark
+    public PredecessorDag aStarLightestPathsDag(SearchCounters counters) {
+        PointToPointSearch search = new PointToPointSearch(PointToPointSearch.Algorithm.A_STAR);
+        return counters.count(search, search.getShortestPathsDag(weightedGraph, source, destination, PathMetric.NODE_WEIGHTED));
+    }
+
+    @Benchmark
+    public PredecessorDag bidirectionalLightestPathsDag(SearchCounters counters) {
+        PointToPointSearch search = new PointToPointSearch(PointToPointSearch.Algorithm.BIDIRECTIONAL);
+        return counters.count(search, search.getShortestPathsDag(weightedGraph, source, destination, PathMetric.NODE_WEIGHTED));
+    }
+}
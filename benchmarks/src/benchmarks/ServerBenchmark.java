@@ -0,0 +1,174 @@
+package benchmarks;
+
+import clientserver.*;
+import components.Index;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scalability of each {@link ServerMode} over the amount of open connections.<br>
+ * Besides the connection of the measured client, the server holds idle sessions - connections which are open,<br>
+ * and block between their requests. In {@link ServerMode#THREAD_POOL} mode each of them holds a thread of the<br>
+ * 10-20 threads pool, while the other modes hold only their sockets.<br>
+ * <br>
+ * The bursts of pipelined binary requests from a single {@link AsyncMatrixClient} measure the throughput of a client<br>
+ * which is already served. The matrix is uploaded once, and the requests send its handle - so the scores are the<br>
+ * round trips of the framing, the dispatch & the threads of each mode, rather than the queries themselves.<br>
+ * The round trips of new sessions measure the latency distribution of a client which connects next to the idle<br>
+ * sessions, so the tail latency of the thread pool baseline shows once its threads are taken - a session which isn't<br>
+ * answered within {@value #SESSION_TIMEOUT_MILLIS} ms is given up, and scored at that time.<br>
+ * <br>
+ * The largest amount of connections needs about 4100 file descriptors ({@code ulimit -n}).<br>
+ * On runtimes without virtual threads, {@link ServerMode#VIRTUAL_THREADS} serves the connections on a bounded pool of<br>
+ * platform threads, so its scores there measure platform threads, and only a Java 21 fork measures virtual threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ServerBenchmark {
+    private static final int BURST = 256;
+    private static final int SESSION_TIMEOUT_MILLIS = 1000;
+    //the sessions of the timed out round trips, which wait for a thread of the pool, stay open until the server closes
+    private static final int SPARE_SESSIONS = 1024;
+
+    @Param({"SELECTOR", "VIRTUAL_THREADS", "THREAD_POOL"})
+    private ServerMode mode;
+
+    @Param("256")
+    private int size;
+
+    //all the open connections, the measured client & the idle sessions
+    @Param({"16", "256", "2048"})
+    private int connections;
+
+    private Server server;
+    private int port;
+    private AsyncMatrixClient client;
+    private final List<Socket> idleSessions = new ArrayList<>();
+    private byte[] helloFrame;
+    private long handle;
+    private Index bottomRight;
+
+    @Setup
+    public void setUp() throws Exception {
+        //no limits on the benchmark client, so the bursts are never turned away
+        port = freePort();
+        server = new Server(port, new AdmissionController(connections + SPARE_SESSIONS, 4 * BURST, 1e9, 1 << 20));
+        MatrixService matrixService = new MatrixService();
+
+        server.handleClients(new ProtocolRouter(new HandlerAdapter(() -> new MatrixHandler(matrixService)),
+                new BinaryMatrixHandler(matrixService)), mode);
+        //the measured client connects first, so it's served even when the idle sessions take all the threads of a pool
+        client = connect(port);
+        handle = client.uploadMatrix(Grids.generate(Grids.Shape.RANDOM, size, size, 0.5, 42)).get();
+        bottomRight = new Index(size - 1, size - 1);
+
+        for (int i = 1; i < connections; i++)
+            idleSessions.add(new Socket("localhost", port));
+        helloFrame = newHelloFrame();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+
+        for (Socket idleSession : idleSessions)
+            idleSession.close();
+        server.closeServer();
+    }
+
+    /**
+     * Summed-area table queries, which are O(1) after the first one.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int countOnesBurst() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[BURST];
+
+        for (int i = 0; i < BURST; i++)
+            responses[i] = client.countOnes(handle, new Index(i % size, 0), bottomRight);
+        return CompletableFuture.allOf(responses).thenApply(done -> responses.length).join();
+    }
+
+    /**
+     * Submarines queries, which are answered from the result cache after the first one.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int countSubmarinesBurst() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[BURST];
+
+        for (int i = 0; i < BURST; i++)
+            responses[i] = client.countSubmarines(handle);
+        return CompletableFuture.allOf(responses).thenApply(done -> responses.length).join();
+    }
+
+    /**
+     * A new session, which connects next to the idle sessions, sends a single request & waits for its response.
+     *
+     * @return The protocol version of the server, or -1 if the session wasn't answered in time.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public int newSessionRoundTrip() throws IOException {
+        try (Socket session = new Socket()) {
+            session.connect(new InetSocketAddress("localhost", port), SESSION_TIMEOUT_MILLIS);
+            session.setSoTimeout(SESSION_TIMEOUT_MILLIS);
+            session.getOutputStream().write(helloFrame);
+
+            return BinaryProtocol.readResponseHeader(new DataInputStream(new FrameInputStream(session.getInputStream())));
+        } catch (SocketTimeoutException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] newHelloFrame() throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        BinaryProtocol.writeRequestHeader(new DataOutputStream(request), BinaryProtocol.VERSION, BinaryProtocol.HELLO);
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(frame);
+        output.writeInt(request.size());
+        request.writeTo(output);
+        return frame.toByteArray();
+    }
+
+    /**
+     * The server accepts registered ports only, so the ephemeral ports of the system can't be used.
+     */
+    private static int freePort() throws IOException {
+        for (int port = 20000; port <= 49151; port++) {
+            try (ServerSocket ignored = new ServerSocket(port)) {
+                return port;
+            } catch (IOException e) {
+                //the port is taken, trying the next one
+            }
+        }
+        throw new IOException("No free port");
+    }
+
+    private static AsyncMatrixClient connect(int port) throws Exception {
+        //the server starts listening on its own thread
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new AsyncMatrixClient("localhost", port);
+            } catch (IOException e) {
+                if (attempt == 50)
+                    throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package algorithms;
+
+import components.IntTraversable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * This class finds all the shortest (or lightest) paths between two nodes of a primitive graph<br>
+ * using the A* algorithm.<br>
+ * Nodes are expanded by their path cost plus a heuristic estimation of the remaining cost,<br>
+ * so the search heads towards the destination instead of covering the whole graph.<br>
+ * The heuristic must be consistent: it never estimates more than the cost of a step plus the estimation after it.<br>
+ * Nodes are expanded until all of them are estimated heavier than the destination, so all the tied paths are found.<br>
+ * The search stops with a {@link SearchCancelledException} when its {@link CancellationToken} is cancelled.
+ */
+public class AStarSearch {
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final CancellationToken cancellationToken;
+    private long expandedNodes;
+
+    public AStarSearch() {
+        this(new CancellationToken());
+    }
+
+    /**
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public AStarSearch(@NotNull CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * @return Amount of nodes which were expanded by the last search.
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Runs the A* algorithm from the source until all the shortest paths to the destination are known.
+     *
+     * @param graph       The graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @param metric      The way to measure the paths.
+     * @param heuristic   Consistent estimation of the remaining cost from a node to the destination.
+     * @return {@link PredecessorDag} of the shortest paths from the source.
+     */
+    public PredecessorDag getShortestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination,
+                                              @NotNull PathMetric metric, @NotNull IntToLongFunction heuristic) {
+        PredecessorDag shortestPathsDag = new PredecessorDag(graph.getNodesAmount(), source);
+        long expanded = 0;
+
+        long[] cost = new long[graph.getNodesAmount()];
+        Arrays.fill(cost, UNREACHED);
+        cost[source] = metric.weight(graph, source);
+
+        boolean[] closed = new boolean[graph.getNodesAmount()];
+        IndexedMinHeap open = new IndexedMinHeap(graph.getNodesAmount());
+        open.push(source, cost[source] + heuristic.applyAsLong(source));
+
+        //the destination is closed, and every node left is estimated heavier than it
+        while (!open.isEmpty() && !(closed[destination] && open.peekKey() > cost[destination])) {
+            int currentNode = open.poll();
+            closed[currentNode] = true;
+            expanded++;
+            cancellationToken.checkpoint(expanded, SearchCancelledException.Phase.SEARCH, expanded, 0);
+
+            metric.forEachNext(graph, currentNode, node -> {
+                if (node == source)
+                    return;
+
+                long nodeWeight = metric.weight(graph, node);
+                long pathCost = cost[currentNode] + nodeWeight;
+
+                if (pathCost < cost[node]) {
+                    cost[node] = pathCost;
+                    shortestPathsDag.clearPredecessors(node);
+                    shortestPathsDag.addPredecessor(node, currentNode);
+                    open.push(node, pathCost + heuristic.applyAsLong(node));
+                } else if (pathCost == cost[node]) {
+                    //unlike Dijkstra, a node may be expanded before all its tied predecessors,
+                    //but only a zero weight node may get a predecessor that it precedes itself
+                    if (closed[node] && nodeWeight == 0)
+                        shortestPathsDag.markCyclic();
+                    shortestPathsDag.addPredecessor(node, currentNode);
+                }
+            });
+        }
+        this.expandedNodes = expanded;
+        return shortestPathsDag;
+    }
+}
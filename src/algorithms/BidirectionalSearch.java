@@ -0,0 +1,179 @@
+package algorithms;
+
+import components.IntTraversable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class finds all the shortest (or lightest) paths between two nodes of a primitive graph<br>
+ * by searching from both ends at once, expanding each time the side whose next node is closer.<br>
+ * The two searches meet around the middle of the paths, so each of them covers about half the distance.<br>
+ * <br>
+ * The search runs backwards over the same neighbors, so the neighbors relation must be symmetric<br>
+ * (like in {@link components.TraversableMatrix}), and every node must cost more than 0,<br>
+ * otherwise the tied paths can't be told apart by their cost.<br>
+ * The search stops with a {@link SearchCancelledException} when its {@link CancellationToken} is cancelled.
+ */
+public class BidirectionalSearch {
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final CancellationToken cancellationToken;
+    private long expandedNodes;
+
+    public BidirectionalSearch() {
+        this(new CancellationToken());
+    }
+
+    /**
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public BidirectionalSearch(@NotNull CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * @return Amount of nodes which were expanded by both sides of the last search.
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Searches from the source and from the destination until every node on the shortest paths is settled by one side.<br>
+     * The forward side measures the cost from the source to a node (without the source),<br>
+     * the backward side measures the cost from a node to the destination (without the node).
+     *
+     * @param graph       The graph, with a symmetric neighbors relation.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @param metric      The way to measure the paths.
+     * @return {@link PredecessorDag} of the shortest paths from the source.
+     */
+    public PredecessorDag getShortestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination,
+                                              @NotNull PathMetric metric) {
+        int nodesAmount = graph.getNodesAmount();
+        PredecessorDag shortestPathsDag = new PredecessorDag(nodesAmount, source);
+        this.expandedNodes = 0;
+
+        if (source == destination)
+            return shortestPathsDag;
+
+        long[] forwardCost = new long[nodesAmount];
+        long[] backwardCost = new long[nodesAmount];
+        Arrays.fill(forwardCost, UNREACHED);
+        Arrays.fill(backwardCost, UNREACHED);
+        boolean[] forwardSettled = new boolean[nodesAmount];
+        boolean[] backwardSettled = new boolean[nodesAmount];
+        IndexedMinHeap forwardOpen = new IndexedMinHeap(nodesAmount);
+        IndexedMinHeap backwardOpen = new IndexedMinHeap(nodesAmount);
+        IntStack settledNodes = new IntStack();
+
+        forwardCost[source] = 0;
+        backwardCost[destination] = 0;
+        forwardOpen.push(source, 0);
+        backwardOpen.push(destination, 0);
+
+        //the lightest cost of a path found so far (from the source, without the source)
+        long[] bestCost = {UNREACHED};
+        long iterations = 0;
+
+        while (!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+            cancellationToken.checkpoint(++iterations, SearchCancelledException.Phase.SEARCH, settledNodes.size(), 0);
+            long forwardTop = forwardOpen.peekKey();
+            long backwardTop = backwardOpen.peekKey();
+
+            //every node with a lighter cost from one of the sides is settled - no tied path is left
+            if (bestCost[0] != UNREACHED && forwardTop + backwardTop > bestCost[0])
+                break;
+
+            if (forwardTop <= backwardTop) {
+                int currentNode = forwardOpen.poll();
+                forwardSettled[currentNode] = true;
+                settledNodes.push(currentNode);
+
+                metric.forEachNext(graph, currentNode, node -> {
+                    long pathCost = forwardCost[currentNode] + checkedWeight(graph, metric, node);
+
+                    if (pathCost < forwardCost[node]) {
+                        forwardCost[node] = pathCost;
+                        forwardOpen.push(node, pathCost);
+                    }
+                    if (backwardCost[node] != UNREACHED)
+                        bestCost[0] = Math.min(bestCost[0], pathCost + backwardCost[node]);
+                });
+            } else {
+                int currentNode = backwardOpen.poll();
+                backwardSettled[currentNode] = true;
+                settledNodes.push(currentNode);
+
+                long currentWeight = checkedWeight(graph, metric, currentNode);
+
+                metric.forEachNext(graph, currentNode, node -> {
+                    long pathCost = backwardCost[currentNode] + currentWeight;
+
+                    if (pathCost < backwardCost[node]) {
+                        backwardCost[node] = pathCost;
+                        backwardOpen.push(node, pathCost);
+                    }
+                    if (forwardCost[node] != UNREACHED)
+                        bestCost[0] = Math.min(bestCost[0], forwardCost[node] + pathCost);
+                });
+            }
+        }
+        this.expandedNodes = settledNodes.size();
+
+        if (bestCost[0] != UNREACHED)
+            linkSettledNodes(graph, metric, shortestPathsDag, settledNodes, forwardSettled, forwardCost,
+                    backwardCost, bestCost[0]);
+        return shortestPathsDag;
+    }
+
+    /**
+     * Links the settled nodes of both sides into the predecessors DAG.<br>
+     * Each settled node gets its cost from the source - directly from the forward side,<br>
+     * or by subtracting its backward cost from the lightest path cost, which is exact for the nodes on lightest paths.<br>
+     * The nodes are linked by increasing cost, each to its neighbors that precede it on a lightest path from the source.
+     */
+    private void linkSettledNodes(IntTraversable<?> graph, PathMetric metric, PredecessorDag shortestPathsDag,
+                                  IntStack settledNodes, boolean[] forwardSettled, long[] forwardCost,
+                                  long[] backwardCost, long bestCost) {
+        long[] cost = new long[graph.getNodesAmount()];
+        Arrays.fill(cost, UNREACHED);
+        Integer[] order = new Integer[settledNodes.size()];
+
+        for (int i = 0; i < settledNodes.size(); i++) {
+            int node = settledNodes.get(i);
+            cost[node] = forwardSettled[node] ? forwardCost[node] : bestCost - backwardCost[node];
+            order[i] = node;
+        }
+        Arrays.sort(order, (first, second) -> Long.compare(cost[first], cost[second]));
+
+        //nodes which have a lightest path from the source
+        boolean[] linked = new boolean[graph.getNodesAmount()];
+        linked[shortestPathsDag.getSource()] = true;
+
+        for (int node : order) {
+            //a node settled by both sides is linked only once
+            if (linked[node] || cost[node] > bestCost)
+                continue;
+
+            long nodeWeight = metric.weight(graph, node);
+
+            metric.forEachNext(graph, node, neighbor -> {
+                if (linked[neighbor] && cost[neighbor] + nodeWeight == cost[node]) {
+                    shortestPathsDag.addPredecessor(node, neighbor);
+                    linked[node] = true;
+                }
+            });
+        }
+    }
+
+    private static long checkedWeight(IntTraversable<?> graph, PathMetric metric, int node) {
+        long weight = metric.weight(graph, node);
+
+        if (weight == 0)
+            throw new IllegalArgumentException("Bidirectional search can't find paths through zero weight nodes");
+        return weight;
+    }
+}
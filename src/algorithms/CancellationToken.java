@@ -0,0 +1,113 @@
+package algorithms;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A deadline & a cancellation flag of a single search, which its loops check periodically.<br>
+ * A search which finds its token cancelled (or past its deadline) stops at once<br>
+ * with a {@link SearchCancelledException}, which carries the statistics of the work it did so far.<br>
+ * The token is safe to share between the threads of a parallel search, and may be cancelled from any thread.<br>
+ * <br>
+ * The loops check the token once every {@value #CHECK_INTERVAL} iterations (see {@link #checkpoint}),<br>
+ * so reading the clock doesn't slow down their inner steps.
+ */
+public class CancellationToken {
+    //must be a power of 2
+    public static final int CHECK_INTERVAL = 1024;
+
+    private final long startNanos = System.nanoTime();
+    private final long timeoutNanos;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a token without a deadline, which stops its search only if it's cancelled.
+     */
+    public CancellationToken() {
+        this.timeoutNanos = Long.MAX_VALUE;
+    }
+
+    private CancellationToken(long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * @param timeoutMillis The time that the search may run, from now.
+     * @return A token which times out after the given time.
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("Timeout must be positive");
+
+        return new CancellationToken(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * Cancels the search, which stops at its next check of the token.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isTimedOut() {
+        return timeoutNanos != Long.MAX_VALUE && System.nanoTime() - startNanos > timeoutNanos;
+    }
+
+    /**
+     * @return true if the token was cancelled, or if its deadline passed.
+     */
+    public boolean isCancelled() {
+        return cancelled || isTimedOut();
+    }
+
+    /**
+     * @return The time left until the deadline, which is never negative, or {@link Long#MAX_VALUE} if there's no deadline.
+     */
+    public long getRemainingNanos() {
+        if (timeoutNanos == Long.MAX_VALUE)
+            return Long.MAX_VALUE;
+
+        return Math.max(0, timeoutNanos - (System.nanoTime() - startNanos));
+    }
+
+    /**
+     * @return The time since the token was created.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Checks the token once every {@value #CHECK_INTERVAL} iterations of a loop.
+     *
+     * @param iteration     The iteration counter of the loop, which grows by 1 on each iteration.
+     * @param phase         The phase of the search which runs the loop.
+     * @param expandedNodes Amount of nodes which the search expanded so far.
+     * @param foundPaths    Amount of paths which the search found so far.
+     * @throws SearchCancelledException If the token is cancelled.
+     */
+    public void checkpoint(long iteration, SearchCancelledException.Phase phase, long expandedNodes, long foundPaths) {
+        if ((iteration & (CHECK_INTERVAL - 1)) == 0)
+            throwIfCancelled(phase, expandedNodes, foundPaths);
+    }
+
+    /**
+     * @param phase         The phase of the search.
+     * @param expandedNodes Amount of nodes which the search expanded so far.
+     * @param foundPaths    Amount of paths which the search found so far.
+     * @throws SearchCancelledException If the token is cancelled.
+     */
+    public void throwIfCancelled(SearchCancelledException.Phase phase, long expandedNodes, long foundPaths) {
+        if (isCancelled())
+            throw newCancelledException(phase, expandedNodes, foundPaths);
+    }
+
+    /**
+     * @param phase         The phase of the search.
+     * @param expandedNodes Amount of nodes which the search expanded so far.
+     * @param foundPaths    Amount of paths which the search found so far.
+     * @return The exception of a search which stopped because of this token.
+     */
+    public SearchCancelledException newCancelledException(SearchCancelledException.Phase phase, long expandedNodes, long foundPaths) {
+        return new SearchCancelledException(!cancelled, phase, expandedNodes, foundPaths, getElapsedMillis());
+    }
+}
@@ -0,0 +1,147 @@
+package algorithms;
+
+import components.Index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The result of a connected components labeling of a matrix.<br>
+ * Each cell holds a label: {@link #BACKGROUND} for cells which are not part of any component,<br>
+ * or a value from 1 to {@link #getComponentsCount()} which identifies the cell's component.<br>
+ * Components are numbered by the order of their first cell in row-major order.<br>
+ * The size & the bounding box of every component are kept in {@link ComponentStats}.
+ */
+public class ComponentLabeling implements Serializable {
+    public static final int BACKGROUND = 0;
+
+    private final int rows;
+    private final int columns;
+    private final int[] labels;
+    private final int componentsCount;
+    private final ComponentStats stats;
+
+    /**
+     * Creates a labeling, and gathers its statistics from the labels.
+     *
+     * @param rows            Amount of rows in the labeled matrix.
+     * @param columns         Amount of columns in the labeled matrix.
+     * @param labels          Row-major array of labels (row * columns + column).
+     * @param componentsCount Amount of components (the highest label).
+     */
+    public ComponentLabeling(int rows, int columns, int[] labels, int componentsCount) {
+        this(rows, columns, labels, componentsCount, ComponentStats.of(labels, Math.max(1, columns), componentsCount));
+    }
+
+    /**
+     * @param rows            Amount of rows in the labeled matrix.
+     * @param columns         Amount of columns in the labeled matrix.
+     * @param labels          Row-major array of labels (row * columns + column).
+     * @param componentsCount Amount of components (the highest label).
+     * @param stats           The statistics of the components, which were gathered while labeling.
+     */
+    public ComponentLabeling(int rows, int columns, int[] labels, int componentsCount, ComponentStats stats) {
+        if (labels.length != rows * columns)
+            throw new IllegalArgumentException("Labels array doesn't match the matrix dimensions");
+
+        this.rows = rows;
+        this.columns = columns;
+        this.labels = labels;
+        this.componentsCount = componentsCount;
+        this.stats = stats;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return Row-major array of labels, indexed by (row * columns + column).
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    public int getComponentsCount() {
+        return componentsCount;
+    }
+
+    /**
+     * @return The size & the bounding box of each component, by its label.
+     */
+    public ComponentStats getStats() {
+        return stats;
+    }
+
+    /**
+     * An estimation of the heap memory that the labeling takes (object & array headers included).
+     *
+     * @return Estimated size in bytes.
+     */
+    public long getSizeInBytes() {
+        return 16 + 16 + (long) Integer.BYTES * labels.length + stats.getSizeInBytes();
+    }
+
+    public int getLabel(int row, int column) {
+        return labels[row * columns + column];
+    }
+
+    public int getLabel(Index index) {
+        return getLabel(index.getRow(), index.getColumn());
+    }
+
+    /**
+     * Converts the labels to a list of components, where each component is a set of its indices.
+     *
+     * @return List of hash sets of connected components, sorted by set size
+     */
+    public List<HashSet<Index>> toConnectedComponents() {
+        List<HashSet<Index>> connectedComponents = new ArrayList<>(componentsCount);
+
+        for (int i = 0; i < componentsCount; i++)
+            connectedComponents.add(new HashSet<>());
+
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] != BACKGROUND)
+                connectedComponents.get(labels[cell] - 1).add(new Index(cell / columns, cell % columns));
+        }
+        connectedComponents.sort(Comparator.comparing(HashSet::size));
+        return connectedComponents;
+    }
+
+    /**
+     * Converts the labels to the cells of each component, without creating an {@link Index} for each cell.<br>
+     * The components are in the same order as {@link #toConnectedComponents()}.
+     *
+     * @return Array of components, each is an ascending array of row-major cells (row * columns + column).
+     */
+    public int[][] toComponentCells() {
+        int[][] componentCells = new int[componentsCount][];
+        int[] sizes = new int[componentsCount];
+
+        for (int label : labels) {
+            if (label != BACKGROUND)
+                sizes[label - 1]++;
+        }
+        for (int i = 0; i < componentsCount; i++)
+            componentCells[i] = new int[sizes[i]];
+
+        int[] filled = new int[componentsCount];
+
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] != BACKGROUND)
+                componentCells[labels[cell] - 1][filled[labels[cell] - 1]++] = cell;
+        }
+        //stable sort, so components of the same size stay in labels order
+        Arrays.sort(componentCells, Comparator.comparingInt(cells -> cells.length));
+        return componentCells;
+    }
+}
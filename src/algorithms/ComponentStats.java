@@ -0,0 +1,154 @@
+package algorithms;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The size & the bounding box of each component of a {@link ComponentLabeling}, indexed by the component label.<br>
+ * The statistics are gathered cell by cell while the labels are given, so no component has to be built<br>
+ * to learn its shape. A component fills its bounding box exactly when its size equals the box area.
+ */
+public class ComponentStats implements Serializable {
+    private int[] sizes;
+    private int[] minRows;
+    private int[] maxRows;
+    private int[] minColumns;
+    private int[] maxColumns;
+
+    /**
+     * @param capacity The expected highest label. Higher labels grow the arrays.
+     */
+    public ComponentStats(int capacity) {
+        int length = Math.max(16, capacity + 1);
+
+        this.sizes = new int[length];
+        this.minRows = new int[length];
+        this.maxRows = new int[length];
+        this.minColumns = new int[length];
+        this.maxColumns = new int[length];
+    }
+
+    /**
+     * Gathers the statistics of every component from its labels.
+     *
+     * @param labels          Row-major array of labels (row * columns + column).
+     * @param columns         Amount of columns in the labeled matrix.
+     * @param componentsCount Amount of components (the highest label).
+     * @return The statistics.
+     */
+    public static ComponentStats of(int[] labels, int columns, int componentsCount) {
+        ComponentStats stats = new ComponentStats(componentsCount);
+
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] != ComponentLabeling.BACKGROUND)
+                stats.add(labels[cell], cell / columns, cell % columns);
+        }
+        return stats;
+    }
+
+    /**
+     * Adds a cell to a component.<br>
+     * Cells of different labels may be added concurrently only if the capacity covers them.
+     *
+     * @param label  The label of the component.
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     */
+    public void add(int label, int row, int column) {
+        if (label >= sizes.length)
+            grow(label);
+
+        if (sizes[label]++ == 0) {
+            minRows[label] = maxRows[label] = row;
+            minColumns[label] = maxColumns[label] = column;
+            return;
+        }
+        minRows[label] = Math.min(minRows[label], row);
+        maxRows[label] = Math.max(maxRows[label], row);
+        minColumns[label] = Math.min(minColumns[label], column);
+        maxColumns[label] = Math.max(maxColumns[label], column);
+    }
+
+    /**
+     * Adds the cells of a component of other statistics to a component of these statistics.
+     *
+     * @param label      The label of the component in these statistics.
+     * @param other      The other statistics.
+     * @param otherLabel The label of the component in the other statistics.
+     */
+    public void merge(int label, ComponentStats other, int otherLabel) {
+        if (other.sizes[otherLabel] == 0)
+            return;
+
+        if (label >= sizes.length)
+            grow(label);
+
+        if (sizes[label] == 0) {
+            minRows[label] = other.minRows[otherLabel];
+            maxRows[label] = other.maxRows[otherLabel];
+            minColumns[label] = other.minColumns[otherLabel];
+            maxColumns[label] = other.maxColumns[otherLabel];
+        } else {
+            minRows[label] = Math.min(minRows[label], other.minRows[otherLabel]);
+            maxRows[label] = Math.max(maxRows[label], other.maxRows[otherLabel]);
+            minColumns[label] = Math.min(minColumns[label], other.minColumns[otherLabel]);
+            maxColumns[label] = Math.max(maxColumns[label], other.maxColumns[otherLabel]);
+        }
+        sizes[label] += other.sizes[otherLabel];
+    }
+
+    private void grow(int label) {
+        int length = Math.max(label + 1, sizes.length * 2);
+
+        sizes = Arrays.copyOf(sizes, length);
+        minRows = Arrays.copyOf(minRows, length);
+        maxRows = Arrays.copyOf(maxRows, length);
+        minColumns = Arrays.copyOf(minColumns, length);
+        maxColumns = Arrays.copyOf(maxColumns, length);
+    }
+
+    public int getSize(int label) {
+        return sizes[label];
+    }
+
+    public int getMinRow(int label) {
+        return minRows[label];
+    }
+
+    public int getMaxRow(int label) {
+        return maxRows[label];
+    }
+
+    public int getMinColumn(int label) {
+        return minColumns[label];
+    }
+
+    public int getMaxColumn(int label) {
+        return maxColumns[label];
+    }
+
+    /**
+     * @param label The label of the component.
+     * @return Amount of cells in the bounding box of the component.
+     */
+    public long getBoundingBoxArea(int label) {
+        return (long) (maxRows[label] - minRows[label] + 1) * (maxColumns[label] - minColumns[label] + 1);
+    }
+
+    /**
+     * @param label The label of the component.
+     * @return true if every cell in the bounding box of the component belongs to the component.
+     */
+    public boolean isFilledRectangle(int label) {
+        return sizes[label] > 0 && sizes[label] == getBoundingBoxArea(label);
+    }
+
+    /**
+     * An estimation of the heap memory that the statistics take (object & array headers included).
+     *
+     * @return Estimated size in bytes.
+     */
+    public long getSizeInBytes() {
+        return 16 + 5 * (16 + (long) Integer.BYTES * sizes.length);
+    }
+}
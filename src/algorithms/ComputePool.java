@@ -0,0 +1,82 @@
+package algorithms;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The process-wide pool which runs the parallel parts of all the algorithms.<br>
+ * A single work-stealing {@link ForkJoinPool} is created once, and sized by the available processors,<br>
+ * so algorithm instances don't create & shut down their own threads, and the amount of compute threads stays bounded<br>
+ * no matter how many requests run at the same time.<br>
+ * The pool is kept apart from the server threads which read & write the connections.<br>
+ * <br>
+ * The parallelism can be set with the {@value #PARALLELISM_PROPERTY} system property.
+ */
+public final class ComputePool {
+    public static final String PARALLELISM_PROPERTY = "matrix.compute.parallelism";
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(readParallelism(), ComputePool::newWorker, null, false);
+
+    private ComputePool() {
+    }
+
+    /**
+     * @return The shared compute pool.
+     */
+    public static ForkJoinPool get() {
+        return POOL;
+    }
+
+    public static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    /**
+     * @return Amount of worker threads which were started and not terminated yet.
+     */
+    public static int getPoolSize() {
+        return POOL.getPoolSize();
+    }
+
+    /**
+     * @return Estimated amount of workers which are running or stealing tasks.
+     */
+    public static int getActiveThreadsCount() {
+        return POOL.getActiveThreadCount();
+    }
+
+    /**
+     * @return Estimated amount of workers which are not blocked waiting to join tasks.
+     */
+    public static int getRunningThreadsCount() {
+        return POOL.getRunningThreadCount();
+    }
+
+    /**
+     * @return Estimated amount of tasks which wait in the queues, including tasks submitted from outside the pool.
+     */
+    public static long getQueuedTasksCount() {
+        return POOL.getQueuedTaskCount() + POOL.getQueuedSubmissionCount();
+    }
+
+    /**
+     * @return Estimated amount of tasks which were stolen from the queue of another worker.
+     */
+    public static long getStealsCount() {
+        return POOL.getStealCount();
+    }
+
+    private static int readParallelism() {
+        int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(PARALLELISM_PROPERTY + " must be positive");
+        return parallelism;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("compute-worker-" + worker.getPoolIndex());
+        return worker;
+    }
+}
@@ -0,0 +1,308 @@
+package algorithms;
+
+import components.Index;
+import components.Matrix;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * This class labels the connected components of a matrix using a {@link UnionFind} structure.<br>
+ * Two cells with value 1 are connected if they are neighbors, including diagonal neighbors<br>
+ * (the same connectivity as {@link Matrix#getNeighbors(Index)}).<br>
+ * Every cell is visited once, so the labeling runs in linear time.<br>
+ * <br>
+ * The labeler can run sequentially, or split the matrix into tiles of rows which are labeled in parallel<br>
+ * on a {@link ForkJoinPool}, and then merged across the tiles borders.<br>
+ * Both modes return identical labels, and gather the {@link ComponentStats} in the same pass that gives the labels.
+ */
+public class ConnectedComponentsLabeler {
+    public static final int DEFAULT_TILE_ROWS = 256;
+
+    private final int tileRows;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a sequential labeler.
+     */
+    public ConnectedComponentsLabeler() {
+        this.tileRows = 0;
+        this.pool = null;
+    }
+
+    /**
+     * Creates a parallel labeler which runs on the shared {@link ComputePool}.
+     *
+     * @param tileRows Amount of rows in each tile.
+     */
+    public ConnectedComponentsLabeler(int tileRows) {
+        this(tileRows, ComputePool.get());
+    }
+
+    /**
+     * Creates a parallel labeler.
+     *
+     * @param tileRows Amount of rows in each tile.
+     * @param pool     The pool which labels the tiles.
+     */
+    public ConnectedComponentsLabeler(int tileRows, @NotNull ForkJoinPool pool) {
+        if (tileRows <= 0) throw new IllegalArgumentException("Tile rows must be positive");
+
+        this.tileRows = tileRows;
+        this.pool = pool;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    /**
+     * Labels all connected components of a given matrix.<br>
+     * The first pass merges each cell with its already visited neighbors (left, upper left, upper & upper right),<br>
+     * the second pass gives each set a compact label by the order of its first cell.
+     *
+     * @param matrix The matrix to label.
+     * @return The {@link ComponentLabeling} of the matrix.
+     */
+    public ComponentLabeling label(@NotNull Matrix matrix) {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+
+        if (isParallel() && rows > tileRows)
+            return parallelLabel(matrix, rows, columns);
+
+        UnionFind unionFind = new UnionFind(rows * columns);
+        mergeRows(matrix, unionFind, null, 0, rows);
+
+        int[] labels = new int[rows * columns];
+        int[] labelOfRoot = new int[rows * columns];
+        int[] componentsCount = new int[1];
+        ComponentStats stats = new ComponentStats(16);
+
+        matrix.forEachOne((row, column) -> {
+            int cell = row * columns + column;
+            int root = unionFind.find(cell);
+
+            //first cell of a component - giving the component a new label
+            if (labelOfRoot[root] == ComponentLabeling.BACKGROUND)
+                labelOfRoot[root] = ++componentsCount[0];
+
+            labels[cell] = labelOfRoot[root];
+            stats.add(labels[cell], row, column);
+        });
+        return new ComponentLabeling(rows, columns, labels, componentsCount[0], stats);
+    }
+
+    /**
+     * Labels the matrix tile by tile in parallel.<br>
+     * To return the same labels as the sequential pass, each set keeps its smallest cell,<br>
+     * and the components are numbered by the order of these cells.<br>
+     * Each tile gathers the statistics of the components that start in it, which no other tile writes,<br>
+     * and apart from them the statistics of the components that enter it from the previous tiles,<br>
+     * which are merged after all the tiles are labeled.
+     */
+    private ComponentLabeling parallelLabel(Matrix matrix, int rows, int columns) {
+        int tilesCount = (rows + tileRows - 1) / tileRows;
+        UnionFind unionFind = new UnionFind(rows * columns);
+        int[] smallestCell = new int[rows * columns];
+
+        //each tile touches only its own cells, so the tiles can be merged concurrently
+        forEachTile(tilesCount, tile -> mergeRows(matrix, unionFind, smallestCell,
+                tile * tileRows, Math.min(rows, (tile + 1) * tileRows)));
+
+        //merging across the tiles borders: the first row of each tile with the last row of the previous one
+        for (int tile = 1; tile < tilesCount; tile++) {
+            int borderRow = tile * tileRows;
+            matrix.forEachOne(borderRow, borderRow + 1,
+                    (row, column) -> mergeWithUpperRow(matrix, unionFind, smallestCell, row, column));
+        }
+
+        //storing (root + 1) of every cell and counting the components which start in each tile
+        int[] labels = new int[rows * columns];
+        int[] firstCellsCount = new int[tilesCount];
+
+        forEachTile(tilesCount, tile -> matrix.forEachOne(tile * tileRows, Math.min(rows, (tile + 1) * tileRows),
+                (row, column) -> {
+                    int cell = row * columns + column;
+                    int root = unionFind.findWithoutCompression(cell);
+                    labels[cell] = root + 1;
+
+                    if (smallestCell[root] == cell)
+                        firstCellsCount[tile]++;
+                }));
+
+        //the first label of each tile comes after all the components that start in the previous tiles
+        int[] firstLabel = new int[tilesCount];
+        int componentsCount = 0;
+
+        for (int tile = 0; tile < tilesCount; tile++) {
+            firstLabel[tile] = componentsCount + 1;
+            componentsCount += firstCellsCount[tile];
+        }
+        int[] labelOfRoot = new int[rows * columns];
+
+        forEachTile(tilesCount, tile -> {
+            int label = firstLabel[tile];
+
+            for (int cell = tile * tileRows * columns; cell < Math.min(rows, (tile + 1) * tileRows) * columns; cell++) {
+                if (labels[cell] != ComponentLabeling.BACKGROUND && smallestCell[labels[cell] - 1] == cell)
+                    labelOfRoot[labels[cell] - 1] = label++;
+            }
+        });
+        ComponentStats stats = new ComponentStats(componentsCount);
+        EnteringComponents[] enteringComponents = new EnteringComponents[tilesCount];
+
+        forEachTile(tilesCount, tile -> {
+            EnteringComponents entering = new EnteringComponents();
+            enteringComponents[tile] = entering;
+
+            for (int row = tile * tileRows; row < Math.min(rows, (tile + 1) * tileRows); row++) {
+                for (int column = 0, cell = row * columns; column < columns; column++, cell++) {
+                    if (labels[cell] == ComponentLabeling.BACKGROUND)
+                        continue;
+
+                    int label = labelOfRoot[labels[cell] - 1];
+                    labels[cell] = label;
+
+                    if (label >= firstLabel[tile])
+                        stats.add(label, row, column);
+                    else
+                        entering.add(label, row, column);
+                }
+            }
+        });
+        for (EnteringComponents entering : enteringComponents)
+            entering.mergeInto(stats);
+
+        return new ComponentLabeling(rows, columns, labels, componentsCount, stats);
+    }
+
+    /**
+     * Merges each cell with value 1 in the given rows with its already visited neighbors.<br>
+     * Neighbors above the first row are ignored, they are merged when the tiles borders are merged.
+     */
+    private void mergeRows(Matrix matrix, UnionFind unionFind, int[] smallestCell, int fromRow, int toRow) {
+        int columns = matrix.getColumns();
+
+        matrix.forEachOne(fromRow, toRow, (row, column) -> {
+            int cell = row * columns + column;
+
+            if (smallestCell != null)
+                smallestCell[cell] = cell;
+
+            if (column > 0 && matrix.isOne(row, column - 1))
+                merge(unionFind, smallestCell, cell, cell - 1);
+
+            if (row > fromRow)
+                mergeWithUpperRow(matrix, unionFind, smallestCell, row, column);
+        });
+    }
+
+    /**
+     * Merges a cell with its upper left, upper & upper right neighbors.
+     */
+    private void mergeWithUpperRow(Matrix matrix, UnionFind unionFind, int[] smallestCell, int row, int column) {
+        int upperWindow = matrix.getRowWindow(row - 1, column);
+
+        if (upperWindow == 0)
+            return;
+
+        int cell = row * matrix.getColumns() + column;
+
+        for (int columnOffset = -1; columnOffset <= 1; columnOffset++) {
+            if ((upperWindow & (1 << (columnOffset + 1))) != 0)
+                merge(unionFind, smallestCell, cell, cell - matrix.getColumns() + columnOffset);
+        }
+    }
+
+    private void merge(UnionFind unionFind, int[] smallestCell, int cell, int neighbor) {
+        int cellRoot = unionFind.find(cell);
+        int neighborRoot = unionFind.find(neighbor);
+
+        if (cellRoot == neighborRoot)
+            return;
+
+        int root = unionFind.union(cellRoot, neighborRoot);
+
+        if (smallestCell != null)
+            smallestCell[root] = Math.min(smallestCell[cellRoot], smallestCell[neighborRoot]);
+    }
+
+    /**
+     * Runs the given action once for each tile, in parallel.
+     */
+    private void forEachTile(int tilesCount, IntConsumer tileAction) {
+        pool.invoke(new TilesTask(0, tilesCount, tileAction));
+    }
+
+    /**
+     * This method finds all connected components of a matrix.<br>
+     * The method invokes the {@link #label(Matrix)} method.
+     *
+     * @param matrix The given matrix.
+     * @return List of hash sets of connected components, sorted by set size
+     */
+    public List<HashSet<Index>> connectedComponents(@NotNull Matrix matrix) {
+        return label(matrix).toConnectedComponents();
+    }
+
+    /**
+     * The statistics of the components that enter a tile from the previous tiles.<br>
+     * Each such component crosses the first row of the tile, so there are few of them,<br>
+     * and they get local labels instead of arrays as large as all the components.
+     */
+    private static class EnteringComponents {
+        private final Map<Integer, Integer> localLabels = new HashMap<>();
+        private final ComponentStats stats = new ComponentStats(16);
+        private int lastLabel = ComponentLabeling.BACKGROUND;
+        private int lastLocalLabel;
+
+        private void add(int label, int row, int column) {
+            //the cells of a row are mostly in runs of the same component
+            if (label != lastLabel) {
+                lastLocalLabel = localLabels.computeIfAbsent(label, newLabel -> localLabels.size() + 1);
+                lastLabel = label;
+            }
+            stats.add(lastLocalLabel, row, column);
+        }
+
+        private void mergeInto(ComponentStats allStats) {
+            localLabels.forEach((label, localLabel) -> allStats.merge(label, stats, localLabel));
+        }
+    }
+
+    /**
+     * A fork-join task which splits a range of tiles in halves until a single tile is left.
+     */
+    private static class TilesTask extends RecursiveAction {
+        private final int fromTile;
+        private final int toTile;
+        private final IntConsumer tileAction;
+
+        private TilesTask(int fromTile, int toTile, IntConsumer tileAction) {
+            this.fromTile = fromTile;
+            this.toTile = toTile;
+            this.tileAction = tileAction;
+        }
+
+        @Override
+        protected void compute() {
+            if (toTile - fromTile == 1) {
+                tileAction.accept(fromTile);
+                return;
+            }
+            int middle = (fromTile + toTile) >>> 1;
+            invokeAll(new TilesTask(fromTile, middle, tileAction), new TilesTask(middle, toTile, tileAction));
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package algorithms;
+
+import components.IntTraversable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class finds the lightest paths of a node-weighted primitive graph, using the delta-stepping algorithm.<br>
+ * Nodes are kept in buckets of weight ranges of size delta, and all the nodes of the lightest bucket<br>
+ * are relaxed together: the relaxation requests are generated in parallel on a {@link ForkJoinPool},<br>
+ * and then applied to the weights array. Light nodes (weight &lt;= delta) are relaxed until the bucket is empty,<br>
+ * heavy nodes are relaxed once the bucket is settled.<br>
+ * <br>
+ * The path weights are the same as in {@link DijkstraLightestPaths}, and so are the returned paths:<br>
+ * once the weights are final, a single pass records every tied predecessor in a {@link PredecessorDag}.<br>
+ * The timing of every bucket of the last search is kept for tuning the delta, and the totals of all the searches<br>
+ * are kept process-wide for the server metrics.<br>
+ * The default delta can be set with the {@value #DELTA_PROPERTY} system property (0 chooses it by the weights of each graph).<br>
+ * The search checks its {@link CancellationToken} before each phase, and stops with a {@link SearchCancelledException}.
+ */
+public class DeltaSteppingLightestPaths {
+    public static final String DELTA_PROPERTY = "matrix.deltaStepping.delta";
+
+    private static final long UNREACHED = Long.MAX_VALUE;
+    private static final int NOT_IN_BUCKET = -1;
+    //frontiers smaller than this are relaxed in a single task
+    private static final int MIN_TASK_NODES = 1024;
+
+    //the totals of the buckets of all the searches
+    private static final LongAdder SEARCHES = new LongAdder();
+    private static final LongAdder BUCKETS = new LongAdder();
+    private static final LongAdder PHASES = new LongAdder();
+    private static final LongAdder RELAXATIONS = new LongAdder();
+    private static final LongAdder BUCKETS_NANOS = new LongAdder();
+
+    private final int delta;
+    private final ForkJoinPool pool;
+    private final CancellationToken cancellationToken;
+    private List<BucketTiming> bucketTimings = Collections.emptyList();
+
+    /**
+     * Creates a search with the {@link #getDefaultDelta() default delta}, which runs on the shared {@link ComputePool}.
+     */
+    public DeltaSteppingLightestPaths() {
+        this(getDefaultDelta());
+    }
+
+    /**
+     * @param delta The weight range of each bucket, or 0 to choose it by the weights of each graph.
+     */
+    public DeltaSteppingLightestPaths(int delta) {
+        this(delta, ComputePool.get());
+    }
+
+    /**
+     * @param delta The weight range of each bucket, or 0 to choose it by the weights of each graph.
+     * @param pool  The pool which generates the relaxation requests.
+     */
+    public DeltaSteppingLightestPaths(int delta, @NotNull ForkJoinPool pool) {
+        this(delta, pool, new CancellationToken());
+    }
+
+    /**
+     * @param delta             The weight range of each bucket, or 0 to choose it by the weights of each graph.
+     * @param pool              The pool which generates the relaxation requests.
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public DeltaSteppingLightestPaths(int delta, @NotNull ForkJoinPool pool, @NotNull CancellationToken cancellationToken) {
+        if (delta < 0) throw new IllegalArgumentException("Delta can't be negative");
+
+        this.delta = delta;
+        this.pool = pool;
+        this.cancellationToken = cancellationToken;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    /**
+     * @return The delta of the {@value #DELTA_PROPERTY} system property, or 0 (chosen by the weights of each graph).
+     * @throws IllegalArgumentException If the property is negative.
+     */
+    public static int getDefaultDelta() {
+        int delta = Integer.getInteger(DELTA_PROPERTY, 0);
+
+        if (delta < 0)
+            throw new IllegalArgumentException(DELTA_PROPERTY + " can't be negative");
+        return delta;
+    }
+
+    /**
+     * @return Amount of searches which were completed by all the instances.
+     */
+    public static long getSearchesCount() {
+        return SEARCHES.sum();
+    }
+
+    /**
+     * @return Amount of buckets which were processed by all the searches.
+     */
+    public static long getBucketsCount() {
+        return BUCKETS.sum();
+    }
+
+    /**
+     * @return Amount of light relaxation rounds of all the buckets.
+     */
+    public static long getPhasesCount() {
+        return PHASES.sum();
+    }
+
+    /**
+     * @return Amount of relaxation requests of all the buckets.
+     */
+    public static long getRelaxationsCount() {
+        return RELAXATIONS.sum();
+    }
+
+    /**
+     * @return The time that all the buckets took, in microseconds.
+     */
+    public static long getBucketsMicros() {
+        return BUCKETS_NANOS.sum() / 1000;
+    }
+
+    /**
+     * @return The timing of each bucket which was processed by the last search, by processing order.
+     */
+    public List<BucketTiming> getBucketTimings() {
+        return bucketTimings;
+    }
+
+    /**
+     * Runs the delta-stepping algorithm from the source until all the lightest paths to the destination are known.
+     *
+     * @param graph       The weighted graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return {@link PredecessorDag} of all the lightest paths from the source.
+     * @throws IllegalArgumentException if the graph has a negative weight.
+     */
+    public PredecessorDag getLightestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination) {
+        int nodesAmount = graph.getNodesAmount();
+        int maxWeight = 0;
+
+        for (int node = 0; node < nodesAmount; node++) {
+            int value = graph.getValue(node);
+
+            if (value < 0)
+                throw new IllegalArgumentException("Lightest paths can't be found with negative weight " + value);
+            maxWeight = Math.max(maxWeight, value);
+        }
+        //by default, a bucket covers the weights of one eighth of the heaviest node (a cell has up to 8 neighbors)
+        long bucketDelta = delta > 0 ? delta : Math.max(1, maxWeight / 8);
+
+        long[] weight = new long[nodesAmount];
+        Arrays.fill(weight, UNREACHED);
+        weight[source] = graph.getValue(source);
+
+        //buckets are reused cyclically, since a relaxation never reaches further than the heaviest node
+        int bucketsCount = (int) (maxWeight / bucketDelta) + 2;
+        IntStack[] buckets = new IntStack[bucketsCount];
+        for (int i = 0; i < bucketsCount; i++)
+            buckets[i] = new IntStack();
+
+        long[] bucketOf = new long[nodesAmount];
+        Arrays.fill(bucketOf, NOT_IN_BUCKET);
+        //the last bucket which settled each node, so a node which is relaxed again in the same bucket is settled once
+        long[] settledIn = new long[nodesAmount];
+        Arrays.fill(settledIn, NOT_IN_BUCKET);
+
+        bucketOf[source] = weight[source] / bucketDelta;
+        buckets[(int) (bucketOf[source] % bucketsCount)].push(source);
+        int nodesInBuckets = 1;
+        long settledCount = 0;
+
+        List<BucketTiming> timings = new ArrayList<>();
+
+        for (long bucket = bucketOf[source]; nodesInBuckets > 0; bucket++) {
+            //all the lightest paths to the destination are known
+            if (weight[destination] != UNREACHED && bucket * bucketDelta > weight[destination])
+                break;
+
+            IntStack currentBucket = buckets[(int) (bucket % bucketsCount)];
+
+            if (currentBucket.isEmpty())
+                continue;
+
+            long startTime = System.nanoTime();
+            int phases = 0;
+            long relaxations = 0;
+            IntStack settledNodes = new IntStack();
+
+            //light relaxations may put nodes back into the current bucket
+            while (!currentBucket.isEmpty()) {
+                //a phase relaxes a whole frontier, so the token is checked before each one
+                cancellationToken.throwIfCancelled(SearchCancelledException.Phase.SEARCH, settledCount, 0);
+                int[] frontier = takeFrontier(currentBucket, bucketOf, bucket);
+                nodesInBuckets -= frontier.length;
+                phases++;
+
+                for (int node : frontier) {
+                    bucketOf[node] = NOT_IN_BUCKET;
+
+                    if (settledIn[node] != bucket) {
+                        settledIn[node] = bucket;
+                        settledNodes.push(node);
+                    }
+                }
+                Requests requests = generateRequests(new RequestsTask(graph, weight, frontier, 0, frontier.length,
+                        bucketDelta, true));
+                relaxations += requests.size;
+                nodesInBuckets += relax(requests, weight, buckets, bucketOf, bucketDelta);
+            }
+            //the bucket had only old entries of nodes which were moved to lighter buckets
+            if (settledNodes.isEmpty())
+                continue;
+
+            settledCount += settledNodes.size();
+            int[] settled = new int[settledNodes.size()];
+            for (int i = 0; i < settled.length; i++)
+                settled[i] = settledNodes.get(i);
+
+            Requests heavyRequests = generateRequests(new RequestsTask(graph, weight, settled, 0, settled.length,
+                    bucketDelta, false));
+            relaxations += heavyRequests.size;
+            nodesInBuckets += relax(heavyRequests, weight, buckets, bucketOf, bucketDelta);
+
+            timings.add(new BucketTiming(bucket, settled.length, phases, relaxations, System.nanoTime() - startTime));
+        }
+        this.bucketTimings = Collections.unmodifiableList(timings);
+        publish(timings);
+
+        return buildLightestPathsDag(graph, weight, source, destination);
+    }
+
+    private static void publish(List<BucketTiming> timings) {
+        SEARCHES.increment();
+        BUCKETS.add(timings.size());
+
+        for (BucketTiming timing : timings) {
+            PHASES.add(timing.getPhases());
+            RELAXATIONS.add(timing.getRelaxations());
+            BUCKETS_NANOS.add(timing.getNanos());
+        }
+    }
+
+    /**
+     * Generates the requests on the pool, or in the current thread if there are too few nodes to split.
+     */
+    private Requests generateRequests(RequestsTask task) {
+        return task.to - task.from > MIN_TASK_NODES ? pool.invoke(task) : task.compute();
+    }
+
+    /**
+     * Removes all the nodes from a bucket, skipping the nodes that were moved to a lighter bucket since.
+     */
+    private static int[] takeFrontier(IntStack currentBucket, long[] bucketOf, long bucket) {
+        IntStack frontier = new IntStack(currentBucket.size());
+
+        while (!currentBucket.isEmpty()) {
+            int node = currentBucket.pop();
+
+            if (bucketOf[node] == bucket) {
+                frontier.push(node);
+                //marking the node, so a duplicate entry in the same bucket is skipped
+                bucketOf[node] = NOT_IN_BUCKET - 1;
+            }
+        }
+        int[] nodes = new int[frontier.size()];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = frontier.get(i);
+        return nodes;
+    }
+
+    /**
+     * Applies the relaxation requests, and moves each improved node to its new bucket.
+     *
+     * @return Amount of nodes which were added to the buckets.
+     */
+    private static int relax(Requests requests, long[] weight, IntStack[] buckets, long[] bucketOf, long bucketDelta) {
+        int addedNodes = 0;
+
+        for (int i = 0; i < requests.size; i++) {
+            int node = requests.nodes[i];
+            long pathWeight = requests.weights[i];
+
+            if (pathWeight >= weight[node])
+                continue;
+
+            weight[node] = pathWeight;
+            long newBucket = pathWeight / bucketDelta;
+
+            if (bucketOf[node] != newBucket) {
+                //a node which is already in a heavier bucket is counted once, its old entry will be skipped
+                if (bucketOf[node] < 0)
+                    addedNodes++;
+                bucketOf[node] = newBucket;
+                buckets[(int) (newBucket % buckets.length)].push(node);
+            }
+        }
+        return addedNodes;
+    }
+
+    /**
+     * Records every neighbor which reaches a node with its final weight as a predecessor of the node.<br>
+     * Only the nodes that are not heavier than the destination are needed for its paths.
+     */
+    private static PredecessorDag buildLightestPathsDag(IntTraversable<?> graph, long[] weight, int source, int destination) {
+        PredecessorDag lightestPathsDag = new PredecessorDag(graph.getNodesAmount(), source);
+        long maxWeight = weight[destination];
+
+        if (maxWeight == UNREACHED)
+            return lightestPathsDag;
+
+        for (int node = 0; node < graph.getNodesAmount(); node++) {
+            if (weight[node] > maxWeight)
+                continue;
+
+            int predecessor = node;
+
+            graph.forEachNeighbor(node, neighbor -> {
+                if (neighbor == source || weight[neighbor] > maxWeight)
+                    return;
+
+                int neighborWeight = graph.getValue(neighbor);
+
+                if (weight[predecessor] + neighborWeight == weight[neighbor]) {
+                    //a zero weight node may get a predecessor that it precedes itself
+                    if (neighborWeight == 0)
+                        lightestPathsDag.markCyclic();
+                    lightestPathsDag.addPredecessor(neighbor, predecessor);
+                }
+            });
+        }
+        return lightestPathsDag;
+    }
+
+    /**
+     * The timing of a single bucket.
+     */
+    public static class BucketTiming {
+        private final long bucket;
+        private final int settledNodes;
+        private final int phases;
+        private final long relaxations;
+        private final long nanos;
+
+        public BucketTiming(long bucket, int settledNodes, int phases, long relaxations, long nanos) {
+            this.bucket = bucket;
+            this.settledNodes = settledNodes;
+            this.phases = phases;
+            this.relaxations = relaxations;
+            this.nanos = nanos;
+        }
+
+        public long getBucket() {
+            return bucket;
+        }
+
+        public int getSettledNodes() {
+            return settledNodes;
+        }
+
+        /**
+         * @return Amount of light relaxation rounds until the bucket was empty.
+         */
+        public int getPhases() {
+            return phases;
+        }
+
+        public long getRelaxations() {
+            return relaxations;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Bucket " + bucket + ": " + settledNodes + " nodes, " + phases + " phases, " +
+                    relaxations + " relaxations, " + nanos / 1000 + "us";
+        }
+    }
+
+    /**
+     * Relaxation requests: a node and the weight of the path that reaches it.
+     */
+    private static class Requests {
+        private int[] nodes = new int[16];
+        private long[] weights = new long[16];
+        private int size;
+
+        private void add(int node, long weight) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            nodes[size] = node;
+            weights[size++] = weight;
+        }
+
+        private Requests merge(Requests other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.nodes[i], other.weights[i]);
+            return this;
+        }
+    }
+
+    /**
+     * A fork-join task which generates the light or the heavy relaxation requests of a range of nodes.<br>
+     * The task only reads the weights array, which is updated after all the requests are generated.
+     */
+    private static class RequestsTask extends RecursiveTask<Requests> {
+        private final IntTraversable<?> graph;
+        private final long[] weight;
+        private final int[] nodes;
+        private final int from;
+        private final int to;
+        private final long bucketDelta;
+        private final boolean light;
+
+        private RequestsTask(IntTraversable<?> graph, long[] weight, int[] nodes, int from, int to,
+                             long bucketDelta, boolean light) {
+            this.graph = graph;
+            this.weight = weight;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.bucketDelta = bucketDelta;
+            this.light = light;
+        }
+
+        @Override
+        protected Requests compute() {
+            if (to - from > MIN_TASK_NODES) {
+                int middle = (from + to) >>> 1;
+                RequestsTask upperHalf = new RequestsTask(graph, weight, nodes, middle, to, bucketDelta, light);
+                upperHalf.fork();
+
+                Requests requests = new RequestsTask(graph, weight, nodes, from, middle, bucketDelta, light).compute();
+                return requests.merge(upperHalf.join());
+            }
+            Requests requests = new Requests();
+
+            for (int i = from; i < to; i++) {
+                long nodeWeight = weight[nodes[i]];
+
+                graph.forEachNeighbor(nodes[i], neighbor -> {
+                    int neighborWeight = graph.getValue(neighbor);
+
+                    if ((neighborWeight <= bucketDelta) == light && nodeWeight + neighborWeight < weight[neighbor])
+                        requests.add(neighbor, nodeWeight + neighborWeight);
+                });
+            }
+            return requests;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package algorithms;
+
+import components.IntTraversable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This class finds the lightest paths of a node-weighted primitive graph, using the Dijkstra algorithm<br>
+ * over an {@link IndexedMinHeap} of node ids.<br>
+ * The weight of a path is the sum of the values of all its nodes, including the source and the destination<br>
+ * (the same weight {@link ThreadedBellmanFord#getPathWeight(IntTraversable, int[])} sums up).<br>
+ * Every node which is reached with the same minimal weight from several neighbors keeps all of them<br>
+ * as predecessors, so all the tied lightest paths can be enumerated.<br>
+ * The search stops with a {@link SearchCancelledException} when its {@link CancellationToken} is cancelled.
+ */
+public class DijkstraLightestPaths {
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final CancellationToken cancellationToken;
+
+    public DijkstraLightestPaths() {
+        this(new CancellationToken());
+    }
+
+    /**
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public DijkstraLightestPaths(@NotNull CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Runs the Dijkstra algorithm from the source until all the lightest paths to the destination are known.
+     *
+     * @param graph       The weighted graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return {@link PredecessorDag} of all the lightest paths from the source.
+     * @throws IllegalArgumentException if a reached node has a negative weight.
+     */
+    public PredecessorDag getLightestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination) {
+        PredecessorDag lightestPathsDag = new PredecessorDag(graph.getNodesAmount(), source);
+
+        long[] weight = new long[graph.getNodesAmount()];
+        Arrays.fill(weight, UNREACHED);
+        weight[source] = nodeWeight(graph, source);
+
+        boolean[] settled = new boolean[graph.getNodesAmount()];
+        IndexedMinHeap heap = new IndexedMinHeap(graph.getNodesAmount());
+        heap.push(source, weight[source]);
+        long settledNodes = 0;
+
+        //the destination is settled, and every node left is heavier than it
+        while (!heap.isEmpty() && !(settled[destination] && heap.peekKey() > weight[destination])) {
+            cancellationToken.checkpoint(++settledNodes, SearchCancelledException.Phase.SEARCH, settledNodes, 0);
+            int currentNode = heap.poll();
+            settled[currentNode] = true;
+
+            graph.forEachNeighbor(currentNode, node -> {
+                if (node == source)
+                    return;
+
+                long pathWeight = weight[currentNode] + nodeWeight(graph, node);
+
+                if (pathWeight < weight[node]) {
+                    weight[node] = pathWeight;
+                    lightestPathsDag.clearPredecessors(node);
+                    lightestPathsDag.addPredecessor(node, currentNode);
+                    heap.push(node, pathWeight);
+                } else if (pathWeight == weight[node]) {
+                    //a zero weight node may get a predecessor that it precedes itself
+                    if (settled[node])
+                        lightestPathsDag.markCyclic();
+                    lightestPathsDag.addPredecessor(node, currentNode);
+                }
+            });
+        }
+        return lightestPathsDag;
+    }
+
+    private static long nodeWeight(IntTraversable<?> graph, int node) {
+        int value = graph.getValue(node);
+
+        if (value < 0)
+            throw new IllegalArgumentException("Lightest paths can't be found with negative weight " + value);
+        return value;
+    }
+}
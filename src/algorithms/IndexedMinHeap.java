@@ -0,0 +1,120 @@
+package algorithms;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int ids from {@code 0..capacity-1}, ordered by long keys.<br>
+ * The heap keeps the position of every id, so the key of an id can be decreased in O(log n)<br>
+ * without adding a duplicate entry.
+ */
+public class IndexedMinHeap {
+    private static final int ABSENT = -1;
+
+    private final int[] heap;
+    private final int[] position;
+    private final long[] keys;
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new long[capacity];
+
+        Arrays.fill(position, ABSENT);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return position[id] != ABSENT;
+    }
+
+    /**
+     * @return The key of the id at the top of the heap.
+     */
+    public long peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Inserts an id, or decreases its key if it's already in the heap.<br>
+     * A key which is not lower than the current key of the id is ignored.
+     *
+     * @param id  The id.
+     * @param key The key of the id.
+     */
+    public void push(int id, long key) {
+        if (contains(id)) {
+            if (key < keys[id]) {
+                keys[id] = key;
+                siftUp(position[id]);
+            }
+            return;
+        }
+        keys[id] = key;
+        heap[size] = id;
+        position[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes the id with the minimal key.
+     *
+     * @return The removed id.
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = ABSENT;
+
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int index) {
+        int id = heap[index];
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+
+            if (keys[heap[parent]] <= keys[id])
+                break;
+
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        position[id] = index;
+    }
+
+    private void siftDown(int index) {
+        int id = heap[index];
+
+        while (true) {
+            int child = 2 * index + 1;
+
+            if (child >= size)
+                break;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+                child++;
+            if (keys[heap[child]] >= keys[id])
+                break;
+
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = id;
+        position[id] = index;
+    }
+}
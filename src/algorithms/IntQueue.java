@@ -0,0 +1,27 @@
+package algorithms;
+
+/**
+ * A FIFO queue of primitive int values with a fixed capacity,<br>
+ * used by the searches which add each node to the queue at most once.
+ */
+class IntQueue {
+    private final int[] values;
+    private int head;
+    private int tail;
+
+    IntQueue(int capacity) {
+        this.values = new int[capacity];
+    }
+
+    void add(int value) {
+        values[tail++] = value;
+    }
+
+    int poll() {
+        return values[head++];
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+}
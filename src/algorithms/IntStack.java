@@ -0,0 +1,49 @@
+package algorithms;
+
+import java.util.Arrays;
+
+/**
+ * A growable stack of primitive int values, used by the algorithms which run on node ids.
+ */
+class IntStack {
+    private int[] values;
+    private int size;
+
+    IntStack() {
+        this(16);
+    }
+
+    IntStack(int initialCapacity) {
+        this.values = new int[Math.max(1, initialCapacity)];
+    }
+
+    void push(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    int pop() {
+        return values[--size];
+    }
+
+    int peek() {
+        return values[size - 1];
+    }
+
+    int get(int position) {
+        return values[position];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,77 @@
+package algorithms;
+
+import components.IntTraversable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The ways to measure a path of a primitive graph.
+ */
+public enum PathMetric {
+    /**
+     * Every node costs 1, and only nodes with value 1 can be passed through (like {@link ThreadedBFS}).
+     */
+    UNWEIGHTED {
+        @Override
+        public long weight(@NotNull IntTraversable<?> graph, int node) {
+            return 1;
+        }
+
+        @Override
+        public void forEachNext(@NotNull IntTraversable<?> graph, int node, @NotNull IntConsumer consumer) {
+            graph.forEachReachableNode(node, consumer);
+        }
+
+        @Override
+        public boolean isValidEndpoint(@NotNull IntTraversable<?> graph, int node) {
+            return graph.getValue(node) != 0;
+        }
+    },
+    /**
+     * Every node costs its value, and all the neighbors can be passed through (like {@link ThreadedBellmanFord}).
+     */
+    NODE_WEIGHTED {
+        @Override
+        public long weight(@NotNull IntTraversable<?> graph, int node) {
+            int value = graph.getValue(node);
+
+            if (value < 0)
+                throw new IllegalArgumentException("Lightest paths can't be found with negative weight " + value);
+            return value;
+        }
+
+        @Override
+        public void forEachNext(@NotNull IntTraversable<?> graph, int node, @NotNull IntConsumer consumer) {
+            graph.forEachNeighbor(node, consumer);
+        }
+
+        @Override
+        public boolean isValidEndpoint(@NotNull IntTraversable<?> graph, int node) {
+            return true;
+        }
+    };
+
+    /**
+     * @param graph The graph.
+     * @param node  The node id.
+     * @return The cost of passing through the node.
+     */
+    public abstract long weight(@NotNull IntTraversable<?> graph, int node);
+
+    /**
+     * Visits the nodes which a path can continue to from the given node.
+     *
+     * @param graph    The graph.
+     * @param node     The node id.
+     * @param consumer The consumer which receives the id of each next node.
+     */
+    public abstract void forEachNext(@NotNull IntTraversable<?> graph, int node, @NotNull IntConsumer consumer);
+
+    /**
+     * @param graph The graph.
+     * @param node  The node id.
+     * @return true if a path can start or end at the node.
+     */
+    public abstract boolean isValidEndpoint(@NotNull IntTraversable<?> graph, int node);
+}
@@ -0,0 +1,106 @@
+package algorithms;
+
+import components.TraversableMatrix;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class finds all the shortest (or lightest) paths between two cells of a matrix<br>
+ * with a search that is directed at the destination, instead of covering the whole matrix.<br>
+ * The algorithm is selected per search, see {@link Algorithm}.<br>
+ * The search & the paths enumeration stop with a {@link SearchCancelledException} when the token of the instance is cancelled.
+ */
+public class PointToPointSearch {
+    /**
+     * The point to point search algorithms.
+     */
+    public enum Algorithm {
+        /**
+         * {@link AStarSearch} with the octile distance times the lightest cell as the heuristic.
+         */
+        A_STAR,
+        /**
+         * {@link BidirectionalSearch}, or A* when the matrix has zero weight cells.
+         */
+        BIDIRECTIONAL
+    }
+
+    private final Algorithm algorithm;
+    private final CancellationToken cancellationToken;
+    private long expandedNodes;
+
+    public PointToPointSearch(@NotNull Algorithm algorithm) {
+        this(algorithm, new CancellationToken());
+    }
+
+    /**
+     * @param algorithm         The search algorithm.
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public PointToPointSearch(@NotNull Algorithm algorithm, @NotNull CancellationToken cancellationToken) {
+        this.algorithm = algorithm;
+        this.cancellationToken = cancellationToken;
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return Amount of nodes which were expanded by the last search.
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Finds all the shortest paths between two cells of a matrix.
+     *
+     * @param graph       The matrix to search.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @param metric      The way to measure the paths.
+     * @return List of all the shortest paths, as arrays of node ids.
+     */
+    public List<int[]> getShortestPaths(@NotNull TraversableMatrix graph, int source, int destination,
+                                        @NotNull PathMetric metric) {
+        //if at least one of the nodes can't be part of a path, there's no valid path
+        if (!metric.isValidEndpoint(graph, source) || !metric.isValidEndpoint(graph, destination)) {
+            this.expandedNodes = 0;
+            return new ArrayList<>();
+        }
+        return getShortestPathsDag(graph, source, destination, metric).getAllPaths(destination, cancellationToken);
+    }
+
+    /**
+     * Runs the selected search algorithm.
+     *
+     * @param graph       The matrix to search.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @param metric      The way to measure the paths.
+     * @return {@link PredecessorDag} of the shortest paths from the source.
+     */
+    public PredecessorDag getShortestPathsDag(@NotNull TraversableMatrix graph, int source, int destination,
+                                              @NotNull PathMetric metric) {
+        //each step costs at least the lightest cell, so the heuristic never overestimates
+        int lightestCell = metric == PathMetric.UNWEIGHTED ? 1 : graph.getMatrix().getMinValue();
+
+        if (lightestCell < 0)
+            throw new IllegalArgumentException("Lightest paths can't be found with negative weight " + lightestCell);
+
+        if (algorithm == Algorithm.BIDIRECTIONAL && lightestCell > 0) {
+            BidirectionalSearch bidirectionalSearch = new BidirectionalSearch(cancellationToken);
+            PredecessorDag shortestPathsDag = bidirectionalSearch.getShortestPathsDag(graph, source, destination, metric);
+            this.expandedNodes = bidirectionalSearch.getExpandedNodes();
+            return shortestPathsDag;
+        }
+        AStarSearch aStarSearch = new AStarSearch(cancellationToken);
+        PredecessorDag shortestPathsDag = aStarSearch.getShortestPathsDag(graph, source, destination, metric,
+                node -> (long) lightestCell * graph.octileDistance(node, destination));
+        this.expandedNodes = aStarSearch.getExpandedNodes();
+        return shortestPathsDag;
+    }
+}
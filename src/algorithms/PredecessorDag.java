@@ -0,0 +1,331 @@
+package algorithms;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A directed acyclic graph of predecessors, which is built by a shortest path search from a single source.<br>
+ * A node may have several predecessors, one for each shortest path that reaches it,<br>
+ * so all the shortest paths can be enumerated backwards from any destination.<br>
+ * The predecessors of each node are kept as a linked list in flat int arrays, so the memory is linear<br>
+ * in the amount of nodes & edges, no matter how many paths there are.<br>
+ * A search over zero weight nodes may record predecessors in both directions between two nodes.<br>
+ * Such a graph is marked as not acyclic, and only the simple paths are enumerated from it.<br>
+ * The amount of paths may grow exponentially, so the enumeration & the counting check a {@link CancellationToken}.
+ */
+public class PredecessorDag {
+    private static final int NO_EDGE = -1;
+
+    private final int source;
+    private final int[] firstEdge;
+    private int[] edgePredecessor;
+    private int[] nextEdge;
+    private int edgesCount;
+    private boolean acyclic = true;
+
+    /**
+     * @param nodesAmount Amount of nodes in the searched graph.
+     * @param source      The source node id of the search.
+     */
+    public PredecessorDag(int nodesAmount, int source) {
+        this.source = source;
+        this.firstEdge = new int[nodesAmount];
+        this.edgePredecessor = new int[Math.max(16, nodesAmount)];
+        this.nextEdge = new int[edgePredecessor.length];
+
+        Arrays.fill(firstEdge, NO_EDGE);
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getNodesAmount() {
+        return firstEdge.length;
+    }
+
+    /**
+     * Adds a predecessor to a given node.
+     *
+     * @param node        The node id.
+     * @param predecessor The id of the node which comes before it on a shortest path.
+     */
+    public void addPredecessor(int node, int predecessor) {
+        if (edgesCount == edgePredecessor.length) {
+            edgePredecessor = Arrays.copyOf(edgePredecessor, edgesCount * 2);
+            nextEdge = Arrays.copyOf(nextEdge, edgesCount * 2);
+        }
+        edgePredecessor[edgesCount] = predecessor;
+        nextEdge[edgesCount] = firstEdge[node];
+        firstEdge[node] = edgesCount++;
+    }
+
+    /**
+     * Removes all the predecessors of a given node, when a shorter path to it is found.
+     *
+     * @param node The node id.
+     */
+    public void clearPredecessors(int node) {
+        firstEdge[node] = NO_EDGE;
+    }
+
+    public boolean isAcyclic() {
+        return acyclic;
+    }
+
+    /**
+     * Marks the graph as one that may contain cycles of predecessors.
+     */
+    public void markCyclic() {
+        this.acyclic = false;
+    }
+
+    /**
+     * @param node The node id.
+     * @return true if the node is the source, or has at least one predecessor.
+     */
+    public boolean isReached(int node) {
+        return node == source || firstEdge[node] != NO_EDGE;
+    }
+
+    /**
+     * Visits the predecessors of a given node.
+     *
+     * @param node     The node id.
+     * @param consumer The consumer which receives the id of each predecessor.
+     */
+    public void forEachPredecessor(int node, @NotNull IntConsumer consumer) {
+        for (int edge = firstEdge[node]; edge != NO_EDGE; edge = nextEdge[edge])
+            consumer.accept(edgePredecessor[edge]);
+    }
+
+    /**
+     * Enumerates all the paths from the source to a given destination, by walking the predecessors backwards.
+     *
+     * @param destination The destination node id.
+     * @return List of all paths from source to destination, as arrays of node ids.
+     */
+    public List<int[]> getAllPaths(int destination) {
+        return getAllPaths(destination, new CancellationToken());
+    }
+
+    /**
+     * Enumerates all the paths from the source to a given destination, until the token is cancelled.
+     *
+     * @param destination       The destination node id.
+     * @param cancellationToken The token of the search.
+     * @return List of all paths from source to destination, as arrays of node ids.
+     * @throws SearchCancelledException If the token is cancelled before all the paths are found.
+     */
+    public List<int[]> getAllPaths(int destination, @NotNull CancellationToken cancellationToken) {
+        List<int[]> allPaths = new ArrayList<>();
+        pathsIterator(destination, cancellationToken).forEachRemaining(allPaths::add);
+        return allPaths;
+    }
+
+    /**
+     * Returns an iterator which produces the paths from the source to a given destination on demand.<br>
+     * Only the current path is kept in memory, so the paths can be consumed one by one even if there are millions.
+     *
+     * @param destination The destination node id.
+     * @return Iterator over all the paths, as arrays of node ids.
+     */
+    public Iterator<int[]> pathsIterator(int destination) {
+        return pathsIterator(destination, new CancellationToken());
+    }
+
+    /**
+     * Returns an iterator which produces the paths on demand, and stops with a {@link SearchCancelledException}<br>
+     * when the token is cancelled.
+     *
+     * @param destination       The destination node id.
+     * @param cancellationToken The token of the search.
+     * @return Iterator over all the paths, as arrays of node ids.
+     */
+    public Iterator<int[]> pathsIterator(int destination, @NotNull CancellationToken cancellationToken) {
+        return new PathsIterator(destination, cancellationToken);
+    }
+
+    /**
+     * Returns a lazy stream of at most {@code maxPaths} paths from the source to a given destination.
+     *
+     * @param destination The destination node id.
+     * @param maxPaths    Maximum amount of paths to produce.
+     * @return Stream of paths, as arrays of node ids.
+     */
+    public Stream<int[]> paths(int destination, long maxPaths) {
+        Spliterator<int[]> spliterator = Spliterators.spliteratorUnknownSize(pathsIterator(destination),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false).limit(maxPaths);
+    }
+
+    /**
+     * Counts the paths from the source to a given destination without building them.<br>
+     * The amount of paths to a node is the sum of the amounts of paths to its predecessors.<br>
+     * If the graph is not acyclic, the paths are counted by enumerating them.
+     *
+     * @param destination The destination node id.
+     * @return Amount of paths, or {@link Long#MAX_VALUE} if the amount is too large for a long.
+     */
+    public long countPaths(int destination) {
+        return countPaths(destination, new CancellationToken());
+    }
+
+    /**
+     * Counts the paths from the source to a given destination, until the token is cancelled.
+     *
+     * @param destination       The destination node id.
+     * @param cancellationToken The token of the search.
+     * @return Amount of paths, or {@link Long#MAX_VALUE} if the amount is too large for a long.
+     * @throws SearchCancelledException If the token is cancelled before the paths are counted.
+     */
+    public long countPaths(int destination, @NotNull CancellationToken cancellationToken) {
+        if (!isReached(destination))
+            return 0;
+        if (destination == source)
+            return 1;
+
+        if (!acyclic) {
+            long counter = 0;
+
+            for (Iterator<int[]> paths = pathsIterator(destination, cancellationToken); paths.hasNext(); paths.next())
+                counter = saturatedAdd(counter, 1);
+            return counter;
+        }
+        //amount of paths of each node plus one, 0 means that the node wasn't counted yet
+        long[] pathsCount = new long[firstEdge.length];
+        pathsCount[source] = 2;
+
+        //post-order walk over the predecessors, so each node is summed after all of its predecessors
+        IntStack nodes = new IntStack();
+        IntStack nextEdges = new IntStack();
+
+        nodes.push(destination);
+        nextEdges.push(firstEdge[destination]);
+        long steps = 0;
+
+        while (!nodes.isEmpty()) {
+            cancellationToken.checkpoint(++steps, SearchCancelledException.Phase.PATHS, steps, 0);
+            int edge = nextEdges.pop();
+
+            if (edge == NO_EDGE) {
+                int node = nodes.pop();
+                long sum = 0;
+
+                for (int anEdge = firstEdge[node]; anEdge != NO_EDGE; anEdge = nextEdge[anEdge])
+                    sum = saturatedAdd(sum, pathsCount[edgePredecessor[anEdge]] - 1);
+
+                pathsCount[node] = saturatedAdd(sum, 1);
+                continue;
+            }
+            nextEdges.push(nextEdge[edge]);
+
+            int predecessor = edgePredecessor[edge];
+
+            if (pathsCount[predecessor] == 0) {
+                nodes.push(predecessor);
+                nextEdges.push(firstEdge[predecessor]);
+            }
+        }
+        return pathsCount[destination] == Long.MAX_VALUE ? Long.MAX_VALUE : pathsCount[destination] - 1;
+    }
+
+    private static long saturatedAdd(long first, long second) {
+        long sum = first + second;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Walks the predecessors backwards from the destination with an explicit stack,<br>
+     * and stops every time the walk reaches the source.
+     */
+    private class PathsIterator implements Iterator<int[]> {
+        //the current path from the destination backwards, and the next predecessor edge to try at each depth
+        private final IntStack pathNodes = new IntStack();
+        private final IntStack nextEdges = new IntStack();
+        //nodes of the current path, used only when the graph is not acyclic
+        private final BitSet onPath = acyclic ? null : new BitSet(firstEdge.length);
+        private final CancellationToken cancellationToken;
+        private int[] nextPath;
+        private long steps;
+        private long foundPaths;
+
+        private PathsIterator(int destination, CancellationToken cancellationToken) {
+            this.cancellationToken = cancellationToken;
+
+            if (isReached(destination))
+                push(destination);
+        }
+
+        private void push(int node) {
+            pathNodes.push(node);
+            nextEdges.push(firstEdge[node]);
+
+            if (onPath != null)
+                onPath.set(node);
+        }
+
+        private void pop() {
+            int node = pathNodes.pop();
+            nextEdges.pop();
+
+            if (onPath != null)
+                onPath.clear(node);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextPath == null)
+                nextPath = findNextPath();
+            return nextPath != null;
+        }
+
+        @Override
+        public int[] next() {
+            if (!hasNext())
+                throw new NoSuchElementException("There are no more paths");
+
+            int[] path = nextPath;
+            nextPath = null;
+            return path;
+        }
+
+        private int[] findNextPath() {
+            while (!pathNodes.isEmpty()) {
+                cancellationToken.checkpoint(++steps, SearchCancelledException.Phase.PATHS, steps, foundPaths);
+                int node = pathNodes.peek();
+
+                if (node == source) {
+                    int[] path = reversed(pathNodes);
+                    pop();
+                    foundPaths++;
+                    return path;
+                }
+                int edge = nextEdges.pop();
+                nextEdges.push(edge == NO_EDGE ? NO_EDGE : nextEdge[edge]);
+
+                if (edge == NO_EDGE) {
+                    pop();
+                    continue;
+                }
+                int predecessor = edgePredecessor[edge];
+
+                if (onPath == null || !onPath.get(predecessor))
+                    push(predecessor);
+            }
+            return null;
+        }
+    }
+
+    private static int[] reversed(IntStack pathNodes) {
+        int[] path = new int[pathNodes.size()];
+
+        for (int i = 0; i < path.length; i++)
+            path[i] = pathNodes.get(path.length - 1 - i);
+        return path;
+    }
+}
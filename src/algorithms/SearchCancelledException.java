@@ -0,0 +1,64 @@
+package algorithms;
+
+/**
+ * Thrown when a search stops because its {@link CancellationToken} was cancelled, or its deadline passed.<br>
+ * The search returns no result, only the statistics of the work it did until it stopped.
+ */
+public class SearchCancelledException extends RuntimeException {
+    /**
+     * The phases of a paths search.
+     */
+    public enum Phase {
+        /**
+         * Expanding nodes from the source, until the distances to the destination are known.
+         */
+        SEARCH,
+        /**
+         * Enumerating (or counting) the paths that the search found.
+         */
+        PATHS
+    }
+
+    private final boolean timedOut;
+    private final Phase phase;
+    private final long expandedNodes;
+    private final long foundPaths;
+    private final long elapsedMillis;
+
+    /**
+     * @param timedOut      true if the deadline passed, false if the search was cancelled.
+     * @param phase         The phase that the search was in when it stopped.
+     * @param expandedNodes Amount of nodes which the phase expanded (or walked, in the {@link Phase#PATHS} phase).
+     * @param foundPaths    Amount of paths which were found before the search stopped.
+     * @param elapsedMillis The time that the search ran.
+     */
+    public SearchCancelledException(boolean timedOut, Phase phase, long expandedNodes, long foundPaths, long elapsedMillis) {
+        super("Search " + (timedOut ? "timed out" : "was cancelled") + " after " + elapsedMillis + " ms, in the " +
+                phase + " phase: " + expandedNodes + " nodes expanded, " + foundPaths + " paths found");
+        this.timedOut = timedOut;
+        this.phase = phase;
+        this.expandedNodes = expandedNodes;
+        this.foundPaths = foundPaths;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public long getFoundPaths() {
+        return foundPaths;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -1,6 +1,7 @@
 package algorithms;
 
 import components.Index;
+import components.Matrix;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.HashSet;
@@ -11,13 +12,33 @@ import java.util.List;
  */
 public class SubmarineValidator {
     /**
-     * The method check how many submarines in a 2D array.
+     * The method check how many submarines in a labeled 2D array, from the statistics of its components.<br>
+     * The components are never built - a component fills its bounding box exactly when its size equals the box area.
+     *
+     * @param labeling The component labeling of the 2D array.
+     * @return Amount of valid Submarines in the 2D array.
+     */
+    public int countSubmarines(@NotNull ComponentLabeling labeling) {
+        ComponentStats stats = labeling.getStats();
+        int submarinesCounter = 0;
+
+        for (int label = 1; label <= labeling.getComponentsCount(); label++) {
+            //a submarine has more than 1 cell, and fills its bounding box
+            if (stats.getSize(label) > 1 && stats.isFilledRectangle(label))
+                submarinesCounter++;
+        }
+        return submarinesCounter;
+    }
+
+    /**
+     * The method check how many submarines in a 2D array.<br>
+     * The bounding box of each component is checked in O(1) with the {@link Matrix#getSummedAreaTable} of the matrix.
      *
      * @param connectedComponents List of all connected components of the given 2D array.
-     * @param baseMatrix          The basic 2D array given by user.
+     * @param matrix              The matrix given by user.
      * @return Amount of valid Submarines in a 2D array.
      */
-    public int findSubmarinesAmount(@NotNull List<HashSet<Index>> connectedComponents, int[][] baseMatrix) {
+    public int findSubmarinesAmount(@NotNull List<HashSet<Index>> connectedComponents, @NotNull Matrix matrix) {
         int submarinesCounter = connectedComponents.size();
         int minRow, minCol, maxRow, maxCol;
 
@@ -39,16 +60,9 @@ public class SubmarineValidator {
                 maxCol = Math.max(maxCol, index.getColumn());
             }
 
-            //iterating over the boundaries of a suspected submarine
-            for (int i = minRow; i <= maxRow; i++) {
-                for (int j = minCol; j <= maxCol; j++) {
-                    if (baseMatrix[i][j] == 0) {
-                        submarinesCounter--;
-                        i = maxRow;
-                        break;
-                    }
-                }
-            }
+            //a suspected submarine is valid only if its boundaries contain no 0
+            if (!matrix.getSummedAreaTable(ComputePool.get()).isAllOnes(minRow, minCol, maxRow, maxCol))
+                submarinesCounter--;
         }
         return submarinesCounter;
     }
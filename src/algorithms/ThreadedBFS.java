@@ -1,5 +1,6 @@
 package algorithms;
 
+import components.IntTraversable;
 import components.Node;
 import components.Traversable;
 import org.jetbrains.annotations.NotNull;
@@ -8,12 +9,25 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A class that implements the bfs algorithm to find all shortest paths of a graph.
+ * A class that implements the bfs algorithm to find all shortest paths of a graph.<br>
+ * The searches stop with a {@link SearchCancelledException} when the {@link CancellationToken} of the instance is cancelled.
  */
 public class ThreadedBFS<T> {
     //Using threadLocal so each client that requests the use of BFS class, will have his own values
     //corresponding to his thread
     private final ThreadLocal<LinkedList<LinkedList<Node<T>>>> localQueue = ThreadLocal.withInitial(LinkedList::new);
+    private final CancellationToken cancellationToken;
+
+    public ThreadedBFS() {
+        this(new CancellationToken());
+    }
+
+    /**
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public ThreadedBFS(@NotNull CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
 
     /**
      * This method traverses over a graph and find all the paths with minimum length<br>
@@ -24,7 +38,18 @@ public class ThreadedBFS<T> {
      * @param destination The destination node
      * @return List of lists of all shortest paths.
      */
+    @SuppressWarnings("unchecked")
     public List<List<Node<T>>> getShortestPaths(@NotNull Traversable<T> graph, Node<T> source, Node<T> destination) {
+        //primitive graphs are searched by node ids, and only the result is converted back to nodes
+        if (graph instanceof IntTraversable<?>) {
+            IntTraversable<T> intGraph = (IntTraversable<T>) graph;
+            List<List<Node<T>>> allShortestPaths = new ArrayList<>();
+
+            for (int[] path : getShortestPaths(intGraph, intGraph.toNodeId(source.getData()), intGraph.toNodeId(destination.getData())))
+                allShortestPaths.add(intGraph.toNodePath(path));
+            return allShortestPaths;
+        }
+
         //creating list of lists in case there multiple short path (with the same length)
         List<List<Node<T>>> allShortestPaths = new ArrayList<>();
 
@@ -42,8 +67,16 @@ public class ThreadedBFS<T> {
             return Collections.singletonList(currentPath);
 
         localQueue.get().add(currentPath);
+        long expandedPaths = 0;
 
         while (!localQueue.get().isEmpty()) {
+            try {
+                cancellationToken.checkpoint(++expandedPaths, SearchCancelledException.Phase.SEARCH,
+                        expandedPaths, allShortestPaths.size());
+            } catch (SearchCancelledException e) {
+                localQueue.get().clear();
+                throw e;
+            }
             //need to poll the current path from the LocalThread.
             currentPath = localQueue.get().poll();
 
@@ -78,4 +111,96 @@ public class ThreadedBFS<T> {
         localQueue.get().clear();
         return allShortestPaths;
     }
+
+    /**
+     * This method finds all the paths with minimum length from source node to destination node<br>
+     * of a primitive graph.<br>
+     * The method invokes the {@link #getShortestPathsDag(IntTraversable, int, int)} method, and then<br>
+     * enumerates the paths backwards from the destination.
+     *
+     * @param graph       The graph to traverse over.
+     * @param source      The source node id
+     * @param destination The destination node id
+     * @return List of all shortest paths, as arrays of node ids.
+     */
+    public List<int[]> getShortestPaths(@NotNull IntTraversable<?> graph, int source, int destination) {
+        //if at least one of the nodes has value of 0, there's no valid path
+        if (graph.getValue(source) == 0 || graph.getValue(destination) == 0)
+            return new ArrayList<>();
+
+        return getShortestPathsDag(graph, source, destination).getAllPaths(destination, cancellationToken);
+    }
+
+    /**
+     * Returns an iterator which produces the shortest paths of a primitive graph on demand.
+     *
+     * @param graph       The graph to traverse over.
+     * @param source      The source node id
+     * @param destination The destination node id
+     * @return Iterator over all shortest paths, as arrays of node ids.
+     */
+    public Iterator<int[]> getShortestPathsIterator(@NotNull IntTraversable<?> graph, int source, int destination) {
+        if (graph.getValue(source) == 0 || graph.getValue(destination) == 0)
+            return Collections.emptyIterator();
+
+        return getShortestPathsDag(graph, source, destination).pathsIterator(destination, cancellationToken);
+    }
+
+    /**
+     * Counts the shortest paths of a primitive graph without building them.
+     *
+     * @param graph       The graph to traverse over.
+     * @param source      The source node id
+     * @param destination The destination node id
+     * @return Amount of shortest paths ({@link Long#MAX_VALUE} if the amount is too large for a long).
+     */
+    public long countShortestPaths(@NotNull IntTraversable<?> graph, int source, int destination) {
+        if (graph.getValue(source) == 0 || graph.getValue(destination) == 0)
+            return 0;
+
+        return getShortestPathsDag(graph, source, destination).countPaths(destination, cancellationToken);
+    }
+
+    /**
+     * Runs a single BFS from the source, which records the distance of every node and all the predecessors<br>
+     * that reach a node on a shortest path.<br>
+     * Nodes which are as far as the destination (or farther) are not expanded.
+     *
+     * @param graph       The graph to traverse over.
+     * @param source      The source node id
+     * @param destination The destination node id
+     * @return {@link PredecessorDag} of all the shortest paths from the source.
+     */
+    public PredecessorDag getShortestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination) {
+        PredecessorDag shortestPathsDag = new PredecessorDag(graph.getNodesAmount(), source);
+
+        //distance of each node from the source, -1 means that the node wasn't reached yet
+        int[] distance = new int[graph.getNodesAmount()];
+        Arrays.fill(distance, -1);
+        distance[source] = 0;
+
+        IntQueue queue = new IntQueue(graph.getNodesAmount());
+        queue.add(source);
+        long expandedNodes = 0;
+
+        while (!queue.isEmpty()) {
+            cancellationToken.checkpoint(++expandedNodes, SearchCancelledException.Phase.SEARCH, expandedNodes, 0);
+            int currentNode = queue.poll();
+            int nextDistance = distance[currentNode] + 1;
+
+            //all the shortest paths to the destination are already recorded
+            if (distance[destination] != -1 && nextDistance > distance[destination])
+                break;
+
+            graph.forEachReachableNode(currentNode, node -> {
+                if (distance[node] == -1) {
+                    distance[node] = nextDistance;
+                    queue.add(node);
+                }
+                if (distance[node] == nextDistance)
+                    shortestPathsDag.addPredecessor(node, currentNode);
+            });
+        }
+        return shortestPathsDag;
+    }
 }
@@ -1,5 +1,6 @@
 package algorithms;
 
+import components.IntTraversable;
 import components.Node;
 import components.Traversable;
 import org.jetbrains.annotations.NotNull;
@@ -9,10 +10,31 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * This class finds the lightest paths of a node-weighted graph.<br>
+ * The searches stop with a {@link SearchCancelledException} when the {@link CancellationToken} of the instance is cancelled,<br>
+ * which bounds the enumeration of all the paths of a graph - it may never end on a large graph.
+ */
 public class ThreadedBellmanFord<T> {
+    //graphs with at least this amount of nodes are searched in parallel
+    private static final int PARALLEL_SEARCH_THRESHOLD = 1 << 20;
+
     private final ThreadLocal<Queue<List<Node<T>>>> localQueue = ThreadLocal.withInitial(LinkedList::new);
-    private final ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(5, 15, 500, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    //the shared pool of all the algorithms, which stays alive between the requests
+    private final ExecutorService poolExecutor = ComputePool.get();
     private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private final CancellationToken cancellationToken;
+
+    public ThreadedBellmanFord() {
+        this(new CancellationToken());
+    }
+
+    /**
+     * @param cancellationToken The token which the searches of this instance check.
+     */
+    public ThreadedBellmanFord(@NotNull CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
 
     /**
      * This method find ALL valid paths from between two given nodes.<br>
@@ -29,8 +51,16 @@ public class ThreadedBellmanFord<T> {
 
         currentPath.add(source);
         localQueue.get().offer(currentPath);
+        long expandedPaths = 0;
 
         while (!localQueue.get().isEmpty()) {
+            try {
+                cancellationToken.checkpoint(++expandedPaths, SearchCancelledException.Phase.PATHS,
+                        expandedPaths, allPaths.size());
+            } catch (SearchCancelledException e) {
+                localQueue.get().clear();
+                throw e;
+            }
             //retrieving the head path in the queue (FIFO)
             currentPath = localQueue.get().poll();
 
@@ -80,7 +110,17 @@ public class ThreadedBellmanFord<T> {
      * @param destination The destination node.
      * @return List of all lightest weights.
      */
+    @SuppressWarnings("unchecked")
     public LinkedList<List<Node<T>>> getLightestPath(Traversable<T> graph, Node<T> source, Node<T> destination) {
+        //primitive graphs are searched by node ids, and only the result is converted back to nodes
+        if (graph instanceof IntTraversable<?>) {
+            IntTraversable<T> intGraph = (IntTraversable<T>) graph;
+            LinkedList<List<Node<T>>> allLightestPaths = new LinkedList<>();
+
+            for (int[] path : getLightestPath(intGraph, intGraph.toNodeId(source.getData()), intGraph.toNodeId(destination.getData())))
+                allLightestPaths.add(intGraph.toNodePath(path));
+            return allLightestPaths;
+        }
         //Using AtomicInteger because the value are being updated inside a Callable (More readable than 'synchronized').
         AtomicInteger currentWeight = new AtomicInteger();
         AtomicInteger currentMinWeight = new AtomicInteger(Integer.MAX_VALUE);
@@ -142,8 +182,134 @@ public class ThreadedBellmanFord<T> {
             if (tempWeight == finalMinWeight.get())
                 allLightestPaths.add(aPath);
         }
-        this.poolExecutor.shutdown();
-
         return allLightestPaths;
     }
+
+    /**
+     * This method find ALL valid paths between two given nodes of a primitive graph.
+     *
+     * @param graph       The graph to traverse over.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return List of all valid paths, as arrays of node ids.
+     */
+    public List<int[]> getAllPaths(@NotNull IntTraversable<?> graph, int source, int destination) {
+        List<int[]> allPaths = new ArrayList<>();
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+
+        queue.offer(new int[]{source});
+        long expandedPaths = 0;
+
+        while (!queue.isEmpty()) {
+            cancellationToken.checkpoint(++expandedPaths, SearchCancelledException.Phase.PATHS, expandedPaths, allPaths.size());
+            int[] currentPath = queue.poll();
+            int lastNode = currentPath[currentPath.length - 1];
+
+            if (lastNode == destination)
+                allPaths.add(currentPath);
+
+            graph.forEachNeighbor(lastNode, node -> {
+                if (!contains(currentPath, node)) {
+                    int[] aPath = Arrays.copyOf(currentPath, currentPath.length + 1);
+                    aPath[currentPath.length] = node;
+                    queue.offer(aPath);
+                }
+            });
+        }
+        return allPaths;
+    }
+
+    private static boolean contains(int[] path, int node) {
+        for (int aNode : path) {
+            if (aNode == node)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The method sums up the total weight of a given path of node ids.
+     *
+     * @param graph    The graph.
+     * @param fullPath The path which weight is being summed up.
+     * @return Total weight of a path.
+     */
+    public int getPathWeight(@NotNull IntTraversable<?> graph, int @NotNull [] fullPath) {
+        int pathWeight = 0;
+        for (int node : fullPath) {
+            pathWeight += graph.getValue(node);
+        }
+        return pathWeight;
+    }
+
+    /**
+     * This method find all the lightest path between two given nodes in a primitive graph.<br>
+     * The method invokes the {@link DijkstraLightestPaths#getLightestPathsDag(IntTraversable, int, int)} method,<br>
+     * instead of enumerating and weighing all the paths of the graph.
+     *
+     * @param graph       The given graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return List of all lightest paths, as arrays of node ids.
+     */
+    public List<int[]> getLightestPath(@NotNull IntTraversable<?> graph, int source, int destination) {
+        return getLightestPathsDag(graph, source, destination, cancellationToken).getAllPaths(destination, cancellationToken);
+    }
+
+    /**
+     * Returns an iterator which produces the lightest paths between two given nodes in a primitive graph on demand.
+     *
+     * @param graph       The given graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return Iterator over all lightest paths, as arrays of node ids.
+     */
+    public Iterator<int[]> getLightestPathsIterator(@NotNull IntTraversable<?> graph, int source, int destination) {
+        return getLightestPathsDag(graph, source, destination, cancellationToken).pathsIterator(destination, cancellationToken);
+    }
+
+    /**
+     * Counts the lightest paths between two given nodes in a primitive graph without building them.
+     *
+     * @param graph       The given graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return Amount of lightest paths ({@link Long#MAX_VALUE} if the amount is too large for a long).
+     */
+    public long countLightestPaths(@NotNull IntTraversable<?> graph, int source, int destination) {
+        return getLightestPathsDag(graph, source, destination, cancellationToken).countPaths(destination, cancellationToken);
+    }
+
+    /**
+     * Finds all the lightest paths from the source of a primitive graph.<br>
+     * Large graphs are searched by {@link DeltaSteppingLightestPaths} in parallel, with its default delta,<br>
+     * smaller graphs by {@link DijkstraLightestPaths}.
+     *
+     * @param graph       The given graph.
+     * @param source      The source node id.
+     * @param destination The destination node id.
+     * @return {@link PredecessorDag} of all the lightest paths from the source.
+     */
+    public static PredecessorDag getLightestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination) {
+        return getLightestPathsDag(graph, source, destination, new CancellationToken());
+    }
+
+    /**
+     * Finds all the lightest paths from the source of a primitive graph, until the token is cancelled.
+     *
+     * @param graph             The given graph.
+     * @param source            The source node id.
+     * @param destination       The destination node id.
+     * @param cancellationToken The token of the search.
+     * @return {@link PredecessorDag} of all the lightest paths from the source.
+     * @throws SearchCancelledException If the token is cancelled before the search ends.
+     */
+    public static PredecessorDag getLightestPathsDag(@NotNull IntTraversable<?> graph, int source, int destination,
+                                                     @NotNull CancellationToken cancellationToken) {
+        if (graph.getNodesAmount() >= PARALLEL_SEARCH_THRESHOLD)
+            return new DeltaSteppingLightestPaths(DeltaSteppingLightestPaths.getDefaultDelta(), ComputePool.get(),
+                    cancellationToken).getLightestPathsDag(graph, source, destination);
+
+        return new DijkstraLightestPaths(cancellationToken).getLightestPathsDag(graph, source, destination);
+    }
 }
@@ -6,84 +6,105 @@ import org.jetbrains.annotations.NotNull;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
 
 /**
- * The class represents a DFS algorithm to traverse over a graph.
+ * The class represents a DFS algorithm to traverse over a graph.<br>
+ * The traversals stop with a {@link SearchCancelledException} when the {@link CancellationToken} of the instance is cancelled.
  */
 public class ThreadedDFS<T> implements Serializable {
+    //matrices with at least this amount of cells are labeled in parallel
+    private static final int PARALLEL_LABELING_THRESHOLD = 1 << 18;
+
     private final ThreadLocal<Stack<Node<T>>> localStack = ThreadLocal.withInitial((Stack::new));
     //LinkedHashSet keeps the insertion order
     private final ThreadLocal<Set<Node<T>>> localSet = ThreadLocal.withInitial((LinkedHashSet::new));
 
-    //pool to handle multiple incoming requests
-    private final ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(5, 15, 500, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    //the shared pool of all the algorithms, which stays alive between the requests
+    private final ExecutorService poolExecutor = ComputePool.get();
+    private final CancellationToken cancellationToken;
+
+    public ThreadedDFS() {
+        this(new CancellationToken());
+    }
 
-    //using read-write lock to prevent the 'reader-Writer problem'
-    private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * @param cancellationToken The token which the traversals of this instance check.
+     */
+    public ThreadedDFS(@NotNull CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
 
     /**
      * The method performs parallel traversing of a given graph.<br>
-     * Each iteration traverses the graph from a different node as a source node.<br>
-     * The method invokes the {@link #localTraverse(Traversable)} method.
+     * Each task traverses the graph from a different node as a source node.<br>
+     * The source is an argument of each traversal and the graph isn't changed, so the tasks need no lock<br>
+     * and run concurrently on the {@link ComputePool}.<br>
+     * The method invokes the {@link #localTraverse(Traversable, Node)} method.<br>
+     * If a traversal is cancelled, the traversals which didn't end yet are cancelled too.
      *
-     * @param graph         The graph to traverse.
-     * @param indicesOfOnes List of valid indices (value=1) to traverse from.
+     * @param graph The graph to traverse.
+     * @param roots List of valid nodes (value=1) to traverse from.
      * @return HashSet of all connected components.
      */
-    public HashSet<HashSet<T>> parallelTraverse(Traversable<T> graph, @NotNull List<Index> indicesOfOnes) {
+    public HashSet<HashSet<T>> parallelTraverse(Traversable<T> graph, @NotNull List<T> roots) {
         //using the Parallel approach in order to 'cover' more area simultaneously and save runtime.
-        HashSet<Future<HashSet<T>>> futureSetOfConnectedComponents = new HashSet<>();
+        List<Future<HashSet<T>>> futureSetOfConnectedComponents = new ArrayList<>(roots.size());
         HashSet<HashSet<T>> indicesSet = new HashSet<>();
 
-        //iterating over all valid indices
-        for (int i = 0; i < indicesOfOnes.size(); i++) {
-            int finalI = i;
-
-            Callable<HashSet<T>> currentNodeTraversal = () -> {
-                //locking the write option so another thread won't be able to use the same index object
-                readWriteLock.writeLock().lock();
-
-                //setting new source on each iteration
-                graph.setSource(indicesOfOnes.get(finalI));
-
-                //executing the local traverse on the graph with the current node as source
-                HashSet<Index> connectedComponent = (HashSet<Index>) localTraverse(graph);
-                readWriteLock.writeLock().unlock();
-                return (HashSet<T>) connectedComponent;
-            };
-
-            //submitting the callable task to the pool and moving on to the next index (node).
-            //using Future because we need to store the result of asynchronous operation.
-            Future<HashSet<T>> futureSet = poolExecutor.submit(currentNodeTraversal);
-            futureSetOfConnectedComponents.add(futureSet);
-        }
+        //iterating over all valid nodes, and submitting a traversal from each one of them to the pool
+        for (T root : roots)
+            futureSetOfConnectedComponents.add(poolExecutor.submit(() -> (HashSet<T>) localTraverse(graph, new Node<>(root))));
 
         //trying to add a single component to the set of all connected components.
         for (Future<HashSet<T>> futureComponent : futureSetOfConnectedComponents) {
             try {
                 indicesSet.add(futureComponent.get());
-            } catch (InterruptedException | ExecutionException e) {
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof SearchCancelledException cancelled)) {
+                    e.printStackTrace();
+                    continue;
+                }
+                //the other traversals check the same token, so they would stop anyway
+                futureSetOfConnectedComponents.forEach(future -> future.cancel(false));
+                throw cancelled;
+            } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }
-        this.poolExecutor.shutdown();
         return indicesSet;
     }
 
     /**
      * Locally traversing over a graph to get all the connected components<br>
-     * from the origin node of the given graph.
+     * from the given root node.
      *
      * @param graph The graph to traverse.
+     * @param root  The node to start from.
      * @return A set of connected components.
      */
-    public Set<T> localTraverse(@NotNull Traversable<T> graph) {
-        //inserting the graph's root node to the working (local) stack
-        localStack.get().push(graph.getRoot());
+    @SuppressWarnings("unchecked")
+    public Set<T> localTraverse(@NotNull Traversable<T> graph, @NotNull Node<T> root) {
+        //primitive graphs are traversed by node ids, and only the result is converted back to nodes data
+        if (graph instanceof IntTraversable<?>) {
+            IntTraversable<T> intGraph = (IntTraversable<T>) graph;
+            Set<T> connectedComponent = new HashSet<>();
+
+            localTraverse(intGraph, intGraph.toNodeId(root.getData()))
+                    .stream().forEach(node -> connectedComponent.add(intGraph.fromNodeId(node)));
+            return connectedComponent;
+        }
+        //inserting the root node to the working (local) stack
+        localStack.get().push(root);
+        long expandedNodes = 0;
 
         while (!localStack.get().isEmpty()) {
+            try {
+                cancellationToken.checkpoint(++expandedNodes, SearchCancelledException.Phase.SEARCH, expandedNodes, 0);
+            } catch (SearchCancelledException e) {
+                localStack.get().clear();
+                localSet.get().clear();
+                throw e;
+            }
             Node<T> poppedNode = localStack.get().pop();
             localSet.get().add(poppedNode);
 
@@ -104,20 +125,60 @@ public class ThreadedDFS<T> implements Serializable {
         return connectedComponent;
     }
 
+    /**
+     * Locally traversing over a primitive graph to get all the nodes which are connected to the root node.<br>
+     * The visited nodes are kept in a {@link BitSet}, so no {@link Node} objects are created.
+     *
+     * @param graph The graph to traverse.
+     * @param root  The id of the node to start from.
+     * @return The ids of the connected nodes (including the root).
+     */
+    public BitSet localTraverse(@NotNull IntTraversable<?> graph, int root) {
+        BitSet visited = new BitSet(graph.getNodesAmount());
+        IntStack stack = new IntStack();
+
+        //nodes are marked when pushed, so each node is pushed only once
+        visited.set(root);
+        stack.push(root);
+        long expandedNodes = 0;
+
+        while (!stack.isEmpty()) {
+            cancellationToken.checkpoint(++expandedNodes, SearchCancelledException.Phase.SEARCH, expandedNodes, 0);
+            graph.forEachReachableNode(stack.pop(), node -> {
+                if (!visited.get(node)) {
+                    visited.set(node);
+                    stack.push(node);
+                }
+            });
+        }
+        return visited;
+    }
+
     /**
      * This method is used to find all Strongly connected components of a graph.<br>
-     * The method invokes the {@link #parallelTraverse(Traversable, List)} method.
+     * The method invokes the {@link ConnectedComponentsLabeler#label(Matrix)} method, which visits every cell once<br>
+     * instead of traversing the whole component from each one of its cells.<br>
+     * Large matrices are labeled in parallel tiles.
      *
-     * @param matrix The given matrix (which is converted to {@link TraversableMatrix} inside the method).
+     * @param matrix The given matrix.
      * @return List of hash sets of strongly connected components, sorted by set size
      */
     public List<HashSet<Index>> stronglyConnectedComponents(@NotNull Matrix matrix) {
-        List<Index> indicesOfOnes = matrix.getIndicesOfOnes();
-        TraversableMatrix traversableMatrix = new TraversableMatrix(matrix);
-        ThreadedDFS<Index> dfs = new ThreadedDFS<>();
-        HashSet<HashSet<Index>> allConnectedComponents = dfs.parallelTraverse(traversableMatrix, indicesOfOnes);
+        return labelComponents(matrix).toConnectedComponents();
+    }
+
+    /**
+     * Labels the connected components of a matrix, in parallel if the matrix is large enough.
+     *
+     * @param matrix The given matrix.
+     * @return The {@link ComponentLabeling} of the matrix.
+     */
+    public static ComponentLabeling labelComponents(@NotNull Matrix matrix) {
+        long cellsAmount = (long) matrix.getRows() * matrix.getColumns();
 
-        //returning a size-wise sorted set of connected components
-        return allConnectedComponents.stream().sorted(Comparator.comparing(HashSet::size)).collect(Collectors.toList());
+        ConnectedComponentsLabeler labeler = cellsAmount >= PARALLEL_LABELING_THRESHOLD ?
+                new ConnectedComponentsLabeler(ConnectedComponentsLabeler.DEFAULT_TILE_ROWS) :
+                new ConnectedComponentsLabeler();
+        return labeler.label(matrix);
     }
 }
@@ -0,0 +1,96 @@
+package algorithms;
+
+/**
+ * A disjoint-set (union-find) structure over the elements {@code 0..size-1}.<br>
+ * The sets are stored in flat int arrays and the structure uses path compression<br>
+ * and union by rank, so every operation runs in nearly constant amortized time.
+ */
+public class UnionFind {
+    private final int[] parent;
+    private final byte[] rank;
+
+    public UnionFind(int size) {
+        if (size < 0) throw new IllegalArgumentException("Size can't be negative");
+
+        this.parent = new int[size];
+        this.rank = new byte[size];
+
+        //at first, every element is the root of its own set
+        for (int i = 0; i < size; i++)
+            parent[i] = i;
+    }
+
+    public int size() {
+        return parent.length;
+    }
+
+    /**
+     * Finds the root (representative) of the set which contains the given element.<br>
+     * Every element on the way is re-attached directly to the root (path compression).
+     *
+     * @param element The element to look for.
+     * @return The root of the element's set.
+     */
+    public int find(int element) {
+        int root = element;
+
+        while (parent[root] != root)
+            root = parent[root];
+
+        //second pass - compressing the path to the root
+        while (parent[element] != root) {
+            int next = parent[element];
+            parent[element] = root;
+            element = next;
+        }
+        return root;
+    }
+
+    /**
+     * Finds the root of the set which contains the given element without modifying the structure.<br>
+     * Several threads can call this method concurrently, as long as no thread merges sets at the same time.
+     *
+     * @param element The element to look for.
+     * @return The root of the element's set.
+     */
+    public int findWithoutCompression(int element) {
+        while (parent[element] != element)
+            element = parent[element];
+        return element;
+    }
+
+    /**
+     * Merges the sets of two given elements.<br>
+     * The root of the lower rank set is attached under the root of the higher rank set.
+     *
+     * @param first  The first element.
+     * @param second The second element.
+     * @return The root of the merged set.
+     */
+    public int union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+
+        if (firstRoot == secondRoot)
+            return firstRoot;
+
+        if (rank[firstRoot] < rank[secondRoot]) {
+            parent[firstRoot] = secondRoot;
+            return secondRoot;
+        }
+        if (rank[firstRoot] == rank[secondRoot])
+            rank[firstRoot]++;
+
+        parent[secondRoot] = firstRoot;
+        return firstRoot;
+    }
+
+    /**
+     * @param first  The first element.
+     * @param second The second element.
+     * @return true if both elements are in the same set, false otherwise.
+     */
+    public boolean connected(int first, int second) {
+        return find(first) == find(second);
+    }
+}
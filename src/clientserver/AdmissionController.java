@@ -0,0 +1,282 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which sessions & requests the server takes, so an overloaded server answers fast instead of queueing forever.<br>
+ * <br>
+ * - Sessions: at most {@link #getMaxSessions()} connections are open at the same time, the rest are closed at once.<br>
+ * - Requests: at most {@link #getMaxInFlight()} requests are admitted and not completed yet (queued or running).<br>
+ * - Clients: each client address has a token bucket of {@link #getClientBurst()} requests,<br>
+ * which is refilled by {@link #getClientRequestsPerSecond()} requests per second.<br>
+ * A rejected request gets a "busy" response with the time to wait before sending it again,<br>
+ * and it never reaches the compute pool.<br>
+ * <br>
+ * Admitted requests are timed in two parts - the time they waited in the queues, and the time they ran.<br>
+ * <br>
+ * The limits are read from system properties: {@value #MAX_SESSIONS_PROPERTY}, {@value #MAX_IN_FLIGHT_PROPERTY},<br>
+ * {@value #CLIENT_RATE_PROPERTY} & {@value #CLIENT_BURST_PROPERTY}.
+ */
+public class AdmissionController {
+    public static final String MAX_SESSIONS_PROPERTY = "matrix.server.maxSessions";
+    public static final String MAX_IN_FLIGHT_PROPERTY = "matrix.server.maxInFlight";
+    public static final String CLIENT_RATE_PROPERTY = "matrix.server.clientRequestsPerSecond";
+    public static final String CLIENT_BURST_PROPERTY = "matrix.server.clientBurst";
+
+    public static final int DEFAULT_MAX_SESSIONS = 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    public static final int DEFAULT_CLIENT_REQUESTS_PER_SECOND = 200;
+    public static final int DEFAULT_CLIENT_BURST = 400;
+
+    //the wait which is suggested when the server is full, before any request completed
+    private static final int DEFAULT_RETRY_AFTER_MILLIS = 50;
+    private static final int MAX_RETRY_AFTER_MILLIS = 5000;
+    //idle clients buckets are dropped when there are more buckets than this
+    private static final int MAX_IDLE_BUCKETS = 10_000;
+
+    private final int maxSessions;
+    private final int maxInFlight;
+    private final double clientRequestsPerSecond;
+    private final int clientBurst;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentHashMap<InetAddress, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedSessionsCount = new AtomicLong();
+    private final AtomicLong rejectedBusyCount = new AtomicLong();
+    private final AtomicLong rejectedRateLimitedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong computeNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    /**
+     * Creates a controller with the limits of the system properties, or the default limits.
+     */
+    public AdmissionController() {
+        this(Integer.getInteger(MAX_SESSIONS_PROPERTY, DEFAULT_MAX_SESSIONS),
+                Integer.getInteger(MAX_IN_FLIGHT_PROPERTY, DEFAULT_MAX_IN_FLIGHT),
+                Integer.getInteger(CLIENT_RATE_PROPERTY, DEFAULT_CLIENT_REQUESTS_PER_SECOND),
+                Integer.getInteger(CLIENT_BURST_PROPERTY, DEFAULT_CLIENT_BURST));
+    }
+
+    /**
+     * @param maxSessions             Maximum amount of open connections.
+     * @param maxInFlight             Maximum amount of admitted requests which are not completed yet.
+     * @param clientRequestsPerSecond The sustained request rate of each client address.
+     * @param clientBurst             Maximum amount of requests that a client address can send at once.
+     */
+    public AdmissionController(int maxSessions, int maxInFlight, double clientRequestsPerSecond, int clientBurst) {
+        if (maxSessions <= 0 || maxInFlight <= 0 || clientRequestsPerSecond <= 0 || clientBurst <= 0)
+            throw new IllegalArgumentException("Admission limits must be positive");
+
+        this.maxSessions = maxSessions;
+        this.maxInFlight = maxInFlight;
+        this.clientRequestsPerSecond = clientRequestsPerSecond;
+        this.clientBurst = clientBurst;
+    }
+
+    /**
+     * @return true if the session is admitted, and then {@link #closeSession()} must be called when it ends.
+     */
+    public boolean tryOpenSession() {
+        if (sessions.incrementAndGet() > maxSessions) {
+            sessions.decrementAndGet();
+            rejectedSessionsCount.incrementAndGet();
+            return false;
+        }
+        if (clientBuckets.size() > MAX_IDLE_BUCKETS)
+            clientBuckets.values().removeIf(bucket -> bucket.isFull(System.nanoTime()));
+        return true;
+    }
+
+    public void closeSession() {
+        sessions.decrementAndGet();
+    }
+
+    /**
+     * Tries to admit a request.<br>
+     * An admitted request holds an in-flight place until its {@link Ticket} is completed.
+     *
+     * @param client The address of the client.
+     * @return The ticket of the request.
+     * @throws ServerBusyException If the request is rejected.
+     */
+    public Ticket admit(@NotNull InetAddress client) throws ServerBusyException {
+        long now = System.nanoTime();
+        TokenBucket bucket = clientBuckets.computeIfAbsent(client, address -> new TokenBucket(now));
+        long waitNanos = bucket.tryTake(now);
+
+        if (waitNanos > 0) {
+            rejectedRateLimitedCount.incrementAndGet();
+            throw new ServerBusyException(toRetryMillis(waitNanos));
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            rejectedBusyCount.incrementAndGet();
+            throw new ServerBusyException(getBusyRetryAfterMillis());
+        }
+        admittedCount.incrementAndGet();
+        return new Ticket(now);
+    }
+
+    /**
+     * @return The time that a client should wait when the server is full.
+     */
+    public int getBusyRetryAfterMillis() {
+        long completed = completedCount.get();
+
+        //a place is freed about once in the average compute time of a request
+        return completed == 0 ? DEFAULT_RETRY_AFTER_MILLIS : toRetryMillis(computeNanos.get() / completed);
+    }
+
+    private static int toRetryMillis(long nanos) {
+        return (int) Math.min(MAX_RETRY_AFTER_MILLIS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos) + 1));
+    }
+
+    /**
+     * Registers the admission counters & the timings of the requests.
+     *
+     * @param metrics The server metrics.
+     */
+    public void registerMetrics(@NotNull ServerMetrics metrics) {
+        metrics.register("admission.sessions", sessions::get);
+        metrics.register("admission.inFlight", inFlight::get);
+        metrics.register("admission.admitted", admittedCount::get);
+        metrics.register("admission.rejectedSessions", rejectedSessionsCount::get);
+        metrics.register("admission.rejectedBusy", rejectedBusyCount::get);
+        metrics.register("admission.rejectedRateLimited", rejectedRateLimitedCount::get);
+        metrics.register("requests.completed", completedCount::get);
+        metrics.register("requests.queueWaitMicros", () -> TimeUnit.NANOSECONDS.toMicros(queueWaitNanos.get()));
+        metrics.register("requests.computeMicros", () -> TimeUnit.NANOSECONDS.toMicros(computeNanos.get()));
+        metrics.register("requests.maxQueueWaitMicros", () -> TimeUnit.NANOSECONDS.toMicros(maxQueueWaitNanos.get()));
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public double getClientRequestsPerSecond() {
+        return clientRequestsPerSecond;
+    }
+
+    public int getClientBurst() {
+        return clientBurst;
+    }
+
+    public int getSessionsCount() {
+        return sessions.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * The in-flight place of an admitted request, which also times the request.
+     */
+    public class Ticket {
+        private final long admittedNanos;
+        private long startedNanos;
+        private boolean started;
+        private boolean completed;
+
+        private Ticket(long admittedNanos) {
+            this.admittedNanos = admittedNanos;
+        }
+
+        /**
+         * Marks the end of the queue wait, when the request starts to run.
+         */
+        public void start() {
+            this.startedNanos = System.nanoTime();
+            this.started = true;
+            long waitNanos = startedNanos - admittedNanos;
+
+            queueWaitNanos.addAndGet(waitNanos);
+            maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        /**
+         * Frees the in-flight place of the request. Completing a ticket more than once has no effect.
+         */
+        public void complete() {
+            if (completed)
+                return;
+
+            completed = true;
+            inFlight.decrementAndGet();
+
+            if (started) {
+                computeNanos.addAndGet(System.nanoTime() - startedNanos);
+                completedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Wraps a task, so it times the request and frees its place when it ends.
+         *
+         * @param task The task which runs the request.
+         * @return The wrapped task.
+         */
+        public Runnable wrap(@NotNull Runnable task) {
+            return () -> {
+                start();
+
+                try {
+                    task.run();
+                } finally {
+                    complete();
+                }
+            };
+        }
+    }
+
+    /**
+     * The requests allowance of a single client address.
+     */
+    private class TokenBucket {
+        private double tokens;
+        private long refilledNanos;
+
+        private TokenBucket(long now) {
+            this.tokens = clientBurst;
+            this.refilledNanos = now;
+        }
+
+        /**
+         * @return 0 if a token was taken, or the time until the next token is available.
+         */
+        private synchronized long tryTake(long now) {
+            refill(now);
+
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) ((1 - tokens) / clientRequestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= clientBurst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(clientBurst, tokens + (now - refilledNanos) * clientRequestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            refilledNanos = now;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package clientserver;
+
+import algorithms.SearchCancelledException;
+import components.Index;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An asynchronous client of the {@link BinaryProtocol}, which pipelines its requests over a single connection.<br>
+ * Each request gets an id and is sent at once, without waiting for the previous responses.<br>
+ * A reader thread completes the future of each request when its response arrives,<br>
+ * so a slow query doesn't hold back the responses of the requests that were sent after it.<br>
+ * A request which the server rejects as busy is sent again after the time that the server asks to wait,<br>
+ * which is doubled on each retry & jittered, so a burst of rejected requests doesn't come back all at once.<br>
+ * After {@value #MAX_BUSY_RETRIES} retries the future of the request fails with a {@link ServerBusyException}.<br>
+ * Servers from {@link BinaryProtocol#DEADLINE_VERSION} stop the queries which overrun the timeout of the client,<br>
+ * and their futures fail with a {@link SearchCancelledException}.
+ */
+public class AsyncMatrixClient implements Closeable {
+    public static final int MAX_BUSY_RETRIES = 10;
+    //the wait of the server is doubled at most this amount of times
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
+    private final Socket socket;
+    private final DataOutputStream toServer;
+    private final InputStream fromServer;
+    private final Map<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final byte protocolVersion;
+    private final int timeoutMillis;
+    private volatile IOException connectionFailure;
+
+    /**
+     * Connects to the server, and checks that it supports pipelined requests.<br>
+     * The queries run until the timeout of the server.
+     *
+     * @param host The server host.
+     * @param port The server port.
+     */
+    public AsyncMatrixClient(@NotNull String host, int port) throws IOException {
+        this(host, port, 0);
+    }
+
+    /**
+     * Connects to the server, and checks that it supports pipelined requests.
+     *
+     * @param host          The server host.
+     * @param port          The server port.
+     * @param timeoutMillis The time that the server may run each query, or 0 for the server limit.
+     */
+    public AsyncMatrixClient(@NotNull String host, int port, int timeoutMillis) throws IOException {
+        if (timeoutMillis < 0)
+            throw new IllegalArgumentException("Timeout can't be negative");
+
+        this.timeoutMillis = timeoutMillis;
+        this.socket = new Socket(host, port);
+        this.toServer = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.fromServer = new BufferedInputStream(socket.getInputStream());
+
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+        BinaryProtocol.writeRequestHeader(new DataOutputStream(requestBytes), BinaryProtocol.VERSION, BinaryProtocol.HELLO);
+        sendFrame(requestBytes);
+
+        FrameInputStream response = new FrameInputStream(fromServer);
+        this.protocolVersion = BinaryProtocol.readResponseHeader(new DataInputStream(response));
+        response.skipToEnd();
+
+        if (protocolVersion < BinaryProtocol.PIPELINED_VERSION) {
+            socket.close();
+            throw new IOException("Server doesn't support pipelined requests");
+        }
+        Thread reader = new Thread(this::readResponses, "async-matrix-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public CompletableFuture<List<HashSet<Index>>> connectedComponents(int @NotNull [] @NotNull [] matrix) {
+        return send(BinaryProtocol.CONNECTED_COMPONENTS, request -> BinaryProtocol.writeMatrix(request, matrix))
+                .thenApply(response -> decode(() -> BinaryProtocol.readComponents(response, matrix[0].length)));
+    }
+
+    public CompletableFuture<Integer> countSubmarines(int @NotNull [] @NotNull [] matrix) {
+        return send(BinaryProtocol.SUBMARINES, request -> BinaryProtocol.writeMatrix(request, matrix))
+                .thenApply(response -> decode(response::readInt));
+    }
+
+    /**
+     * Uploads a matrix to the server store, so the next requests can send its handle instead of its cells.
+     *
+     * @param matrix The matrix.
+     * @return Future of the matrix handle.
+     */
+    public CompletableFuture<Long> uploadMatrix(int @NotNull [] @NotNull [] matrix) {
+        return send(BinaryProtocol.UPLOAD_MATRIX, request -> BinaryProtocol.writeMatrix(request, matrix))
+                .thenApply(response -> decode(response::readLong));
+    }
+
+    /**
+     * @param matrixHandle The handle of an uploaded matrix.
+     * @return Future of the submarines count, which fails if the matrix isn't stored anymore.
+     */
+    public CompletableFuture<Integer> countSubmarines(long matrixHandle) {
+        return send(BinaryProtocol.SUBMARINES, request -> BinaryProtocol.writeMatrixHandle(request, matrixHandle))
+                .thenApply(response -> decode(response::readInt));
+    }
+
+    /**
+     * @param matrixHandle The handle of an uploaded matrix.
+     * @param topLeft      The top left corner of the rectangle.
+     * @param bottomRight  The bottom right corner of the rectangle.
+     * @return Future of the amount of ones in the rectangle, which fails if the matrix isn't stored anymore.
+     */
+    public CompletableFuture<Integer> countOnes(long matrixHandle, @NotNull Index topLeft, @NotNull Index bottomRight) {
+        return send(BinaryProtocol.COUNT_ONES, request -> {
+            BinaryProtocol.writeMatrixHandle(request, matrixHandle);
+            BinaryProtocol.writeIndex(request, topLeft);
+            BinaryProtocol.writeIndex(request, bottomRight);
+        }).thenApply(response -> decode(response::readInt));
+    }
+
+    public CompletableFuture<List<List<Index>>> shortestPaths(int @NotNull [] @NotNull [] matrix,
+                                                              @NotNull Index source, @NotNull Index destination) {
+        return pathsQuery(BinaryProtocol.SHORTEST_PATHS, matrix, source, destination);
+    }
+
+    public CompletableFuture<List<List<Index>>> lightestPaths(int @NotNull [] @NotNull [] matrix,
+                                                              @NotNull Index source, @NotNull Index destination) {
+        return pathsQuery(BinaryProtocol.LIGHTEST_PATHS, matrix, source, destination);
+    }
+
+    /**
+     * @return Amount of requests which were sent and didn't get a response yet.
+     */
+    public int getPendingRequestsCount() {
+        return pendingRequests.size();
+    }
+
+    private CompletableFuture<List<List<Index>>> pathsQuery(byte opcode, int[][] matrix, Index source, Index destination) {
+        return send(opcode, request -> {
+            BinaryProtocol.writeMatrix(request, matrix);
+            BinaryProtocol.writeIndex(request, source);
+            BinaryProtocol.writeIndex(request, destination);
+        }).thenApply(response -> decode(() -> BinaryProtocol.readPaths(response, matrix[0].length)));
+    }
+
+    /**
+     * Sends a request with a new id.
+     *
+     * @param opcode        The command opcode.
+     * @param payloadWriter Writes the payload of the request.
+     * @return Future of the response payload.
+     */
+    private CompletableFuture<DataInputStream> send(byte opcode, PayloadWriter payloadWriter) {
+        int requestId = nextRequestId.getAndIncrement();
+        CompletableFuture<DataInputStream> response = new CompletableFuture<>();
+
+        try {
+            ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+            DataOutputStream request = new DataOutputStream(requestBytes);
+            if (protocolVersion >= BinaryProtocol.DEADLINE_VERSION)
+                BinaryProtocol.writeDeadlineRequestHeader(request, opcode, requestId, timeoutMillis);
+            else
+                BinaryProtocol.writePipelinedRequestHeader(request, opcode, requestId);
+            payloadWriter.write(request);
+
+            sendPending(requestId, new PendingRequest(requestBytes, response));
+        } catch (IOException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private void sendPending(int requestId, PendingRequest pendingRequest) {
+        try {
+            //registering before sending, since the response may arrive before this method returns
+            pendingRequests.put(requestId, pendingRequest);
+            sendFrame(pendingRequest.requestBytes);
+
+            //the reader may have stopped before the request was registered
+            if (connectionFailure != null)
+                throw connectionFailure;
+        } catch (IOException e) {
+            pendingRequests.remove(requestId);
+            pendingRequest.response.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Sends a rejected request again after the wait that the server asked for, or fails it if it was retried enough.
+     */
+    private void retry(int requestId, PendingRequest pendingRequest, ServerBusyException busy) {
+        if (pendingRequest.retries++ >= MAX_BUSY_RETRIES) {
+            pendingRequest.response.completeExceptionally(busy);
+            return;
+        }
+        long backoffMillis = (long) busy.getRetryAfterMillis() << Math.min(pendingRequest.retries, MAX_BACKOFF_SHIFT);
+        long delayMillis = backoffMillis + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        Executor delayedExecutor = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);
+        delayedExecutor.execute(() -> sendPending(requestId, pendingRequest));
+    }
+
+    private void sendFrame(ByteArrayOutputStream requestBytes) throws IOException {
+        synchronized (toServer) {
+            toServer.writeInt(requestBytes.size());
+            requestBytes.writeTo(toServer);
+            toServer.flush();
+        }
+    }
+
+    /**
+     * Reads the responses in the order they arrive, and completes the future of each one by its request id.
+     */
+    private void readResponses() {
+        try {
+            while (true) {
+                FrameInputStream frames = new FrameInputStream(fromServer);
+                DataInputStream response = new DataInputStream(new ByteArrayInputStream(frames.readAllBytes()));
+
+                if (response.readShort() != BinaryProtocol.MAGIC)
+                    throw new IOException("Not a binary protocol response");
+
+                byte version = response.readByte();
+                byte status = response.readByte();
+                int requestId = response.readInt();
+                PendingRequest pendingRequest = pendingRequests.remove(requestId);
+
+                if (pendingRequest == null)
+                    continue;
+
+                try {
+                    BinaryProtocol.checkStatus(response, version, status);
+                    pendingRequest.response.complete(response);
+                } catch (ServerBusyException e) {
+                    retry(requestId, pendingRequest, e);
+                } catch (IOException | SearchCancelledException e) {
+                    pendingRequest.response.completeExceptionally(e);
+                }
+            }
+        } catch (IOException e) {
+            //the connection is closed - no more responses will arrive
+            connectionFailure = e;
+            pendingRequests.values().forEach(pendingRequest -> pendingRequest.response.completeExceptionally(e));
+            pendingRequests.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private static <T> T decode(Decoder<T> decoder) {
+        try {
+            return decoder.decode();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A request which was sent and wasn't answered yet, kept with its bytes so it can be sent again.
+     */
+    private static class PendingRequest {
+        private final ByteArrayOutputStream requestBytes;
+        private final CompletableFuture<DataInputStream> response;
+        //accessed only by the reader thread
+        private int retries;
+
+        private PendingRequest(ByteArrayOutputStream requestBytes, CompletableFuture<DataInputStream> response) {
+            this.requestBytes = requestBytes;
+            this.response = response;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PayloadWriter {
+        void write(DataOutputStream request) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode() throws IOException;
+    }
+}
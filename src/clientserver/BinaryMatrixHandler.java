@@ -0,0 +1,149 @@
+package clientserver;
+
+import algorithms.CancellationToken;
+import algorithms.SearchCancelledException;
+import components.Index;
+import components.TraversableMatrix;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import static clientserver.BinaryProtocol.*;
+
+/**
+ * Handles the matrix commands of the {@link BinaryProtocol}.<br>
+ * Each request frame holds a single command, and gets a single response frame.<br>
+ * Requests with a request id are independent of each other, so they can run concurrently.<br>
+ * Each query runs until the timeout of its request, and a query that overruns it gets a timed out response.
+ */
+public class BinaryMatrixHandler implements FrameHandler {
+    private final MatrixService matrixService;
+
+    public BinaryMatrixHandler() {
+        this(new MatrixService());
+    }
+
+    /**
+     * @param matrixService The service which executes the queries.
+     */
+    public BinaryMatrixHandler(@NotNull MatrixService matrixService) {
+        this.matrixService = matrixService;
+    }
+
+    @Override
+    public boolean isConcurrent(byte[] request) {
+        return isPipelinedRequest(request);
+    }
+
+    @Override
+    public void handleRequest(byte[] request, Consumer<ByteBuffer> responseFrames) {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(request));
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        byte version = VERSION;
+        byte status;
+        int requestId = 0;
+        int timeoutMillis = 0;
+
+        try {
+            //the magic was already checked by the router
+            input.readShort();
+            byte requestVersion = input.readByte();
+            byte opcode = input.readByte();
+
+            //a hello carries the highest version of the client, every other request must use a negotiated version
+            if (requestVersion < 1 || (requestVersion > VERSION && opcode != HELLO)) {
+                status = UNSUPPORTED_VERSION;
+            } else {
+                version = (byte) Math.min(requestVersion, VERSION);
+
+                if (version >= PIPELINED_VERSION && opcode != HELLO)
+                    requestId = input.readInt();
+                if (version >= DEADLINE_VERSION && opcode != HELLO)
+                    timeoutMillis = input.readInt();
+                execute(opcode, input, new DataOutputStream(payload), matrixService.newCancellationToken(timeoutMillis));
+                status = OK;
+            }
+        } catch (SearchCancelledException e) {
+            payload.reset();
+            status = version >= DEADLINE_VERSION ? TIMED_OUT : ERROR;
+
+            if (status == TIMED_OUT)
+                writeTimedOut(payload, e);
+            else
+                writeErrorMessage(payload, e);
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            payload.reset();
+            writeErrorMessage(payload, e);
+            status = ERROR;
+        }
+        ByteArrayOutputStream response = new ByteArrayOutputStream(payload.size() + Integer.BYTES);
+
+        try (FrameOutputStream frames = new FrameOutputStream(responseFrames)) {
+            writeResponseHeader(new DataOutputStream(response), version, status, requestId);
+            payload.writeTo(response);
+            frames.write(response.toByteArray(), 0, response.size());
+        } catch (IOException e) {
+            //writing to byte arrays doesn't fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Executes a single command, and writes its result.
+     *
+     * @param opcode            The command opcode.
+     * @param input             The payload of the request.
+     * @param output            The payload of the response.
+     * @param cancellationToken The token of the query.
+     */
+    private void execute(byte opcode, DataInputStream input, DataOutputStream output,
+                         CancellationToken cancellationToken) throws IOException {
+        MatrixStore store = matrixService.getMatrixStore();
+
+        switch (opcode) {
+            case HELLO -> {
+                //the version in the response header is the answer
+            }
+            case CONNECTED_COMPONENTS ->
+                    writeComponents(output, matrixService.labelComponents(readMatrix(input, store)).toComponentCells());
+            case SUBMARINES -> output.writeInt(matrixService.countSubmarines(readMatrix(input, store)));
+            case UPLOAD_MATRIX -> output.writeLong(matrixService.uploadMatrix(readMatrix(input)));
+            case COUNT_ONES -> output.writeInt(matrixService.countOnes(readMatrix(input, store), readIndex(input), readIndex(input)));
+            case SHORTEST_PATHS, LIGHTEST_PATHS -> {
+                TraversableMatrix graph = new TraversableMatrix(readMatrix(input, store));
+                int source = readNodeId(input, graph);
+                int destination = readNodeId(input, graph);
+
+                writePaths(output, opcode == SHORTEST_PATHS ? matrixService.getShortestPaths(graph, source, destination, cancellationToken)
+                        : matrixService.getLightestPaths(graph, source, destination, cancellationToken));
+            }
+            default -> throw new IllegalArgumentException("Unknown opcode " + opcode);
+        }
+    }
+
+    private static int readNodeId(DataInputStream input, TraversableMatrix graph) throws IOException {
+        Index index = readIndex(input);
+
+        if (!graph.validateIndex(index))
+            throw new IndexOutOfBoundsException("Index " + index + " is out of the matrix bounds");
+        return graph.toNodeId(index);
+    }
+
+    private static void writeErrorMessage(ByteArrayOutputStream payload, Exception e) {
+        try {
+            new DataOutputStream(payload).writeUTF(String.valueOf(e.getMessage()));
+        } catch (IOException ignored) {
+            //writing to byte arrays doesn't fail
+        }
+    }
+
+    private static void writeTimedOut(ByteArrayOutputStream payload, SearchCancelledException e) {
+        try {
+            BinaryProtocol.writeTimedOut(new DataOutputStream(payload), e);
+        } catch (IOException ignored) {
+            //writing to byte arrays doesn't fail
+        }
+    }
+}
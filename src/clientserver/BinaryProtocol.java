@@ -0,0 +1,495 @@
+package clientserver;
+
+import algorithms.SearchCancelledException;
+import components.BinaryMatrix;
+import components.Index;
+import components.Matrix;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The binary wire protocol of the matrix commands, and its codec.<br>
+ * <br>
+ * A request frame starts with {@link #MAGIC}, the protocol version & an opcode, followed by the opcode payload.<br>
+ * A response frame starts with {@link #MAGIC}, the protocol version & a status, followed by the result.<br>
+ * The magic can't be the first bytes of a Java serialization stream (0xACED),<br>
+ * so both protocols are served on the same port.<br>
+ * The client negotiates the version with {@link #HELLO} - the server answers with the highest version both sides support.<br>
+ * <br>
+ * From {@link #PIPELINED_VERSION}, a request id follows the opcode (and the status of the response).<br>
+ * A client can send many such requests without waiting - the server runs them concurrently,<br>
+ * and sends each response as soon as it's ready, tagged with the id of its request.<br>
+ * From {@link #DEADLINE_VERSION}, the request id is followed by a timeout in milliseconds (0 for the server limit).<br>
+ * A query which doesn't end in time is stopped, and gets a {@link #TIMED_OUT} response with the statistics<br>
+ * of its partial work: its phase, then the elapsed milliseconds, the expanded nodes & the found paths.<br>
+ * Older versions get an {@link #ERROR} response with the same statistics in its message.<br>
+ * <br>
+ * An overloaded server answers any request - including a request of the objects protocol - with a {@link #BUSY}<br>
+ * response, whose payload is the time in milliseconds to wait before sending the request again.<br>
+ * <br>
+ * Encodings:<br>
+ * - Matrix: an encoding byte, rows & columns, then the row-major cells - 4 bytes per cell ({@link #INT_CELLS}),<br>
+ * or 1 bit per cell, packed into 64 bits words which start at each row ({@link #BIT_CELLS}).<br>
+ * A matrix which was uploaded with {@link #UPLOAD_MATRIX} is sent as {@link #STORED_MATRIX} & its handle instead.<br>
+ * - Index: row & column as var-ints.<br>
+ * - Rectangle ({@link #COUNT_ONES}): the top left index, then the bottom right index.<br>
+ * - Path: amount of cells, then each row-major cell (row * columns + column) as a var-int.<br>
+ * - Component: amount of cells, then the ascending row-major cells as var-int gaps from the previous cell.
+ */
+public final class BinaryProtocol {
+    public static final short MAGIC = 0x4D58;
+    //the highest supported version
+    public static final byte VERSION = 3;
+    public static final byte FIRST_VERSION = 1;
+    public static final byte PIPELINED_VERSION = 2;
+    public static final byte DEADLINE_VERSION = 3;
+
+    //request opcodes
+    public static final byte HELLO = 0;
+    public static final byte CONNECTED_COMPONENTS = 1;
+    public static final byte SHORTEST_PATHS = 2;
+    public static final byte SUBMARINES = 3;
+    public static final byte LIGHTEST_PATHS = 4;
+    public static final byte UPLOAD_MATRIX = 5;
+    public static final byte COUNT_ONES = 6;
+
+    //response statuses
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+    public static final byte UNSUPPORTED_VERSION = 2;
+    public static final byte BUSY = 3;
+    public static final byte TIMED_OUT = 4;
+
+    //matrix encodings
+    public static final byte INT_CELLS = 0;
+    public static final byte BIT_CELLS = 1;
+    public static final byte STORED_MATRIX = 2;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * @param request The bytes of a request frame.
+     * @return true if the frame is a binary protocol request.
+     */
+    public static boolean isBinaryRequest(byte @NotNull [] request) {
+        return request.length >= 2 && (short) (((request[0] & 0xFF) << 8) | (request[1] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * @param request The bytes of a request frame.
+     * @return true if the frame is a binary protocol request with a request id.
+     */
+    public static boolean isPipelinedRequest(byte @NotNull [] request) {
+        return isBinaryRequest(request) && request.length >= 4 && request[2] >= PIPELINED_VERSION && request[3] != HELLO;
+    }
+
+    /**
+     * Writes the header of a request without a request id.
+     *
+     * @param output  The request.
+     * @param version {@link #FIRST_VERSION}, or the highest version of the client for {@link #HELLO}.
+     * @param opcode  The command opcode.
+     */
+    public static void writeRequestHeader(@NotNull DataOutput output, byte version, byte opcode) throws IOException {
+        output.writeShort(MAGIC);
+        output.writeByte(version);
+        output.writeByte(opcode);
+    }
+
+    public static void writePipelinedRequestHeader(@NotNull DataOutput output, byte opcode, int requestId) throws IOException {
+        writeRequestHeader(output, PIPELINED_VERSION, opcode);
+        output.writeInt(requestId);
+    }
+
+    /**
+     * Writes the header of a pipelined request with a timeout.
+     *
+     * @param output        The request.
+     * @param opcode        The command opcode.
+     * @param requestId     The id of the request.
+     * @param timeoutMillis The time that the server may run the request, or 0 for the server limit.
+     */
+    public static void writeDeadlineRequestHeader(@NotNull DataOutput output, byte opcode, int requestId,
+                                                  int timeoutMillis) throws IOException {
+        writeRequestHeader(output, DEADLINE_VERSION, opcode);
+        output.writeInt(requestId);
+        output.writeInt(timeoutMillis);
+    }
+
+    /**
+     * @param output    The response.
+     * @param version   The version of the request.
+     * @param status    The response status.
+     * @param requestId The id of the request, which is written only from {@link #PIPELINED_VERSION}.
+     */
+    public static void writeResponseHeader(@NotNull DataOutput output, byte version, byte status, int requestId) throws IOException {
+        output.writeShort(MAGIC);
+        output.writeByte(version);
+        output.writeByte(status);
+
+        //an unsupported version response is readable by clients of every version
+        if (version >= PIPELINED_VERSION && status != UNSUPPORTED_VERSION)
+            output.writeInt(requestId);
+    }
+
+    /**
+     * Reads the header of a response.
+     *
+     * @param input The response.
+     * @return The version of the response.
+     * @throws IOException If the response isn't a binary response, or if the server failed the request.
+     */
+    public static byte readResponseHeader(@NotNull DataInput input) throws IOException {
+        if (input.readShort() != MAGIC)
+            throw new IOException("Not a binary protocol response");
+
+        byte version = input.readByte();
+        byte status = input.readByte();
+
+        if (version >= PIPELINED_VERSION && status != UNSUPPORTED_VERSION)
+            input.readInt();
+
+        checkStatus(input, version, status);
+        return version;
+    }
+
+    /**
+     * @param input   The response, after its header.
+     * @param version The version of the response.
+     * @param status  The status of the response.
+     * @throws IOException              If the server failed the request.
+     * @throws SearchCancelledException If the query timed out.
+     */
+    public static void checkStatus(@NotNull DataInput input, byte version, byte status) throws IOException {
+        switch (status) {
+            case OK -> {
+            }
+            case ERROR -> throw new IOException("Server error: " + input.readUTF());
+            case UNSUPPORTED_VERSION -> throw new IOException("Server supports only protocol version " + version);
+            case BUSY -> throw new ServerBusyException(input.readInt());
+            case TIMED_OUT -> throw readTimedOut(input);
+            default -> throw new IOException("Unknown response status " + status);
+        }
+    }
+
+    /**
+     * Writes the payload of a {@link #TIMED_OUT} response.
+     *
+     * @param output    The response.
+     * @param cancelled The exception which stopped the query.
+     */
+    public static void writeTimedOut(@NotNull DataOutput output, @NotNull SearchCancelledException cancelled) throws IOException {
+        output.writeByte(cancelled.getPhase().ordinal());
+        output.writeLong(cancelled.getElapsedMillis());
+        output.writeLong(cancelled.getExpandedNodes());
+        output.writeLong(cancelled.getFoundPaths());
+    }
+
+    private static SearchCancelledException readTimedOut(DataInput input) throws IOException {
+        SearchCancelledException.Phase[] phases = SearchCancelledException.Phase.values();
+        int phase = input.readByte();
+
+        if (phase < 0 || phase >= phases.length)
+            throw new IOException("Unknown search phase " + phase);
+
+        long elapsedMillis = input.readLong();
+        return new SearchCancelledException(true, phases[phase], input.readLong(), input.readLong(), elapsedMillis);
+    }
+
+    /**
+     * Rejects a request with a {@link #BUSY} response.<br>
+     * The response has the version & the id of the request, so a pipelining client can match it with its request.<br>
+     * Requests of the objects protocol get a {@link #FIRST_VERSION} response.
+     *
+     * @param request          The bytes of the rejected request frame.
+     * @param retryAfterMillis The time to wait before sending the request again.
+     * @param responseFrames   Receives the response frames.
+     */
+    public static void writeBusyResponse(byte @NotNull [] request, int retryAfterMillis,
+                                         @NotNull Consumer<ByteBuffer> responseFrames) {
+        writeRejection(request, BUSY, output -> output.writeInt(retryAfterMillis), responseFrames);
+    }
+
+    /**
+     * Rejects a connection over the sessions limit, before it sent any request.<br>
+     * The {@link #BUSY} response has the {@link #FIRST_VERSION}, so clients of every version can read it.
+     *
+     * @param retryAfterMillis The time to wait before connecting again.
+     * @return The bytes of the response frames.
+     */
+    public static byte[] busySessionResponse(int retryAfterMillis) {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        writeBusyResponse(new byte[0], retryAfterMillis, frame -> response.write(frame.array(), frame.position(), frame.remaining()));
+        return response.toByteArray();
+    }
+
+    /**
+     * Fails a request with an {@link #ERROR} response, when its handler couldn't answer it.<br>
+     * The response has the version & the id of the request, like a {@link #BUSY} response.
+     *
+     * @param request        The bytes of the failed request frame.
+     * @param message        The error message.
+     * @param responseFrames Receives the response frames.
+     */
+    public static void writeErrorResponse(byte @NotNull [] request, @NotNull String message,
+                                          @NotNull Consumer<ByteBuffer> responseFrames) {
+        writeRejection(request, ERROR, output -> output.writeUTF(message), responseFrames);
+    }
+
+    private static void writeRejection(byte[] request, byte status, PayloadWriter payloadWriter,
+                                       Consumer<ByteBuffer> responseFrames) {
+        byte version = FIRST_VERSION;
+        int requestId = 0;
+
+        if (isBinaryRequest(request) && request.length >= 4) {
+            version = (byte) Math.max(FIRST_VERSION, Math.min(request[2], VERSION));
+
+            if (isPipelinedRequest(request) && request.length >= 8)
+                requestId = ByteBuffer.wrap(request, 4, Integer.BYTES).getInt();
+        }
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+        try (FrameOutputStream frames = new FrameOutputStream(responseFrames)) {
+            DataOutputStream output = new DataOutputStream(response);
+            writeResponseHeader(output, version, status, requestId);
+            payloadWriter.write(output);
+            frames.write(response.toByteArray(), 0, response.size());
+        } catch (IOException e) {
+            //writing to byte arrays doesn't fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutput output) throws IOException;
+    }
+
+    /**
+     * Checks whether a response is a {@link #BUSY} response, without consuming it if it's not.<br>
+     * Works for the responses of both protocols.
+     *
+     * @param response The response, which must support mark & reset.
+     * @return The time to wait before sending the request again, or -1 if the response isn't a busy response.
+     */
+    public static int readRetryAfter(@NotNull InputStream response) throws IOException {
+        DataInputStream input = new DataInputStream(response);
+        response.mark(Short.BYTES + 2 + 2 * Integer.BYTES);
+
+        try {
+            if (input.readShort() == MAGIC) {
+                byte version = input.readByte();
+
+                if (input.readByte() == BUSY) {
+                    if (version >= PIPELINED_VERSION)
+                        input.readInt();
+                    return input.readInt();
+                }
+            }
+        } catch (EOFException e) {
+            //a short response can't be a busy response
+        }
+        response.reset();
+        return -1;
+    }
+
+    /**
+     * Writes a matrix, packed into bits if it contains only 0 & 1 values.
+     */
+    public static void writeMatrix(@NotNull DataOutput output, int @NotNull [] @NotNull [] matrix) throws IOException {
+        int rows = matrix.length;
+        int columns = rows == 0 ? 0 : matrix[0].length;
+        boolean binary = Matrix.isBinary(matrix);
+
+        output.writeByte(binary ? BIT_CELLS : INT_CELLS);
+        output.writeInt(rows);
+        output.writeInt(columns);
+
+        for (int[] row : matrix) {
+            if (!binary) {
+                for (int value : row)
+                    output.writeInt(value);
+                continue;
+            }
+            for (int firstColumn = 0; firstColumn < columns; firstColumn += Long.SIZE) {
+                long word = 0;
+
+                for (int column = firstColumn; column < Math.min(columns, firstColumn + Long.SIZE); column++)
+                    word |= (long) row[column] << (column - firstColumn);
+                output.writeLong(word);
+            }
+        }
+    }
+
+    public static void writeMatrixHandle(@NotNull DataOutput output, long handle) throws IOException {
+        output.writeByte(STORED_MATRIX);
+        output.writeLong(handle);
+    }
+
+    /**
+     * Reads a matrix, or looks up a stored matrix by its handle.
+     *
+     * @param input       The request.
+     * @param matrixStore The store of the uploaded matrices.
+     * @return The matrix.
+     * @throws IllegalArgumentException If the handle isn't in the store.
+     */
+    public static Matrix readMatrix(@NotNull DataInput input, @NotNull MatrixStore matrixStore) throws IOException {
+        byte encoding = input.readByte();
+
+        if (encoding == STORED_MATRIX)
+            return matrixStore.get(input.readLong());
+        return readMatrixCells(input, encoding);
+    }
+
+    public static Matrix readMatrix(@NotNull DataInput input) throws IOException {
+        return readMatrixCells(input, input.readByte());
+    }
+
+    private static Matrix readMatrixCells(DataInput input, byte encoding) throws IOException {
+        int rows = input.readInt();
+        int columns = input.readInt();
+
+        //the payload can't be larger than a frame, so a broken header doesn't allocate a huge matrix.
+        //an empty matrix has no rows, so rows of no columns are rejected too - they would cost memory without any payload
+        long payloadSize = encoding == BIT_CELLS ? (long) rows * ((columns + Long.SIZE - 1) / Long.SIZE) * Long.BYTES
+                : (long) rows * columns * Integer.BYTES;
+
+        if (rows < 0 || columns < 0 || (columns == 0 && rows > 0) || payloadSize > SelectorServer.MAX_FRAME_SIZE)
+            throw new IOException("Invalid matrix dimensions " + rows + "x" + columns);
+
+        if (encoding == BIT_CELLS) {
+            long[] words = new long[rows * ((columns + Long.SIZE - 1) / Long.SIZE)];
+
+            for (int i = 0; i < words.length; i++)
+                words[i] = input.readLong();
+            return new BinaryMatrix(rows, columns, words);
+        }
+        if (encoding != INT_CELLS)
+            throw new IOException("Unknown matrix encoding " + encoding);
+
+        int[][] matrix = new int[rows][columns];
+
+        for (int[] row : matrix) {
+            for (int column = 0; column < columns; column++)
+                row[column] = input.readInt();
+        }
+        return Matrix.of(matrix);
+    }
+
+    public static void writeIndex(@NotNull DataOutput output, @NotNull Index index) throws IOException {
+        writeVarInt(output, index.getRow());
+        writeVarInt(output, index.getColumn());
+    }
+
+    public static Index readIndex(@NotNull DataInput input) throws IOException {
+        return new Index(readVarInt(input), readVarInt(input));
+    }
+
+    public static void writePaths(@NotNull DataOutput output, @NotNull List<int[]> paths) throws IOException {
+        writeVarInt(output, paths.size());
+
+        for (int[] path : paths) {
+            writeVarInt(output, path.length);
+
+            for (int cell : path)
+                writeVarInt(output, cell);
+        }
+    }
+
+    /**
+     * @param input   The response.
+     * @param columns Amount of columns in the matrix of the paths.
+     * @return List of the paths, as lists of indices.
+     */
+    public static List<List<Index>> readPaths(@NotNull DataInput input, int columns) throws IOException {
+        int pathsCount = readVarInt(input);
+        List<List<Index>> paths = new ArrayList<>(pathsCount);
+
+        for (int i = 0; i < pathsCount; i++) {
+            int length = readVarInt(input);
+            List<Index> path = new ArrayList<>(length);
+
+            for (int j = 0; j < length; j++) {
+                int cell = readVarInt(input);
+                path.add(new Index(cell / columns, cell % columns));
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /**
+     * @param output         The response.
+     * @param componentCells Array of components, each is an ascending array of row-major cells.
+     */
+    public static void writeComponents(@NotNull DataOutput output, int @NotNull [] @NotNull [] componentCells) throws IOException {
+        writeVarInt(output, componentCells.length);
+
+        for (int[] cells : componentCells) {
+            writeVarInt(output, cells.length);
+            int previousCell = 0;
+
+            for (int cell : cells) {
+                writeVarInt(output, cell - previousCell);
+                previousCell = cell;
+            }
+        }
+    }
+
+    /**
+     * @param input   The response.
+     * @param columns Amount of columns in the labeled matrix.
+     * @return List of hash sets of connected components, in the order they were sent.
+     */
+    public static List<HashSet<Index>> readComponents(@NotNull DataInput input, int columns) throws IOException {
+        int componentsCount = readVarInt(input);
+        List<HashSet<Index>> components = new ArrayList<>(componentsCount);
+
+        for (int i = 0; i < componentsCount; i++) {
+            int size = readVarInt(input);
+            HashSet<Index> component = new HashSet<>();
+            int cell = 0;
+
+            for (int j = 0; j < size; j++) {
+                cell += readVarInt(input);
+                component.add(new Index(cell / columns, cell % columns));
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    /**
+     * Writes a non-negative int in groups of 7 bits, so small values take a single byte.
+     */
+    public static void writeVarInt(@NotNull DataOutput output, int value) throws IOException {
+        if (value < 0)
+            throw new IllegalArgumentException("Var-int can't be negative: " + value);
+
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    public static int readVarInt(@NotNull DataInput input) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = input.readByte();
+            value |= (b & 0x7F) << shift;
+
+            if (b >= 0)
+                return value;
+        }
+        throw new IOException("Var-int is too long");
+    }
+}
@@ -1,18 +1,23 @@
 package clientserver;
 
+import algorithms.SearchCancelledException;
 import components.Index;
 import components.Matrix;
-import components.Node;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class Client {
     static Scanner in = new Scanner(System.in);
+    static DataOutputStream toSocket;
+    static InputStream fromSocket;
+    //the response of the previous request, which must be read to its end before the next response
+    static FrameInputStream lastResponse;
+    //the negotiated binary protocol version, or 0 if the server supports only serialized objects
+    static int protocolVersion;
 
     public static void printMatrix(int[][] matrix) {
         System.out.println("Current Matrix:");
@@ -28,6 +33,15 @@ public class Client {
         System.out.println("2. Find shortest path from A to B.");
         System.out.println("3. Find the amount of submarines.");
         System.out.println("4. Find shortest path of weighted graph.");
+        System.out.println("5. Stream shortest paths from A to B.");
+        System.out.println("6. Count shortest paths from A to B.");
+        System.out.println("7. Stream lightest paths of weighted graph.");
+        System.out.println("8. Count lightest paths of weighted graph.");
+        System.out.println("9. Find shortest path from A to B with a directed search.");
+        System.out.println("10. Find lightest path of weighted graph with a directed search.");
+        System.out.println("11. Find the amount of submarines many times, with pipelined requests.");
+        System.out.println("12. Upload a matrix once, and find shortest paths on it many times.");
+        System.out.println("13. Upload a matrix once, and count the ones in a rectangle of it many times.");
         System.out.println("0. Stop and exit.");
 
         System.out.print("Your choice: ");
@@ -44,6 +58,33 @@ public class Client {
             case 4 -> {
                 return "shortest path weighted graph";
             }
+            case 5 -> {
+                return "shortest paths stream";
+            }
+            case 6 -> {
+                return "count shortest paths";
+            }
+            case 7 -> {
+                return "lightest paths stream";
+            }
+            case 8 -> {
+                return "count lightest paths";
+            }
+            case 9 -> {
+                return "shortest path search";
+            }
+            case 10 -> {
+                return "lightest path search";
+            }
+            case 11 -> {
+                return "pipelined submarines";
+            }
+            case 12 -> {
+                return "stored matrix queries";
+            }
+            case 13 -> {
+                return "stored rectangle queries";
+            }
             case 0 -> {
                 return "stop";
             }
@@ -90,15 +131,283 @@ public class Client {
         return new Index(row, column);
     }
 
+    /**
+     * Sends a matrix and user selected source & destination indices to the server.
+     *
+     * @param toServer    The output stream to the server.
+     * @param inputMatrix The matrix to send.
+     * @return Array of the source & destination indices.
+     */
+    private static Index @NotNull [] sendPathQuery(@NotNull ObjectOutputStream toServer, int[][] inputMatrix) throws IOException {
+        Matrix matrix = new Matrix(inputMatrix);
+        Index source = createIndex(matrix, "Source");
+        Index destination = createIndex(matrix, "Destination");
+
+        toServer.writeObject(inputMatrix);
+        toServer.writeObject(source);
+        toServer.writeObject(destination);
+
+        System.out.println("\nCurrent Matrix:");
+        System.out.println(matrix);
+        return new Index[]{source, destination};
+    }
+
+    /**
+     * Sends a request to the server as a single frame, which the server handles as a whole session.
+     *
+     * @param toServer     The object stream of the request.
+     * @param requestBytes The bytes which the object stream is written to.
+     * @return The input stream of the response.
+     */
+    private static @NotNull ObjectInputStream sendRequest(@NotNull ObjectOutputStream toServer,
+                                                          @NotNull ByteArrayOutputStream requestBytes) throws IOException {
+        //ending the session of the request
+        toServer.writeObject("stop");
+        toServer.flush();
+
+        return new ObjectInputStream(sendFrame(requestBytes));
+    }
+
+    /**
+     * Reads a response of the objects protocol.<br>
+     * The server answers a failed command with its exception, which is thrown here.
+     *
+     * @param fromServer The input stream of the response.
+     * @return The response object.
+     * @throws IllegalArgumentException If the command referred to an unknown matrix handle.
+     * @throws SearchCancelledException If the query timed out.
+     */
+    private static Object readResponse(@NotNull ObjectInputStream fromServer) throws IOException, ClassNotFoundException {
+        Object response = fromServer.readObject();
+
+        if (response instanceof RuntimeException e)
+            throw e;
+        return response;
+    }
+
+    /**
+     * Sends the bytes of a request as a single frame.<br>
+     * A request which the server rejects as busy is sent again after the time that the server asks to wait.
+     *
+     * @param requestBytes The bytes of the request.
+     * @return The input stream of the response.
+     */
+    private static @NotNull InputStream sendFrame(@NotNull ByteArrayOutputStream requestBytes) throws IOException {
+        while (true) {
+            if (lastResponse != null)
+                lastResponse.skipToEnd();
+
+            toSocket.writeInt(requestBytes.size());
+            requestBytes.writeTo(toSocket);
+            toSocket.flush();
+
+            lastResponse = new FrameInputStream(fromSocket);
+            InputStream response = new BufferedInputStream(lastResponse);
+            int retryAfterMillis = BinaryProtocol.readRetryAfter(response);
+
+            if (retryAfterMillis < 0)
+                return response;
+
+            System.out.println("Server is busy, retrying in " + retryAfterMillis + " ms");
+
+            try {
+                Thread.sleep(retryAfterMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+
+    /**
+     * Creates a {@link BinaryProtocol} request.
+     *
+     * @param requestBytes The bytes which the request is written to.
+     * @param opcode       The command opcode.
+     * @return The output stream of the request payload.
+     */
+    private static @NotNull DataOutputStream newBinaryRequest(@NotNull ByteArrayOutputStream requestBytes, byte opcode) throws IOException {
+        DataOutputStream request = new DataOutputStream(requestBytes);
+        BinaryProtocol.writeRequestHeader(request, opcode == BinaryProtocol.HELLO ? BinaryProtocol.VERSION : BinaryProtocol.FIRST_VERSION, opcode);
+        return request;
+    }
+
+    /**
+     * Sends a {@link BinaryProtocol} request, and reads the header of the response.
+     *
+     * @param requestBytes The bytes of the request.
+     * @return The input stream of the response payload.
+     */
+    private static @NotNull DataInputStream sendBinaryRequest(@NotNull ByteArrayOutputStream requestBytes) throws IOException {
+        DataInputStream response = new DataInputStream(sendFrame(requestBytes));
+        BinaryProtocol.readResponseHeader(response);
+        return response;
+    }
+
+    /**
+     * Negotiates the binary protocol version with the server.
+     *
+     * @return The negotiated version, or 0 if the server supports only serialized objects.
+     */
+    private static int negotiateProtocolVersion() throws IOException {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+        newBinaryRequest(requestBytes, BinaryProtocol.HELLO);
+
+        try {
+            return BinaryProtocol.readResponseHeader(new DataInputStream(sendFrame(requestBytes)));
+        } catch (IOException e) {
+            //a server without the binary protocol fails to read the request as serialized objects
+            return 0;
+        }
+    }
+
+    /**
+     * Sends a paths query in the {@link BinaryProtocol}.
+     *
+     * @param opcode      {@link BinaryProtocol#SHORTEST_PATHS} or {@link BinaryProtocol#LIGHTEST_PATHS}.
+     * @param inputMatrix The matrix.
+     * @param source      The source index.
+     * @param destination The destination index.
+     * @return List of the paths.
+     */
+    private static List<List<Index>> binaryPathsQuery(byte opcode, int[][] inputMatrix, Index source, Index destination) throws IOException {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+        DataOutputStream request = newBinaryRequest(requestBytes, opcode);
+        BinaryProtocol.writeMatrix(request, inputMatrix);
+        BinaryProtocol.writeIndex(request, source);
+        BinaryProtocol.writeIndex(request, destination);
+
+        return BinaryProtocol.readPaths(sendBinaryRequest(requestBytes), inputMatrix[0].length);
+    }
+
+    /**
+     * Uploads a matrix to the server store.
+     *
+     * @param inputMatrix The matrix.
+     * @return The handle of the stored matrix.
+     */
+    private static long uploadMatrix(int[][] inputMatrix) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+
+        if (protocolVersion > 0) {
+            BinaryProtocol.writeMatrix(newBinaryRequest(requestBytes, BinaryProtocol.UPLOAD_MATRIX), inputMatrix);
+            return sendBinaryRequest(requestBytes).readLong();
+        }
+        ObjectOutputStream toServer = new ObjectOutputStream(requestBytes);
+        toServer.writeObject("upload matrix");
+        toServer.writeObject(inputMatrix);
+        return (long) readResponse(sendRequest(toServer, requestBytes));
+    }
+
+    /**
+     * Finds the shortest paths on a matrix which was uploaded to the server store.
+     *
+     * @param matrixHandle The handle of the stored matrix.
+     * @param columns      Amount of columns of the matrix.
+     * @param source       The source index.
+     * @param destination  The destination index.
+     * @return List of the paths.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<List<Index>> storedShortestPaths(long matrixHandle, int columns, Index source, Index destination)
+            throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+
+        if (protocolVersion > 0) {
+            DataOutputStream request = newBinaryRequest(requestBytes, BinaryProtocol.SHORTEST_PATHS);
+            BinaryProtocol.writeMatrixHandle(request, matrixHandle);
+            BinaryProtocol.writeIndex(request, source);
+            BinaryProtocol.writeIndex(request, destination);
+            return BinaryProtocol.readPaths(sendBinaryRequest(requestBytes), columns);
+        }
+        ObjectOutputStream toServer = new ObjectOutputStream(requestBytes);
+        toServer.writeObject("shortest path");
+        //the handle is sent in place of the matrix cells
+        toServer.writeObject(matrixHandle);
+        toServer.writeObject(source);
+        toServer.writeObject(destination);
+        return new ArrayList<>((List<List<Index>>) readResponse(sendRequest(toServer, requestBytes)));
+    }
+
+    /**
+     * Counts the ones in a rectangle of a matrix which was uploaded to the server store.
+     *
+     * @param matrixHandle The handle of the stored matrix.
+     * @param topLeft      The top left corner of the rectangle.
+     * @param bottomRight  The bottom right corner of the rectangle.
+     * @return Amount of ones in the rectangle.
+     */
+    private static int storedCountOnes(long matrixHandle, Index topLeft, Index bottomRight) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+
+        if (protocolVersion > 0) {
+            DataOutputStream request = newBinaryRequest(requestBytes, BinaryProtocol.COUNT_ONES);
+            BinaryProtocol.writeMatrixHandle(request, matrixHandle);
+            BinaryProtocol.writeIndex(request, topLeft);
+            BinaryProtocol.writeIndex(request, bottomRight);
+            return sendBinaryRequest(requestBytes).readInt();
+        }
+        ObjectOutputStream toServer = new ObjectOutputStream(requestBytes);
+        toServer.writeObject("count ones in rectangle");
+        toServer.writeObject(matrixHandle);
+        toServer.writeObject(topLeft);
+        toServer.writeObject(bottomRight);
+        return (int) readResponse(sendRequest(toServer, requestBytes));
+    }
+
+    /**
+     * Prints the paths chunks as the server sends them.
+     *
+     * @param fromServer The input stream from the server.
+     */
+    @SuppressWarnings("unchecked")
+    private static void receivePathsStream(@NotNull ObjectInputStream fromServer) throws IOException, ClassNotFoundException {
+        long receivedPaths = 0;
+        List<List<Index>> chunk = (List<List<Index>>) readResponse(fromServer);
+
+        //an empty chunk marks the end of the stream
+        while (!chunk.isEmpty()) {
+            chunk.forEach(System.out::println);
+            receivedPaths += chunk.size();
+            chunk = (List<List<Index>>) readResponse(fromServer);
+        }
+        System.out.println("Received " + receivedPaths + " paths.");
+    }
+
+    /**
+     * Asks the user for a point to point search algorithm.
+     *
+     * @return The name of the selected algorithm.
+     */
+    private static @NotNull String selectSearchAlgorithm() {
+        System.out.println("Select search algorithm:");
+        System.out.println("1. A*.");
+        System.out.println("2. Bidirectional.");
+        System.out.print("Your choice: ");
+
+        while (true) {
+            switch (in.nextInt()) {
+                case 1 -> {
+                    return "A_STAR";
+                }
+                case 2 -> {
+                    return "BIDIRECTIONAL";
+                }
+            }
+            System.out.print("Invalid choice, try again: ");
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public static void main(String[] args) {
         try {
             Socket socket = new Socket("127.0.0.1", 8010);
             System.out.println("Client side ready.");
 
-            //output stream should be declared before input stream
-            ObjectOutputStream toServer = new ObjectOutputStream(socket.getOutputStream());
-            ObjectInputStream fromServer = new ObjectInputStream(socket.getInputStream());
+            toSocket = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            fromSocket = new BufferedInputStream(socket.getInputStream());
+            protocolVersion = negotiateProtocolVersion();
+            System.out.println(protocolVersion > 0 ? "Using binary protocol version " + protocolVersion + "." : "Using serialized objects protocol.");
 
             //inputs for Task 1 - Connected components
             int[][] input1 = {
@@ -208,80 +517,201 @@ public class Client {
                 String clientRequest = menu();
                 System.out.println();
 
-                switch (clientRequest) {
-                    case "all reachable nodes" -> {
-                        toServer.writeObject(clientRequest);
-                        toServer.writeObject(input1);
-
-                        List<HashSet<Node<Index>>> allReachableNodes = new ArrayList<>((List<HashSet<Node<Index>>>) fromServer.readObject());
-                        printMatrix(input1);
-
-                        if (!allReachableNodes.isEmpty()) {
-                            System.out.println("All Reachable Nodes:");
-                            allReachableNodes.forEach(System.out::println);
-                        } else
-                            System.out.println("There are no reachable nodes in this Matrix.");
-                    }
-                    case "shortest path" -> {
-                        toServer.writeObject("shortest path");
-                        toServer.writeObject(input2);
-                        Matrix matrix = new Matrix(input2);
-
-                        Index source = createIndex(matrix, "Source");
-                        Index destination = createIndex(matrix, "Destination");
-                        toServer.writeObject(source);
-                        toServer.writeObject(destination);
-
-                        System.out.println("Current Matrix:");
-                        System.out.println(matrix);
-
-                        List<List<Index>> shortestPaths = new ArrayList<>((List<List<Index>>) fromServer.readObject());
-
-                        if (!shortestPaths.isEmpty()) {
-                            System.out.println("\nAll Shortest path from " + source + " to " + destination + ":");
+                ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+                ObjectOutputStream toServer = new ObjectOutputStream(requestBytes);
+
+                try {
+                    switch (clientRequest) {
+                        case "all reachable nodes" -> {
+                            List<HashSet<Index>> allReachableNodes;
+
+                            if (protocolVersion > 0) {
+                                ByteArrayOutputStream binaryBytes = new ByteArrayOutputStream();
+                                BinaryProtocol.writeMatrix(newBinaryRequest(binaryBytes, BinaryProtocol.CONNECTED_COMPONENTS), input1);
+                                allReachableNodes = BinaryProtocol.readComponents(sendBinaryRequest(binaryBytes), input1[0].length);
+                            } else {
+                                toServer.writeObject(clientRequest);
+                                toServer.writeObject(input1);
+                                allReachableNodes = new ArrayList<>((List<HashSet<Index>>) readResponse(sendRequest(toServer, requestBytes)));
+                            }
+                            printMatrix(input1);
+
+                            if (!allReachableNodes.isEmpty()) {
+                                System.out.println("All Reachable Nodes:");
+                                allReachableNodes.forEach(System.out::println);
+                            } else
+                                System.out.println("There are no reachable nodes in this Matrix.");
+                        }
+                        case "shortest path" -> {
+                            Matrix matrix = new Matrix(input2);
+
+                            Index source = createIndex(matrix, "Source");
+                            Index destination = createIndex(matrix, "Destination");
+
+                            System.out.println("Current Matrix:");
+                            System.out.println(matrix);
+
+                            List<List<Index>> shortestPaths;
+
+                            if (protocolVersion > 0)
+                                shortestPaths = binaryPathsQuery(BinaryProtocol.SHORTEST_PATHS, input2, source, destination);
+                            else {
+                                toServer.writeObject("shortest path");
+                                toServer.writeObject(input2);
+                                toServer.writeObject(source);
+                                toServer.writeObject(destination);
+                                shortestPaths = new ArrayList<>((List<List<Index>>) readResponse(sendRequest(toServer, requestBytes)));
+                            }
+
+                            if (!shortestPaths.isEmpty()) {
+                                System.out.println("\nAll Shortest path from " + source + " to " + destination + ":");
+                                shortestPaths.forEach(System.out::println);
+                            } else //if there's no valid path from source to destination
+                                System.out.println("There is no path from " + source + " to " + destination);
+                        }
+                        case "find submarines" -> {
+                            System.out.println("Current Matrix:");
+                            printMatrix(input3);
+
+                            int submarinesCount;
+
+                            if (protocolVersion > 0) {
+                                ByteArrayOutputStream binaryBytes = new ByteArrayOutputStream();
+                                BinaryProtocol.writeMatrix(newBinaryRequest(binaryBytes, BinaryProtocol.SUBMARINES), input3);
+                                submarinesCount = sendBinaryRequest(binaryBytes).readInt();
+                            } else {
+                                toServer.writeObject("find submarines");
+                                toServer.writeObject(input3);
+                                submarinesCount = (int) readResponse(sendRequest(toServer, requestBytes));
+                            }
+                            System.out.println("Valid submarines count is: " + submarinesCount);
+                        }
+                        case "shortest path weighted graph" -> {
+                            Matrix matrix = new Matrix(input4);
+                            Index source = createIndex(matrix, "Source");
+                            Index destination = createIndex(matrix, "Destination");
+
+                            System.out.println("\nCurrent Matrix:");
+                            System.out.println(matrix);
+
+                            List<List<Index>> lightestPaths;
+
+                            if (protocolVersion > 0)
+                                lightestPaths = binaryPathsQuery(BinaryProtocol.LIGHTEST_PATHS, input4, source, destination);
+                            else {
+                                toServer.writeObject("shortest path weighted graph");
+                                toServer.writeObject(input4);
+                                toServer.writeObject(source);
+                                toServer.writeObject(destination);
+                                lightestPaths = new LinkedList<>((LinkedList<List<Index>>) readResponse(sendRequest(toServer, requestBytes)));
+                            }
+
+                            if (!lightestPaths.isEmpty()) {
+                                System.out.println("All Lightest paths from " + source + " to " + destination + ":");
+                                lightestPaths.forEach(System.out::println);
+                            } else
+                                System.out.println("There is no path from " + source + " to " + destination);
+                        }
+                        case "shortest paths stream", "lightest paths stream" -> {
+                            toServer.writeObject(clientRequest);
+                            sendPathQuery(toServer, clientRequest.equals("shortest paths stream") ? input2 : input4);
+
+                            System.out.print("Maximum amount of paths: ");
+                            toServer.writeObject(in.nextLong());
+                            receivePathsStream(sendRequest(toServer, requestBytes));
+                        }
+                        case "count shortest paths", "count lightest paths" -> {
+                            toServer.writeObject(clientRequest);
+                            Index[] query = sendPathQuery(toServer, clientRequest.equals("count shortest paths") ? input2 : input4);
+
+                            long pathsCount = (long) readResponse(sendRequest(toServer, requestBytes));
+                            System.out.println("Amount of paths from " + query[0] + " to " + query[1] + ": " + pathsCount);
+                        }
+                        case "shortest path search", "lightest path search" -> {
+                            toServer.writeObject(clientRequest);
+                            Index[] query = sendPathQuery(toServer, clientRequest.equals("shortest path search") ? input2 : input4);
+                            toServer.writeObject(selectSearchAlgorithm());
+
+                            List<List<Index>> paths = new ArrayList<>((List<List<Index>>) readResponse(sendRequest(toServer, requestBytes)));
+
+                            if (!paths.isEmpty()) {
+                                System.out.println("\nAll paths from " + query[0] + " to " + query[1] + ":");
+                                paths.forEach(System.out::println);
+                            } else
+                                System.out.println("There is no path from " + query[0] + " to " + query[1]);
+                        }
+                        case "pipelined submarines" -> {
+                            System.out.print("Amount of requests: ");
+                            int requestsCount = in.nextInt();
+
+                            //all the requests are sent at once, and the responses complete as they arrive
+                            try (AsyncMatrixClient asyncClient = new AsyncMatrixClient("127.0.0.1", 8010)) {
+                                long startTime = System.nanoTime();
+                                List<CompletableFuture<Integer>> submarinesCounts = new ArrayList<>(requestsCount);
+
+                                for (int i = 0; i < requestsCount; i++)
+                                    submarinesCounts.add(asyncClient.countSubmarines(input3));
+                                CompletableFuture.allOf(submarinesCounts.toArray(new CompletableFuture<?>[0])).join();
+
+                                System.out.println("Valid submarines count is: " + submarinesCounts.get(0).join() + ", for "
+                                        + requestsCount + " requests in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+                            }
+                        }
+                        case "stored matrix queries" -> {
+                            Matrix matrix = new Matrix(input2);
+                            Index source = createIndex(matrix, "Source");
+                            Index destination = createIndex(matrix, "Destination");
+
+                            System.out.print("Amount of queries: ");
+                            int queriesCount = in.nextInt();
+
+                            long matrixHandle = uploadMatrix(input2);
+                            System.out.println("Uploaded matrix handle: " + Long.toHexString(matrixHandle));
+
+                            //only the handle & the indices are sent with each query
+                            long startTime = System.nanoTime();
+                            List<List<Index>> shortestPaths = new ArrayList<>();
+
+                            for (int i = 0; i < queriesCount; i++)
+                                shortestPaths = storedShortestPaths(matrixHandle, input2[0].length, source, destination);
+
+                            System.out.println("All Shortest path from " + source + " to " + destination + ", for "
+                                    + queriesCount + " queries in " + (System.nanoTime() - startTime) / 1_000_000 + " ms:");
                             shortestPaths.forEach(System.out::println);
-                        } else //if there's no valid path from source to destination
-                            System.out.println("There is no path from " + source + " to " + destination);
-                    }
-                    case "find submarines" -> {
-                        toServer.writeObject("find submarines");
-                        toServer.writeObject(input3);
-
-                        System.out.println("Current Matrix:");
-                        printMatrix(input3);
-
-                        int submarinesCount = (int) fromServer.readObject();
-                        System.out.println("Valid submarines count is: " + submarinesCount);
-                    }
-                    case "shortest path weighted graph" -> {
-                        toServer.writeObject("shortest path weighted graph");
-                        toServer.writeObject(input4);
-
-                        Matrix matrix = new Matrix(input4);
-                        Index source = createIndex(matrix, "Source");
-                        Index destination = createIndex(matrix, "Destination");
-
-                        System.out.println("\nCurrent Matrix:");
-                        System.out.println(matrix);
-
-                        toServer.writeObject(source);
-                        toServer.writeObject(destination);
-                        LinkedList<List<Index>> lightestPaths = new LinkedList<>((LinkedList<List<Index>>) fromServer.readObject());
-
-                        if (!lightestPaths.isEmpty()) {
-                            System.out.println("All Lightest paths from " + source + " to " + destination + ":");
-                            lightestPaths.forEach(System.out::println);
-                        } else
-                            System.out.println("There is no path from " + source + " to " + destination);
-                    }
-                    case "stop" -> {
-                        clientsConnection = false;
-                        toServer.writeObject("stop");
-                        fromServer.close();
-                        toServer.close();
-                        socket.close();
+                        }
+                        case "stored rectangle queries" -> {
+                            Matrix matrix = new Matrix(input3);
+                            printMatrix(input3);
+                            Index topLeft = createIndex(matrix, "Top left corner");
+                            Index bottomRight = createIndex(matrix, "Bottom right corner");
+
+                            System.out.print("Amount of queries: ");
+                            int queriesCount = in.nextInt();
+
+                            long matrixHandle = uploadMatrix(input3);
+                            System.out.println("Uploaded matrix handle: " + Long.toHexString(matrixHandle));
+
+                            //the server sums the stored matrix once, so each query is answered by 4 lookups
+                            long startTime = System.nanoTime();
+                            int onesCount = 0;
+
+                            for (int i = 0; i < queriesCount; i++)
+                                onesCount = storedCountOnes(matrixHandle, topLeft, bottomRight);
+
+                            System.out.println("Amount of ones from " + topLeft + " to " + bottomRight + ": " + onesCount + ", for "
+                                    + queriesCount + " queries in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+                        }
+                        case "stop" -> {
+                            clientsConnection = false;
+                            toSocket.close();
+                            fromSocket.close();
+                            socket.close();
+                        }
+                        case "invalid" -> System.out.println("Invalid choice, please try again.\n");
                     }
-                    case "invalid" -> System.out.println("Invalid choice, please try again.\n");
+                } catch (SearchCancelledException e) {
+                    //the server stopped the query, and the session goes on
+                    System.out.println(e.getMessage());
                 }
             }
         } catch (IOException | ClassNotFoundException e) {
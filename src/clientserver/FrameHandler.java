@@ -0,0 +1,59 @@
+package clientserver;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Handles a single request frame, and sends back the response frames.
+ */
+public interface FrameHandler {
+    /**
+     * @param request        The bytes of the request frame.
+     * @param responseFrames Receives the response frames, the last one is an empty frame.
+     */
+    void handleRequest(byte[] request, Consumer<ByteBuffer> responseFrames);
+
+    /**
+     * Handles a request, and makes sure that its response is ended even if the handler fails.<br>
+     * A request which failed before it sent any frame gets an {@link BinaryProtocol#ERROR} response with its id,<br>
+     * and a response which was cut in the middle is ended with an empty frame - so the client never waits for it forever.<br>
+     * The failure is thrown again once the response is ended.
+     *
+     * @param request        The bytes of the request frame.
+     * @param responseFrames Receives the response frames, the last one is an empty frame.
+     */
+    default void handleRequestOrFail(byte[] request, Consumer<ByteBuffer> responseFrames) {
+        //whether any frame was sent, and whether the last one ended the response
+        boolean[] sent = new boolean[1];
+        boolean[] ended = new boolean[1];
+
+        try {
+            handleRequest(request, frame -> {
+                sent[0] = true;
+                ended[0] = FrameOutputStream.isEndFrame(frame);
+                responseFrames.accept(frame);
+            });
+        } catch (Throwable t) {
+            try {
+                if (!sent[0])
+                    BinaryProtocol.writeErrorResponse(request, "Server failed the request: " + t, responseFrames);
+                else if (!ended[0])
+                    new FrameOutputStream(responseFrames).close();
+            } catch (RuntimeException e) {
+                //the connection is broken too
+                t.addSuppressed(e);
+            }
+            throw t;
+        }
+    }
+
+    /**
+     * Requests are handled one after the other by default, in the order they were sent on the connection.
+     *
+     * @param request The bytes of the request frame.
+     * @return true if the request may run concurrently with the other requests of its connection.
+     */
+    default boolean isConcurrent(byte[] request) {
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream which reads the bytes of length-prefixed frames (see {@link FrameOutputStream})<br>
+ * until an empty frame, which marks the end of the response.
+ */
+public class FrameInputStream extends InputStream {
+    private final DataInputStream source;
+    private int remainingFrameBytes;
+    private boolean ended;
+
+    public FrameInputStream(@NotNull InputStream source) {
+        this.source = new DataInputStream(source);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextFrameBytes())
+            return -1;
+
+        remainingFrameBytes--;
+        return source.readUnsignedByte();
+    }
+
+    @Override
+    public int read(byte @NotNull [] bytes, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        if (!nextFrameBytes())
+            return -1;
+
+        int readBytes = source.read(bytes, offset, Math.min(length, remainingFrameBytes));
+
+        if (readBytes < 0)
+            throw new IOException("Connection closed in the middle of a frame");
+
+        remainingFrameBytes -= readBytes;
+        return readBytes;
+    }
+
+    /**
+     * Skips the rest of the response, so the next response can be read from the source.
+     */
+    public void skipToEnd() throws IOException {
+        while (nextFrameBytes()) {
+            source.skipNBytes(remainingFrameBytes);
+            remainingFrameBytes = 0;
+        }
+    }
+
+    /**
+     * Reads frame headers until a frame with bytes to read, or the end of the response.
+     *
+     * @return true if there are bytes to read, false if the response ended.
+     */
+    private boolean nextFrameBytes() throws IOException {
+        while (!ended && remainingFrameBytes == 0) {
+            remainingFrameBytes = source.readInt();
+
+            if (remainingFrameBytes < 0)
+                throw new IOException("Invalid frame length " + remainingFrameBytes);
+            ended = remainingFrameBytes == 0;
+        }
+        return !ended;
+    }
+}
@@ -0,0 +1,79 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * An output stream which cuts the written bytes into length-prefixed frames.<br>
+ * A frame is an int length followed by that amount of bytes.<br>
+ * The bytes are framed on every flush (or when {@link #MAX_BUFFERED_BYTES} are buffered),<br>
+ * and closing the stream sends an empty frame, which marks the end of the response.
+ */
+public class FrameOutputStream extends OutputStream {
+    public static final int FRAME_HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_BUFFERED_BYTES = 1 << 16;
+
+    private final Consumer<ByteBuffer> framesConsumer;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private boolean closed;
+
+    /**
+     * @param framesConsumer Receives each frame (header included), ready to be written to a channel.
+     */
+    public FrameOutputStream(@NotNull Consumer<ByteBuffer> framesConsumer) {
+        this.framesConsumer = framesConsumer;
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.write(b);
+
+        if (buffer.size() >= MAX_BUFFERED_BYTES)
+            flush();
+    }
+
+    @Override
+    public void write(byte @NotNull [] bytes, int offset, int length) {
+        buffer.write(bytes, offset, length);
+
+        if (buffer.size() >= MAX_BUFFERED_BYTES)
+            flush();
+    }
+
+    @Override
+    public void flush() {
+        if (buffer.size() > 0) {
+            sendFrame(buffer.toByteArray());
+            buffer.reset();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        flush();
+        //an empty frame marks the end of the response
+        sendFrame(new byte[0]);
+        closed = true;
+    }
+
+    /**
+     * @param frame A frame which was produced by this class.
+     * @return true if the frame marks the end of the response.
+     */
+    public static boolean isEndFrame(@NotNull ByteBuffer frame) {
+        return frame.remaining() == FRAME_HEADER_SIZE;
+    }
+
+    private void sendFrame(byte[] bytes) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + bytes.length);
+        frame.putInt(bytes.length).put(bytes).flip();
+        framesConsumer.accept(frame);
+    }
+}
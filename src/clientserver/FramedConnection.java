@@ -0,0 +1,239 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the framed requests of a single client over a blocking socket, one request after the other.<br>
+ * The connection holds its thread for the whole session, so it's meant to run on a cheap thread (a virtual thread),<br>
+ * while the requests themselves run on a separate compute pool, which bounds the CPU-heavy work.<br>
+ * Concurrent requests (see {@link FrameHandler#isConcurrent(byte[])}) don't wait for each other -<br>
+ * the compute pool writes each whole response as soon as it's ready.<br>
+ * Each request must be admitted by the {@link AdmissionController}, or it gets a busy response instead.<br>
+ * The session must be admitted before the connection runs, and it's closed when the connection ends.
+ */
+public class FramedConnection implements Runnable {
+    //streamed frames are at most 64 KiB, so a running request produces about 1 MiB ahead of its client
+    private static final int MAX_QUEUED_RESPONSE_FRAMES = 16;
+    //how often a request which waits for its client checks if the connection was closed
+    private static final int CLOSE_CHECK_MILLIS = 100;
+
+    private final Socket socket;
+    private final FrameHandler frameHandler;
+    private final ExecutorService computePool;
+    private final AdmissionController admission;
+
+    /**
+     * @param socket         The socket of the client.
+     * @param frameHandler   The handler of the requests.
+     * @param computePool    The pool which runs the requests, or null to run them on the connection thread.
+     * @param admission      Admits the requests, after it admitted the session.
+     */
+    public FramedConnection(@NotNull Socket socket, @NotNull FrameHandler frameHandler, ExecutorService computePool,
+                            @NotNull AdmissionController admission) {
+        this.socket = socket;
+        this.frameHandler = frameHandler;
+        this.computePool = computePool;
+        this.admission = admission;
+    }
+
+    @Override
+    public void run() {
+        try (socket) {
+            DataInputStream fromClient = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream toClient = new BufferedOutputStream(socket.getOutputStream());
+
+            while (true) {
+                int length;
+
+                try {
+                    length = fromClient.readInt();
+                } catch (EOFException e) {
+                    //the client disconnected
+                    return;
+                }
+                if (length <= 0 || length > SelectorServer.MAX_FRAME_SIZE)
+                    throw new IOException("Invalid request frame length " + length);
+
+                byte[] request = new byte[length];
+                fromClient.readFully(request);
+
+                AdmissionController.Ticket ticket;
+
+                try {
+                    ticket = admission.admit(socket.getInetAddress());
+                } catch (ServerBusyException e) {
+                    rejectRequest(request, e.getRetryAfterMillis(), toClient);
+                    continue;
+                }
+                if (computePool == null)
+                    handleRequest(request, ticket, toClient);
+                else if (frameHandler.isConcurrent(request))
+                    handleConcurrentRequest(request, ticket, toClient);
+                else
+                    handleRequestOnComputePool(request, ticket, toClient);
+            }
+        } catch (IOException | InterruptedException | RejectedExecutionException e) {
+            //the client broke the protocol, or the server is shutting down
+            e.printStackTrace();
+        } finally {
+            admission.closeSession();
+        }
+    }
+
+    private void handleRequest(byte[] request, AdmissionController.Ticket ticket, OutputStream toClient) throws IOException {
+        ticket.start();
+
+        try {
+            frameHandler.handleRequestOrFail(request, frame -> {
+                try {
+                    writeFrame(frame, toClient);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            //the request got an error response, so the connection can go on
+            e.printStackTrace();
+        } finally {
+            ticket.complete();
+        }
+    }
+
+    /**
+     * Runs the request on the compute pool, and writes its response frames on this thread as they are produced.<br>
+     * At most {@value #MAX_QUEUED_RESPONSE_FRAMES} frames wait for a slow client, and then the request waits too,<br>
+     * so it doesn't pile its response up in memory.
+     */
+    private void handleRequestOnComputePool(byte[] request, AdmissionController.Ticket ticket, OutputStream toClient)
+            throws IOException, InterruptedException {
+        BlockingQueue<ByteBuffer> responseFrames = new ArrayBlockingQueue<>(MAX_QUEUED_RESPONSE_FRAMES);
+
+        //the handler always ends the response, even if it fails, so this thread never waits for a response that won't come
+        if (!execute(request, ticket, () -> {
+            try {
+                frameHandler.handleRequestOrFail(request, frame -> putFrame(frame, responseFrames));
+            } catch (UncheckedIOException e) {
+                //the connection was closed while the request was running, so the rest of its response is dropped
+                if (!socket.isClosed())
+                    throw e;
+            }
+        }, toClient))
+            return;
+
+        ByteBuffer frame;
+
+        do {
+            frame = responseFrames.take();
+            writeFrame(frame, toClient);
+        } while (!FrameOutputStream.isEndFrame(frame));
+    }
+
+    /**
+     * Waits until the connection thread takes the frames before it, as long as the client reads its responses.
+     *
+     * @throws UncheckedIOException If the connection was closed, or its client didn't read for too long.
+     */
+    private void putFrame(ByteBuffer frame, BlockingQueue<ByteBuffer> responseFrames) {
+        long waitStartNanos = System.nanoTime();
+
+        try {
+            while (!responseFrames.offer(frame, CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (socket.isClosed())
+                    throw new UncheckedIOException(new SocketException("Socket closed"));
+
+                if (System.nanoTime() - waitStartNanos >= TimeUnit.MILLISECONDS.toNanos(SelectorServer.RESPONSE_STALL_TIMEOUT_MILLIS)) {
+                    //the connection thread is stuck writing to the client, and closing the socket releases it
+                    closeQuietly();
+                    throw new UncheckedIOException(new InterruptedByTimeoutException());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the client to read"));
+        }
+    }
+
+    private void handleConcurrentRequest(byte[] request, AdmissionController.Ticket ticket, OutputStream toClient) throws IOException {
+        execute(request, ticket, () -> {
+            List<ByteBuffer> responseFrames = new ArrayList<>();
+
+            try {
+                frameHandler.handleRequestOrFail(request, responseFrames::add);
+            } finally {
+                //the whole response is written at once, so the responses of concurrent requests don't interleave
+                synchronized (toClient) {
+                    try {
+                        for (ByteBuffer frame : responseFrames)
+                            writeFrame(frame, toClient);
+                    } catch (IOException e) {
+                        //the client disconnected before its response was ready
+                        closeQuietly();
+                    }
+                }
+            }
+        }, toClient);
+    }
+
+    /**
+     * Runs an admitted request on the compute pool.
+     *
+     * @return true if the request was dispatched, false if it was answered with a busy response.
+     * @throws RejectedExecutionException If the compute pool is shut down.
+     */
+    private boolean execute(byte[] request, AdmissionController.Ticket ticket, Runnable task, OutputStream toClient) throws IOException {
+        try {
+            computePool.execute(ticket.wrap(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            ticket.complete();
+
+            if (computePool.isShutdown())
+                throw e;
+
+            //the queue of the compute pool is full
+            rejectRequest(request, admission.getBusyRetryAfterMillis(), toClient);
+            return false;
+        }
+    }
+
+    private static void rejectRequest(byte[] request, int retryAfterMillis, OutputStream toClient) throws IOException {
+        List<ByteBuffer> responseFrames = new ArrayList<>();
+        BinaryProtocol.writeBusyResponse(request, retryAfterMillis, responseFrames::add);
+
+        //the whole response is written at once, so it doesn't interleave with the responses of concurrent requests
+        synchronized (toClient) {
+            for (ByteBuffer frame : responseFrames)
+                writeFrame(frame, toClient);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void writeFrame(ByteBuffer frame, OutputStream toClient) throws IOException {
+        //responses of concurrent requests may be written at the same time
+        synchronized (toClient) {
+            toClient.write(frame.array(), frame.position(), frame.remaining());
+            toClient.flush();
+        }
+    }
+}
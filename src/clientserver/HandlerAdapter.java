@@ -0,0 +1,37 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Lets an {@link IHandler} serve framed requests.<br>
+ * Each request frame is a complete session of the handler: its input stream is the frame bytes,<br>
+ * and whatever the handler writes is sent back as response frames, ended by an empty frame.<br>
+ * Every request gets a new handler, so handlers which keep the session in their fields can serve many clients.
+ */
+public class HandlerAdapter implements FrameHandler {
+    private final Supplier<IHandler> handlerFactory;
+
+    public HandlerAdapter(@NotNull Supplier<IHandler> handlerFactory) {
+        this.handlerFactory = handlerFactory;
+    }
+
+    /**
+     * Runs a new handler over a single request.
+     *
+     * @param request        The bytes of the request frame.
+     * @param responseFrames Receives the response frames, as soon as the handler flushes them.
+     */
+    @Override
+    public void handleRequest(byte @NotNull [] request, @NotNull Consumer<ByteBuffer> responseFrames) {
+        IHandler handler = handlerFactory.get();
+
+        try (FrameOutputStream response = new FrameOutputStream(responseFrames)) {
+            handler.handleClient(new ByteArrayInputStream(request), response);
+        }
+    }
+}
@@ -1,30 +1,45 @@
 package clientserver;
 
-import algorithms.SubmarineValidator;
-import algorithms.ThreadedBFS;
-import algorithms.ThreadedBellmanFord;
-import algorithms.ThreadedDFS;
-import components.Index;
-import components.Matrix;
-import components.Node;
-import components.TraversableMatrix;
+import algorithms.CancellationToken;
+import algorithms.PathMetric;
+import algorithms.PointToPointSearch;
+import algorithms.SearchCancelledException;
+import components.*;
 
 import java.io.*;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * The class handles Matrix-related tasks.<br>
- * The class implements the {@link IHandler} interface.
+ * The class implements the {@link IHandler} interface.<br>
+ * The paths queries of a session run until the timeout that the session sets with the "timeout" command,<br>
+ * or until the server limit. A query which overruns it gets its {@link SearchCancelledException} as the response.<br>
+ * A streamed paths response has at most {@value #DEFAULT_MAX_STREAMED_PATHS} paths, or the amount that the<br>
+ * {@value #MAX_STREAMED_PATHS_PROPERTY} system property sets, whatever amount the client asks for.
  */
 public class MatrixHandler implements IHandler {
+    public static final String MAX_STREAMED_PATHS_PROPERTY = "matrix.server.maxStreamedPaths";
+    public static final long DEFAULT_MAX_STREAMED_PATHS = 1_000_000;
+    //maximum amount of paths in each chunk of a streamed paths response
+    private static final int PATHS_CHUNK_SIZE = 64;
+    private static final long MAX_STREAMED_PATHS = Long.getLong(MAX_STREAMED_PATHS_PROPERTY, DEFAULT_MAX_STREAMED_PATHS);
+
+    private final MatrixService matrixService;
     private Matrix matrix;
     private Index source;
     private Index destination;
+    private long timeoutMillis;
     private boolean activeSession;
 
     public MatrixHandler() {
+        this(new MatrixService());
+    }
+
+    /**
+     * @param matrixService The service which executes the queries.
+     */
+    public MatrixHandler(MatrixService matrixService) {
+        this.matrixService = matrixService;
         this.activeSession = true;
     }
 
@@ -33,6 +48,7 @@ public class MatrixHandler implements IHandler {
         this.matrix = null;
         this.source = null;
         this.destination = null;
+        this.timeoutMillis = 0;
         this.activeSession = true;
     }
 
@@ -45,52 +61,187 @@ public class MatrixHandler implements IHandler {
             ObjectOutputStream clientOutputStream = new ObjectOutputStream(toClient);
 
             while (activeSession) {
-                switch (clientInputStream.readObject().toString()) {
-                    case "all reachable nodes" -> {
-                        this.matrix = new Matrix((int[][]) clientInputStream.readObject());
-                        List<HashSet<Index>> allStronglyConnectedComponents = new ThreadedDFS<Index>().stronglyConnectedComponents(this.matrix);
-                        clientOutputStream.writeObject(allStronglyConnectedComponents);
-                    }
-                    case "shortest path" -> {
-                        this.matrix = new Matrix((int[][]) clientInputStream.readObject());
-                        this.source = (Index) clientInputStream.readObject();
-                        this.destination = (Index) clientInputStream.readObject();
-
-                        TraversableMatrix graph = new TraversableMatrix(this.matrix);
-                        graph.setSource(this.source);
-                        graph.setDestination(this.destination);
-
-                        ThreadedBFS<Index> bfs = new ThreadedBFS<>();
-                        List<List<Node<Index>>> shortestPaths = bfs.getShortestPaths(graph, graph.getSourceNode(), graph.getDestinationNode());
-                        clientOutputStream.writeObject(shortestPaths);
-                    }
-                    case "find submarines" -> {
-                        int[][] baseMatrix = (int[][]) clientInputStream.readObject();
-                        this.matrix = new Matrix(baseMatrix);
-
-                        ThreadedDFS<Index> dfs = new ThreadedDFS<>();
-                        List<HashSet<Index>> allConnectedComponents = dfs.stronglyConnectedComponents(this.matrix);
-                        int submarinesCount = new SubmarineValidator().findSubmarinesAmount(allConnectedComponents, baseMatrix);
-                        clientOutputStream.writeObject(submarinesCount);
-                    }
-                    case "shortest path weighted graph" -> {
-                        this.matrix = new Matrix((int[][]) clientInputStream.readObject());
-                        this.source = (Index) clientInputStream.readObject();
-                        this.destination = (Index) clientInputStream.readObject();
-
-                        TraversableMatrix weightedGraph = new TraversableMatrix(this.matrix);
-                        weightedGraph.setSource(this.source);
-                        weightedGraph.setDestination(this.destination);
-
-                        ThreadedBellmanFord<Index> bellmanFord = new ThreadedBellmanFord<>();
-                        LinkedList<List<Node<Index>>> allLightestPaths = bellmanFord.getLightestPath(weightedGraph, weightedGraph.getSourceNode(), weightedGraph.getDestinationNode());
-                        clientOutputStream.writeObject(allLightestPaths);
-                    }
-                    case "stop" -> activeSession = false;
+                String command = clientInputStream.readObject().toString();
+
+                try {
+                    handleCommand(command, clientInputStream, clientOutputStream);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException | SearchCancelledException e) {
+                    //an unknown matrix handle, a rectangle out of the matrix, or a timed out query -
+                    //the exception is the response, and the session goes on
+                    clientOutputStream.writeObject(e);
                 }
             }
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Executes a single command of the client.
+     *
+     * @param command            The command.
+     * @param clientInputStream  The input stream of the client.
+     * @param clientOutputStream The output stream to the client.
+     */
+    private void handleCommand(String command, ObjectInputStream clientInputStream,
+                               ObjectOutputStream clientOutputStream) throws IOException, ClassNotFoundException {
+        CancellationToken cancellationToken = matrixService.newCancellationToken(this.timeoutMillis);
+
+        switch (command) {
+            case "all reachable nodes" -> {
+                this.matrix = readMatrix(clientInputStream.readObject());
+                List<HashSet<Index>> allStronglyConnectedComponents = matrixService.labelComponents(this.matrix).toConnectedComponents();
+                clientOutputStream.writeObject(allStronglyConnectedComponents);
+            }
+            case "shortest path" -> {
+                TraversableMatrix graph = readPathQuery(clientInputStream);
+                List<List<Node<Index>>> shortestPaths = new ArrayList<>();
+
+                for (int[] path : matrixService.getShortestPaths(graph, graph.toNodeId(this.source), graph.toNodeId(this.destination),
+                        cancellationToken))
+                    shortestPaths.add(graph.toNodePath(path));
+                clientOutputStream.writeObject(shortestPaths);
+            }
+            case "find submarines" -> {
+                this.matrix = readMatrix(clientInputStream.readObject());
+                int submarinesCount = matrixService.countSubmarines(this.matrix);
+                clientOutputStream.writeObject(submarinesCount);
+            }
+            case "shortest path weighted graph" -> {
+                TraversableMatrix weightedGraph = readPathQuery(clientInputStream);
+                LinkedList<List<Node<Index>>> allLightestPaths = new LinkedList<>();
+
+                for (int[] path : matrixService.getLightestPaths(weightedGraph, weightedGraph.toNodeId(this.source), weightedGraph.toNodeId(this.destination),
+                        cancellationToken))
+                    allLightestPaths.add(weightedGraph.toNodePath(path));
+                clientOutputStream.writeObject(allLightestPaths);
+            }
+            case "shortest paths stream", "count shortest paths" -> {
+                TraversableMatrix graph = readPathQuery(clientInputStream);
+                int sourceNode = graph.toNodeId(this.source);
+                int destinationNode = graph.toNodeId(this.destination);
+
+                if (command.equals("count shortest paths"))
+                    clientOutputStream.writeObject(matrixService.countShortestPaths(graph, sourceNode, destinationNode, cancellationToken));
+                else
+                    streamPaths(graph, matrixService.getShortestPathsIterator(graph, sourceNode, destinationNode, cancellationToken),
+                            (long) clientInputStream.readObject(), clientOutputStream);
+            }
+            case "lightest paths stream", "count lightest paths" -> {
+                TraversableMatrix weightedGraph = readPathQuery(clientInputStream);
+                int sourceNode = weightedGraph.toNodeId(this.source);
+                int destinationNode = weightedGraph.toNodeId(this.destination);
+
+                if (command.equals("count lightest paths"))
+                    clientOutputStream.writeObject(matrixService.countLightestPaths(weightedGraph, sourceNode, destinationNode, cancellationToken));
+                else
+                    streamPaths(weightedGraph, matrixService.getLightestPathsIterator(weightedGraph, sourceNode, destinationNode, cancellationToken),
+                            (long) clientInputStream.readObject(), clientOutputStream);
+            }
+            case "shortest path search", "lightest path search" -> {
+                TraversableMatrix graph = readPathQuery(clientInputStream);
+                PointToPointSearch.Algorithm algorithm = PointToPointSearch.Algorithm.valueOf(clientInputStream.readObject().toString());
+                PathMetric metric = command.equals("shortest path search") ? PathMetric.UNWEIGHTED : PathMetric.NODE_WEIGHTED;
+
+                ArrayList<List<Index>> paths = new ArrayList<>();
+
+                for (int[] path : matrixService.searchPaths(graph, graph.toNodeId(this.source), graph.toNodeId(this.destination), metric, algorithm,
+                        cancellationToken)) {
+                    List<Index> indicesPath = new ArrayList<>();
+
+                    for (int node : path)
+                        indicesPath.add(graph.fromNodeId(node));
+                    paths.add(indicesPath);
+                }
+                clientOutputStream.writeObject(paths);
+            }
+            case "count ones in rectangle" -> {
+                this.matrix = readMatrix(clientInputStream.readObject());
+                Index topLeft = (Index) clientInputStream.readObject();
+                Index bottomRight = (Index) clientInputStream.readObject();
+                clientOutputStream.writeObject(matrixService.countOnes(this.matrix, topLeft, bottomRight));
+            }
+            case "upload matrix" -> {
+                this.matrix = Matrix.of((int[][]) clientInputStream.readObject());
+                clientOutputStream.writeObject(matrixService.uploadMatrix(this.matrix));
+            }
+            case "timeout" -> this.timeoutMillis = (long) clientInputStream.readObject();
+            case "stop" -> activeSession = false;
+        }
+    }
+
+    /**
+     * Reads a matrix which was sent either as a 2D array, or as the handle of an uploaded matrix.
+     *
+     * @param matrixObject The object which was sent by the client.
+     * @return The matrix.
+     * @throws IllegalArgumentException If the handle doesn't belong to a stored matrix.
+     */
+    private Matrix readMatrix(Object matrixObject) {
+        if (matrixObject instanceof Long handle)
+            return matrixService.getStoredMatrix(handle);
+        return Matrix.of((int[][]) matrixObject);
+    }
+
+    /**
+     * Reads a matrix (or a matrix handle), a source index & a destination index from the client.
+     *
+     * @param clientInputStream The input stream of the client.
+     * @return {@link TraversableMatrix} of the read matrix. The source & destination are kept in the handler fields.
+     */
+    private TraversableMatrix readPathQuery(ObjectInputStream clientInputStream) throws IOException, ClassNotFoundException {
+        Object matrixObject = clientInputStream.readObject();
+        this.source = (Index) clientInputStream.readObject();
+        this.destination = (Index) clientInputStream.readObject();
+        this.matrix = readMatrix(matrixObject);
+
+        TraversableMatrix graph = new TraversableMatrix(this.matrix);
+
+        //the indices are validated here, since they are passed to the algorithms as node ids
+        for (Index index : new Index[]{this.source, this.destination}) {
+            if (!graph.validateIndex(index))
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds");
+        }
+        return graph;
+    }
+
+    /**
+     * Sends the paths to the client in chunks, as soon as they are produced.<br>
+     * Each chunk is a list of at most {@link #PATHS_CHUNK_SIZE} paths, and an empty chunk marks the end of the paths.
+     *
+     * @param graph              The graph which the paths belong to.
+     * @param paths              Iterator over the paths, as arrays of node ids.
+     * @param maxPaths           Maximum amount of paths to send, which the server limit caps.
+     * @param clientOutputStream The output stream to the client.
+     */
+    private void streamPaths(IntTraversable<Index> graph, Iterator<int[]> paths, long maxPaths,
+                             ObjectOutputStream clientOutputStream) throws IOException {
+        ArrayList<List<Index>> chunk = new ArrayList<>(PATHS_CHUNK_SIZE);
+
+        maxPaths = Math.min(maxPaths, MAX_STREAMED_PATHS);
+
+        for (long sentPaths = 0; sentPaths < maxPaths && paths.hasNext(); sentPaths++) {
+            List<Index> path = new ArrayList<>();
+
+            for (int node : paths.next())
+                path.add(graph.fromNodeId(node));
+            chunk.add(path);
+
+            if (chunk.size() == PATHS_CHUNK_SIZE)
+                writeChunk(chunk, clientOutputStream);
+        }
+        if (!chunk.isEmpty())
+            writeChunk(chunk, clientOutputStream);
+
+        //an empty chunk marks the end of the stream
+        writeChunk(chunk, clientOutputStream);
+    }
+
+    private void writeChunk(ArrayList<List<Index>> chunk, ObjectOutputStream clientOutputStream) throws IOException {
+        clientOutputStream.writeObject(chunk);
+        //forgetting the written objects, so the stream doesn't keep every sent path in memory
+        clientOutputStream.reset();
+        clientOutputStream.flush();
+        chunk.clear();
+    }
 }
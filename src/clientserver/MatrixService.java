@@ -0,0 +1,331 @@
+package clientserver;
+
+import algorithms.*;
+import components.Index;
+import components.Matrix;
+import components.TraversableMatrix;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executes the matrix queries, regardless of the protocol that they arrived with.<br>
+ * Paths are returned as arrays of node ids (see {@link TraversableMatrix#toNodeId(Index)}),<br>
+ * and each protocol converts them to its own encoding.<br>
+ * The service keeps no state of a single query, so it can be shared by all the handlers,<br>
+ * along with the {@link MatrixStore} of the uploaded matrices.<br>
+ * <br>
+ * The results are pure functions of the matrix & the query parameters, so they are kept in a {@link ResultCache},<br>
+ * keyed by a SHA-256 hash of the matrix content. Lazy path iterators are not cached.<br>
+ * Identical queries which miss the cache at the same time are coalesced by a {@link SingleFlight},<br>
+ * so a burst of the same request runs the query once.<br>
+ * <br>
+ * The paths queries run until their {@link CancellationToken} is cancelled or times out.<br>
+ * A request may ask for a shorter timeout than the server limit ({@value #REQUEST_TIMEOUT_PROPERTY} system property),<br>
+ * but not for a longer one. A coalesced paths query runs on a thread of its own, under a token which is cancelled<br>
+ * only when all of its requests gave up waiting, or at the server limit - each request waits for it until its own<br>
+ * deadline, and a request with time left runs the query again if the query stopped before it.
+ */
+public class MatrixService {
+    public static final long DEFAULT_CACHE_CAPACITY_BYTES = 64L << 20;
+    public static final String REQUEST_TIMEOUT_PROPERTY = "matrix.server.requestTimeoutMillis";
+    public static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10_000;
+
+    private final MatrixStore matrixStore;
+    private final ResultCache<QueryKey, Object> resultCache;
+    //the threads of the coalesced paths queries, beyond them a query runs on its first request
+    private static final int MAX_FLIGHT_THREADS = 256;
+    private static final ThreadPoolExecutor FLIGHTS_POOL = newFlightsPool();
+
+    private final int maxTimeoutMillis = Integer.getInteger(REQUEST_TIMEOUT_PROPERTY, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    private final SingleFlight<QueryKey, Object> singleFlight = new SingleFlight<>(FLIGHTS_POOL, maxTimeoutMillis);
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    public MatrixService() {
+        this(new MatrixStore());
+    }
+
+    /**
+     * @param matrixStore The store of the uploaded matrices.
+     */
+    public MatrixService(@NotNull MatrixStore matrixStore) {
+        this(matrixStore, DEFAULT_CACHE_CAPACITY_BYTES);
+    }
+
+    /**
+     * @param matrixStore        The store of the uploaded matrices.
+     * @param cacheCapacityBytes Maximum estimated memory of the cached results.
+     */
+    public MatrixService(@NotNull MatrixStore matrixStore, long cacheCapacityBytes) {
+        this.matrixStore = matrixStore;
+        this.resultCache = new ResultCache<>(cacheCapacityBytes, MatrixService::estimateResultSize);
+    }
+
+    public MatrixStore getMatrixStore() {
+        return matrixStore;
+    }
+
+    /**
+     * Stores a matrix, so the next queries can refer to it by its handle.
+     *
+     * @param matrix The matrix.
+     * @return The handle of the matrix.
+     */
+    public long uploadMatrix(@NotNull Matrix matrix) {
+        return matrixStore.put(matrix);
+    }
+
+    /**
+     * @param handle The handle of an uploaded matrix.
+     * @return The matrix.
+     * @throws IllegalArgumentException If the matrix isn't stored.
+     */
+    public Matrix getStoredMatrix(long handle) {
+        return matrixStore.get(handle);
+    }
+
+    public ResultCache<?, ?> getResultCache() {
+        return resultCache;
+    }
+
+    public SingleFlight<?, ?> getSingleFlight() {
+        return singleFlight;
+    }
+
+    public int getMaxTimeoutMillis() {
+        return maxTimeoutMillis;
+    }
+
+    /**
+     * Creates the token of a query, which times out after the requested time, or after the server limit.
+     *
+     * @param timeoutMillis The timeout that the request asked for, or 0 for the server limit.
+     * @return The token.
+     */
+    public CancellationToken newCancellationToken(long timeoutMillis) {
+        return CancellationToken.withTimeout(timeoutMillis > 0 ? Math.min(timeoutMillis, maxTimeoutMillis) : maxTimeoutMillis);
+    }
+
+    /**
+     * Registers the metrics of the result cache & the matrix store.
+     *
+     * @param metrics The server metrics.
+     */
+    public void registerMetrics(@NotNull ServerMetrics metrics) {
+        metrics.register("cache.hits", resultCache::getHitsCount);
+        metrics.register("cache.misses", resultCache::getMissesCount);
+        metrics.register("cache.evictions", resultCache::getEvictionsCount);
+        metrics.register("cache.rejections", resultCache::getRejectionsCount);
+        metrics.register("cache.entries", resultCache::size);
+        metrics.register("cache.usedBytes", resultCache::getUsedBytes);
+        metrics.register("coalescing.executions", singleFlight::getExecutionsCount);
+        metrics.register("coalescing.coalesced", singleFlight::getCoalescedCount);
+        metrics.register("coalescing.inFlight", singleFlight::getInFlightCount);
+        metrics.register("coalescing.abandoned", singleFlight::getAbandonedCount);
+        metrics.register("search.cancelled", cancelledCount::get);
+        metrics.register("store.matrices", matrixStore::size);
+        metrics.register("store.usedBytes", matrixStore::getUsedBytes);
+        metrics.register("store.evictions", matrixStore::getEvictionsCount);
+    }
+
+    /**
+     * @param matrix The matrix.
+     * @return The {@link ComponentLabeling} of the matrix.
+     */
+    public ComponentLabeling labelComponents(@NotNull Matrix matrix) {
+        return labelComponents(matrix, new MatrixHash(matrix));
+    }
+
+    private ComponentLabeling labelComponents(Matrix matrix, MatrixHash matrixHash) {
+        return cached(new QueryKey(Query.CONNECTED_COMPONENTS, matrixHash, -1, -1, null),
+                () -> ThreadedDFS.labelComponents(matrix));
+    }
+
+    /**
+     * @param matrix The matrix.
+     * @return Amount of valid submarines in the matrix.
+     */
+    public int countSubmarines(@NotNull Matrix matrix) {
+        MatrixHash matrixHash = new MatrixHash(matrix);
+
+        return cached(new QueryKey(Query.SUBMARINES, matrixHash, -1, -1, null),
+                () -> new SubmarineValidator().countSubmarines(labelComponents(matrix, matrixHash)));
+    }
+
+    /**
+     * Counts the ones of a rectangle of a matrix.<br>
+     * The summed-area table is built on the shared {@link ComputePool} and kept with the matrix,<br>
+     * so the queries of an uploaded matrix are O(1) after the first one.
+     *
+     * @param matrix      The matrix.
+     * @param topLeft     The top left corner of the rectangle.
+     * @param bottomRight The bottom right corner of the rectangle.
+     * @return Amount of cells with value 1 in the rectangle.
+     * @throws IndexOutOfBoundsException If the rectangle isn't within the matrix.
+     */
+    public int countOnes(@NotNull Matrix matrix, @NotNull Index topLeft, @NotNull Index bottomRight) {
+        return matrix.getSummedAreaTable(ComputePool.get())
+                .countOnes(topLeft.getRow(), topLeft.getColumn(), bottomRight.getRow(), bottomRight.getColumn());
+    }
+
+    public List<int[]> getShortestPaths(@NotNull TraversableMatrix graph, int source, int destination,
+                                        @NotNull CancellationToken cancellationToken) {
+        return cached(new QueryKey(Query.SHORTEST_PATHS, graph, source, destination, null), cancellationToken,
+                token -> new ThreadedBFS<Index>(token).getShortestPaths(graph, source, destination));
+    }
+
+    public Iterator<int[]> getShortestPathsIterator(@NotNull TraversableMatrix graph, int source, int destination,
+                                                    @NotNull CancellationToken cancellationToken) {
+        return new ThreadedBFS<Index>(cancellationToken).getShortestPathsIterator(graph, source, destination);
+    }
+
+    public long countShortestPaths(@NotNull TraversableMatrix graph, int source, int destination,
+                                   @NotNull CancellationToken cancellationToken) {
+        return cached(new QueryKey(Query.SHORTEST_PATHS_COUNT, graph, source, destination, null), cancellationToken,
+                token -> new ThreadedBFS<Index>(token).countShortestPaths(graph, source, destination));
+    }
+
+    public List<int[]> getLightestPaths(@NotNull TraversableMatrix graph, int source, int destination,
+                                        @NotNull CancellationToken cancellationToken) {
+        return cached(new QueryKey(Query.LIGHTEST_PATHS, graph, source, destination, null), cancellationToken,
+                token -> new ThreadedBellmanFord<Index>(token).getLightestPath(graph, source, destination));
+    }
+
+    public Iterator<int[]> getLightestPathsIterator(@NotNull TraversableMatrix graph, int source, int destination,
+                                                    @NotNull CancellationToken cancellationToken) {
+        return new ThreadedBellmanFord<Index>(cancellationToken).getLightestPathsIterator(graph, source, destination);
+    }
+
+    public long countLightestPaths(@NotNull TraversableMatrix graph, int source, int destination,
+                                   @NotNull CancellationToken cancellationToken) {
+        return cached(new QueryKey(Query.LIGHTEST_PATHS_COUNT, graph, source, destination, null), cancellationToken,
+                token -> new ThreadedBellmanFord<Index>(token).countLightestPaths(graph, source, destination));
+    }
+
+    /**
+     * Finds the paths with a point to point search.
+     *
+     * @param graph             The matrix to search.
+     * @param source            The source node id.
+     * @param destination       The destination node id.
+     * @param metric            The way to measure the paths.
+     * @param algorithm         The search algorithm.
+     * @param cancellationToken The token of the query.
+     * @return List of all the shortest paths, as arrays of node ids.
+     */
+    public List<int[]> searchPaths(@NotNull TraversableMatrix graph, int source, int destination,
+                                   @NotNull PathMetric metric, @NotNull PointToPointSearch.Algorithm algorithm,
+                                   @NotNull CancellationToken cancellationToken) {
+        return cached(new QueryKey(Query.SEARCH, graph, source, destination, List.of(metric, algorithm)), cancellationToken,
+                token -> new PointToPointSearch(algorithm, token).getShortestPaths(graph, source, destination, metric));
+    }
+
+    /**
+     * Returns the cached result of a query, or runs the query (or joins the same running query) and caches its result.<br>
+     * The result is cached before the query leaves the {@link SingleFlight}, so a request which missed the cache<br>
+     * just before, and didn't find the query running, finds the result on its second look at the cache.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(QueryKey key, Supplier<T> query) {
+        Object result = resultCache.get(key);
+
+        if (result == null)
+            result = singleFlight.run(key, () -> compute(key, query));
+        return (T) result;
+    }
+
+    /**
+     * Same as {@link #cached(QueryKey, Supplier)}, for a query which stops once its token is cancelled.<br>
+     * The request waits until its own token is cancelled, and the query gets the token of its flight.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(QueryKey key, CancellationToken cancellationToken, Function<CancellationToken, T> query) {
+        Object result = resultCache.get(key);
+
+        if (result == null)
+            result = singleFlight.run(key, cancellationToken, flightToken -> compute(key, () -> query.apply(flightToken)));
+        return (T) result;
+    }
+
+    private Object compute(QueryKey key, Supplier<?> query) {
+        Object cachedResult = resultCache.peek(key);
+
+        if (cachedResult != null)
+            return cachedResult;
+
+        Object value;
+
+        try {
+            value = query.get();
+        } catch (SearchCancelledException e) {
+            //counted once, and not by the queries which joined it
+            cancelledCount.incrementAndGet();
+            throw e;
+        }
+        resultCache.put(key, value);
+        return value;
+    }
+
+    private static ThreadPoolExecutor newFlightsPool() {
+        AtomicLong threadsCount = new AtomicLong();
+        return new ThreadPoolExecutor(0, MAX_FLIGHT_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), task -> {
+            Thread thread = new Thread(task, "query-flight-" + threadsCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * An estimation of the heap memory of a query result.
+     */
+    private static long estimateResultSize(Object result) {
+        if (result instanceof ComponentLabeling labeling)
+            return labeling.getSizeInBytes();
+
+        if (result instanceof List<?> paths) {
+            //the list & its array of references, then each path array
+            long size = 16 + 16 + 8L * paths.size();
+
+            for (Object path : paths)
+                size += 16 + (long) Integer.BYTES * ((int[]) path).length;
+            return size;
+        }
+        //a boxed count
+        return 16;
+    }
+
+    private enum Query {
+        CONNECTED_COMPONENTS, SUBMARINES, SHORTEST_PATHS, SHORTEST_PATHS_COUNT, LIGHTEST_PATHS, LIGHTEST_PATHS_COUNT, SEARCH
+    }
+
+    /**
+     * The first 128 bits of the SHA-256 hash of a matrix content.
+     */
+    private record MatrixHash(long high, long low) {
+        private MatrixHash(Matrix matrix) {
+            this(ByteBuffer.wrap(MatrixStore.contentDigest(matrix)));
+        }
+
+        private MatrixHash(ByteBuffer digest) {
+            this(digest.getLong(), digest.getLong());
+        }
+    }
+
+    /**
+     * Identifies a query result: the query, the matrix content, the source & destination nodes (or -1),<br>
+     * and any other parameter of the query (or null).
+     */
+    private record QueryKey(Query query, MatrixHash matrixHash, int source, int destination, Object parameter) {
+        private QueryKey(Query query, TraversableMatrix graph, int source, int destination, Object parameter) {
+            this(query, new MatrixHash(graph.getMatrix()), source, destination, parameter);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package clientserver;
+
+import components.Matrix;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps uploaded matrices on the server, so clients can query them many times without sending them again.<br>
+ * Each matrix is identified by a handle - a hash of its content, so uploading the same matrix twice gives the same handle.<br>
+ * The store is bounded by the estimated memory of its matrices ({@link Matrix#getSizeInBytes()}),<br>
+ * and evicts the least recently used matrices when it's full.<br>
+ * A single store is shared by all the connections, so all its methods are synchronized.
+ */
+public class MatrixStore {
+    public static final long DEFAULT_CAPACITY_BYTES = 256L << 20;
+
+    private final long capacityBytes;
+    //access ordered, so the first entry is the least recently used
+    private final LinkedHashMap<Long, Matrix> matrices = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long evictionsCount;
+
+    public MatrixStore() {
+        this(DEFAULT_CAPACITY_BYTES);
+    }
+
+    /**
+     * @param capacityBytes Maximum estimated memory of the stored matrices.
+     */
+    public MatrixStore(long capacityBytes) {
+        if (capacityBytes <= 0) throw new IllegalArgumentException("Store capacity must be positive");
+
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Stores a matrix, evicting the least recently used matrices if there's not enough room.
+     *
+     * @param matrix The matrix to store.
+     * @return The handle of the matrix.
+     */
+    public synchronized long put(@NotNull Matrix matrix) {
+        long handle = contentHash(matrix);
+
+        //the same content is already stored - just marking it as used
+        if (matrices.get(handle) != null)
+            return handle;
+
+        long size = matrix.getSizeInBytes();
+
+        if (size > capacityBytes)
+            throw new IllegalArgumentException("Matrix of " + size + " bytes is larger than the store capacity");
+
+        Iterator<Map.Entry<Long, Matrix>> leastRecentlyUsed = matrices.entrySet().iterator();
+
+        while (usedBytes + size > capacityBytes) {
+            usedBytes -= leastRecentlyUsed.next().getValue().getSizeInBytes();
+            leastRecentlyUsed.remove();
+            evictionsCount++;
+        }
+        matrices.put(handle, matrix);
+        usedBytes += size;
+        return handle;
+    }
+
+    /**
+     * @param handle The handle of the matrix.
+     * @return The stored matrix.
+     * @throws IllegalArgumentException If there's no matrix with the given handle (or it was evicted).
+     */
+    public synchronized Matrix get(long handle) {
+        Matrix matrix = matrices.get(handle);
+
+        if (matrix == null)
+            throw new IllegalArgumentException("Unknown matrix handle " + Long.toHexString(handle) + ", upload the matrix again");
+        return matrix;
+    }
+
+    public synchronized int size() {
+        return matrices.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public synchronized long getEvictionsCount() {
+        return evictionsCount;
+    }
+
+    /**
+     * @param matrix The matrix.
+     * @return The first 64 bits of the {@link #contentDigest(Matrix)} of the matrix.
+     */
+    public static long contentHash(@NotNull Matrix matrix) {
+        return ByteBuffer.wrap(contentDigest(matrix)).getLong();
+    }
+
+    /**
+     * Hashes the dimensions & values of a matrix with SHA-256, regardless of the way the matrix keeps its cells.
+     *
+     * @param matrix The matrix.
+     * @return The 32 bytes hash, which is kept with the matrix (see {@link Matrix#getContentDigest()}).
+     */
+    public static byte[] contentDigest(@NotNull Matrix matrix) {
+        return matrix.getContentDigest();
+    }
+}
@@ -0,0 +1,33 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Routes each request frame to the handler of its protocol, by the first bytes of the frame:<br>
+ * {@link BinaryProtocol#MAGIC} for the binary protocol, anything else (a Java serialization stream) for the objects protocol.
+ */
+public class ProtocolRouter implements FrameHandler {
+    private final FrameHandler objectsHandler;
+    private final FrameHandler binaryHandler;
+
+    public ProtocolRouter(@NotNull FrameHandler objectsHandler, @NotNull FrameHandler binaryHandler) {
+        this.objectsHandler = objectsHandler;
+        this.binaryHandler = binaryHandler;
+    }
+
+    @Override
+    public boolean isConcurrent(byte[] request) {
+        return BinaryProtocol.isBinaryRequest(request) ? binaryHandler.isConcurrent(request) : objectsHandler.isConcurrent(request);
+    }
+
+    @Override
+    public void handleRequest(byte[] request, Consumer<ByteBuffer> responseFrames) {
+        if (BinaryProtocol.isBinaryRequest(request))
+            binaryHandler.handleRequest(request, responseFrames);
+        else
+            objectsHandler.handleRequest(request, responseFrames);
+    }
+}
@@ -0,0 +1,217 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A memory bounded cache of query results, with a segmented LRU eviction policy.<br>
+ * New results enter a probation segment, and move to a protected segment when they are requested again,<br>
+ * so a burst of one-time queries evicts other one-time results, and not the popular ones.<br>
+ * When the protected segment is full, its least recently used results go back to the probation segment.<br>
+ * <br>
+ * Each result is weighed by its estimated memory, and the cache is bounded by the total weight.<br>
+ * Results heavier than {@link #getMaxEntryBytes()} are not cached at all, since a single one of them<br>
+ * would evict many smaller results.<br>
+ * A single cache is shared by all the connections, so all its methods are synchronized.
+ *
+ * @param <K> The type of the keys, which must implement equals & hashCode.
+ * @param <V> The type of the results.
+ */
+public class ResultCache<K, V> {
+    //the protected segment takes 80% of the capacity, like the common segmented LRU configuration
+    private static final int PROTECTED_PERCENT = 80;
+    //a single result can take at most 1/8 of the capacity
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final long capacityBytes;
+    private final long protectedCapacityBytes;
+    private final ToLongFunction<? super V> weigher;
+    //insertion ordered - an entry is moved to the end when it's used, so the first entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>();
+    private long probationBytes;
+    private long protectedBytes;
+
+    private long hitsCount;
+    private long missesCount;
+    private long evictionsCount;
+    private long rejectionsCount;
+
+    /**
+     * @param capacityBytes Maximum estimated memory of the cached results.
+     * @param weigher       Estimates the memory of a result, in bytes.
+     */
+    public ResultCache(long capacityBytes, @NotNull ToLongFunction<? super V> weigher) {
+        if (capacityBytes <= 0) throw new IllegalArgumentException("Cache capacity must be positive");
+
+        this.capacityBytes = capacityBytes;
+        this.protectedCapacityBytes = capacityBytes * PROTECTED_PERCENT / 100;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns a cached result, and promotes it to the protected segment.
+     *
+     * @param key The key of the query.
+     * @return The cached result, or null if the result isn't cached.
+     */
+    public synchronized V get(@NotNull K key) {
+        Entry<V> entry = protectedSegment.remove(key);
+
+        if (entry == null) {
+            entry = probation.remove(key);
+
+            if (entry == null) {
+                missesCount++;
+                return null;
+            }
+            probationBytes -= entry.weight;
+        } else
+            protectedBytes -= entry.weight;
+
+        //a second request - the result is popular enough to be protected
+        protectedSegment.put(key, entry);
+        protectedBytes += entry.weight;
+        demoteProtected();
+        hitsCount++;
+        return entry.value;
+    }
+
+    /**
+     * Returns a cached result, without counting a hit or a miss, and without changing its segment.
+     *
+     * @param key The key of the query.
+     * @return The cached result, or null if the result isn't cached.
+     */
+    public synchronized V peek(@NotNull K key) {
+        Entry<V> entry = protectedSegment.get(key);
+
+        if (entry == null)
+            entry = probation.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Caches a result in the probation segment, evicting the least recently used results if there's not enough room.
+     *
+     * @param key   The key of the query.
+     * @param value The result.
+     */
+    public synchronized void put(@NotNull K key, @NotNull V value) {
+        long weight = weigher.applyAsLong(value);
+
+        if (weight > getMaxEntryBytes()) {
+            rejectionsCount++;
+            return;
+        }
+        remove(key);
+        probation.put(key, new Entry<>(value, weight));
+        probationBytes += weight;
+        evict();
+    }
+
+    public synchronized void remove(@NotNull K key) {
+        Entry<V> entry = probation.remove(key);
+
+        if (entry != null)
+            probationBytes -= entry.weight;
+
+        entry = protectedSegment.remove(key);
+
+        if (entry != null)
+            protectedBytes -= entry.weight;
+    }
+
+    public synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    /**
+     * Moves the least recently used protected results back to the probation segment, as its most recently used results.
+     */
+    private void demoteProtected() {
+        Iterator<Map.Entry<K, Entry<V>>> leastRecentlyUsed = protectedSegment.entrySet().iterator();
+
+        while (protectedBytes > protectedCapacityBytes) {
+            Map.Entry<K, Entry<V>> demoted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            protectedBytes -= demoted.getValue().weight;
+
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationBytes += demoted.getValue().weight;
+        }
+        evict();
+    }
+
+    /**
+     * Evicts results while the cache is over its capacity - first from the probation segment, then from the protected one.
+     */
+    private void evict() {
+        Iterator<Map.Entry<K, Entry<V>>> probationVictims = probation.entrySet().iterator();
+
+        while (probationBytes + protectedBytes > capacityBytes && probationVictims.hasNext()) {
+            probationBytes -= probationVictims.next().getValue().weight;
+            probationVictims.remove();
+            evictionsCount++;
+        }
+        Iterator<Map.Entry<K, Entry<V>>> protectedVictims = protectedSegment.entrySet().iterator();
+
+        while (probationBytes + protectedBytes > capacityBytes) {
+            protectedBytes -= protectedVictims.next().getValue().weight;
+            protectedVictims.remove();
+            evictionsCount++;
+        }
+    }
+
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return probationBytes + protectedBytes;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public long getMaxEntryBytes() {
+        return capacityBytes / MAX_ENTRY_FRACTION;
+    }
+
+    public synchronized long getHitsCount() {
+        return hitsCount;
+    }
+
+    public synchronized long getMissesCount() {
+        return missesCount;
+    }
+
+    public synchronized long getEvictionsCount() {
+        return evictionsCount;
+    }
+
+    /**
+     * @return Amount of results which were too heavy to be cached.
+     */
+    public synchronized long getRejectionsCount() {
+        return rejectionsCount;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long weight;
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
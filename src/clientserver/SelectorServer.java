@@ -0,0 +1,575 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A non-blocking front end which multiplexes many client connections on a few I/O threads.<br>
+ * Each I/O thread runs a {@link Selector} over its connections, and only reads & writes the bytes that are ready,<br>
+ * so an idle client doesn't hold any thread.<br>
+ * Requests are length-prefixed frames (see {@link FrameOutputStream}). When a whole frame is read,<br>
+ * it is dispatched to the compute pool through a {@link FrameHandler}, and the response frames are written back<br>
+ * by the I/O thread of the connection.<br>
+ * The requests of each connection are handled one after the other, in the order they were sent,<br>
+ * except for concurrent requests (see {@link FrameHandler#isConcurrent(byte[])}), which are dispatched at once,<br>
+ * and whose responses are sent whole, in the order they complete.<br>
+ * <br>
+ * A client which sends requests but doesn't read the responses isn't read from, until its queued responses drain,<br>
+ * and a running request which produces its response faster than the client reads it waits for the client.<br>
+ * <br>
+ * Each connection & each request must be admitted by the {@link AdmissionController}, as soon as it arrives.<br>
+ * A rejected connection gets a busy response & is closed, and a rejected request gets a busy response in its place<br>
+ * among the responses.
+ */
+public class SelectorServer {
+    //a larger frame is treated as a broken client
+    public static final int MAX_FRAME_SIZE = 1 << 26;
+    //a connection whose client doesn't read any of its responses for this long is closed
+    public static final int RESPONSE_STALL_TIMEOUT_MILLIS = 30_000;
+    //the pause of accepting after an accept failed, since accepting at once would fail the same way
+    private static final int ACCEPT_BACKOFF_MILLIS = 100;
+    //a connection stops reading & dispatching requests while more response bytes than this wait for its client
+    private static final int MAX_QUEUED_RESPONSE_BYTES = 1 << 20;
+
+    private final int port;
+    private final FrameHandler frameHandler;
+    private final ExecutorService computePool;
+    private final AdmissionController admission;
+    private final IoLoop[] ioLoops;
+    private volatile boolean activeServer;
+    private ServerSocketChannel serverChannel;
+    private int nextLoop;
+
+    /**
+     * @param port           The port to listen on.
+     * @param ioThreads      Amount of I/O threads.
+     * @param frameHandler   The handler of the requests.
+     * @param computePool    The pool which runs the requests.
+     * @param admission      Admits the connections & the requests.
+     */
+    public SelectorServer(int port, int ioThreads, @NotNull FrameHandler frameHandler,
+                          @NotNull ExecutorService computePool, @NotNull AdmissionController admission) {
+        if (ioThreads <= 0) throw new IllegalArgumentException("I/O threads amount must be positive");
+
+        this.port = port;
+        this.frameHandler = frameHandler;
+        this.computePool = computePool;
+        this.admission = admission;
+        this.ioLoops = new IoLoop[ioThreads];
+    }
+
+    /**
+     * Opens the server channel and starts the I/O threads.<br>
+     * The first I/O thread also accepts the new connections, and spreads them over all I/O threads.
+     */
+    public void start() throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        //backlog - max amount of clients that can try to connect to the server simultaneously
+        serverChannel.bind(new InetSocketAddress(this.port), 20);
+        serverChannel.configureBlocking(false);
+        this.activeServer = true;
+
+        for (int i = 0; i < ioLoops.length; i++)
+            ioLoops[i] = new IoLoop(Selector.open());
+        serverChannel.register(ioLoops[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < ioLoops.length; i++)
+            new Thread(ioLoops[i], "selector-io-" + i).start();
+    }
+
+    /**
+     * Stops accepting connections, and closes all the connections.<br>
+     * The compute pool is owned by the caller, and it's not shut down.
+     */
+    public void stop() {
+        this.activeServer = false;
+
+        for (IoLoop ioLoop : ioLoops) {
+            if (ioLoop != null)
+                ioLoop.selector.wakeup();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+
+        if (channel == null)
+            return;
+
+        if (!admission.tryOpenSession()) {
+            rejectSession(channel);
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            admission.closeSession();
+            throw e;
+        }
+        IoLoop ioLoop = ioLoops[nextLoop];
+        nextLoop = (nextLoop + 1) % ioLoops.length;
+
+        //a channel can be registered only while its selector isn't blocked, so the I/O thread registers it
+        ioLoop.execute(() -> {
+            try {
+                Connection connection = new Connection(channel, ioLoop);
+                connection.key = channel.register(ioLoop.selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeQuietly(channel);
+                admission.closeSession();
+            }
+        });
+    }
+
+    /**
+     * Answers a connection over the sessions limit with a busy response, so the client can tell an overloaded server<br>
+     * from a network failure, and closes it.<br>
+     * The new channel is still blocking, and the short response fits in its empty send buffer.
+     */
+    private void rejectSession(SocketChannel channel) {
+        try {
+            channel.write(ByteBuffer.wrap(BinaryProtocol.busySessionResponse(admission.getBusyRetryAfterMillis())));
+            channel.shutdownOutput();
+        } catch (IOException ignored) {
+            //the client is already gone
+        }
+        closeQuietly(channel);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * An I/O thread, which selects the ready connections & runs the tasks that other threads passed to it.
+     */
+    private class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private SelectionKey pausedAcceptKey;
+        private long acceptResumeNanos;
+
+        private IoLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Runs a task on this I/O thread, which is the only thread that touches its connections.
+         */
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        private void pauseAccepting(SelectionKey acceptKey) {
+            acceptKey.interestOps(0);
+            pausedAcceptKey = acceptKey;
+            acceptResumeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_BACKOFF_MILLIS);
+        }
+
+        /**
+         * Resumes accepting once its pause is over.
+         *
+         * @return The time to wait for ready connections - until accepting resumes, or 0 (no limit) if it isn't paused.
+         */
+        private long selectTimeoutMillis() {
+            if (pausedAcceptKey == null)
+                return 0;
+
+            long remainingNanos = acceptResumeNanos - System.nanoTime();
+
+            if (remainingNanos > 0)
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+
+            if (pausedAcceptKey.isValid())
+                pausedAcceptKey.interestOps(SelectionKey.OP_ACCEPT);
+            pausedAcceptKey = null;
+            return 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (activeServer) {
+                    selector.select(selectTimeoutMillis());
+
+                    for (Runnable task = tasks.poll(); task != null; task = tasks.poll())
+                        task.run();
+
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+
+                        if (key.isValid() && key.isAcceptable()) {
+                            try {
+                                accept();
+                            } catch (IOException e) {
+                                //a failed accept (e.g. too many open files) must not stop the thread which accepts
+                                e.printStackTrace();
+                                pauseAccepting(key);
+                            }
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+
+                        try {
+                            if (key.isValid() && key.isReadable())
+                                connection.read();
+                            if (key.isValid() && key.isWritable())
+                                connection.write();
+                        } catch (IOException e) {
+                            //the client disconnected or broke the protocol
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys())
+                    closeQuietly(key.channel());
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of a single client connection. Only the I/O thread of the connection touches it,<br>
+     * except for the {@link ResponseFlow}, which the running requests wait on.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final IoLoop ioLoop;
+        private final ByteBuffer header = ByteBuffer.allocate(FrameOutputStream.FRAME_HEADER_SIZE);
+        private final InetAddress clientAddress;
+        private final Queue<PendingRequest> requests = new ArrayDeque<>();
+        private final Queue<ByteBuffer> responseFrames = new ArrayDeque<>();
+        private final ResponseFlow responseFlow = new ResponseFlow();
+        private SelectionKey key;
+        private ByteBuffer body;
+        private boolean busy;
+        private boolean closed;
+
+        private Connection(SocketChannel channel, IoLoop ioLoop) {
+            this.channel = channel;
+            this.ioLoop = ioLoop;
+            this.clientAddress = channel.socket().getInetAddress();
+        }
+
+        /**
+         * Reads all the available bytes, and queues every completed request frame.
+         */
+        private void read() throws IOException {
+            //the reading stops while the client doesn't read its responses, so they can't grow without limit
+            while (!responseFlow.isFull()) {
+                ByteBuffer target = body == null ? header : body;
+                int readBytes = channel.read(target);
+
+                if (readBytes < 0) {
+                    close();
+                    return;
+                }
+                if (target.hasRemaining())
+                    break;
+
+                if (body == null) {
+                    int length = header.getInt(0);
+                    header.clear();
+
+                    if (length <= 0 || length > MAX_FRAME_SIZE)
+                        throw new IOException("Invalid request frame length " + length);
+                    body = ByteBuffer.allocate(length);
+                } else {
+                    admitRequest(body.array());
+                    body = null;
+                }
+            }
+            dispatchNextRequest();
+        }
+
+        /**
+         * Admits a request as soon as it arrives, so it holds an in-flight place while it waits behind<br>
+         * the previous requests of the connection.
+         */
+        private void admitRequest(byte[] request) {
+            AdmissionController.Ticket ticket = null;
+            int retryAfterMillis = 0;
+
+            try {
+                ticket = admission.admit(clientAddress);
+            } catch (ServerBusyException e) {
+                retryAfterMillis = e.getRetryAfterMillis();
+            }
+            if (!frameHandler.isConcurrent(request))
+                requests.add(new PendingRequest(request, ticket, retryAfterMillis));
+            else if (ticket != null)
+                dispatchConcurrentRequest(request, ticket);
+            else
+                BinaryProtocol.writeBusyResponse(request, retryAfterMillis, this::send);
+        }
+
+        /**
+         * Dispatches the queued requests in their order, one at a time.<br>
+         * The dispatching waits while the client doesn't read its responses, and {@link #write()} resumes it.
+         */
+        private void dispatchNextRequest() {
+            while (!busy && !requests.isEmpty() && !responseFlow.isFull()) {
+                PendingRequest pending = requests.poll();
+
+                //a rejected request is answered in its turn, so the responses stay in the requests order
+                if (pending.ticket == null) {
+                    BinaryProtocol.writeBusyResponse(pending.request, pending.retryAfterMillis, this::send);
+                    continue;
+                }
+                busy = execute(pending.request, pending.ticket, () -> {
+                    try {
+                        frameHandler.handleRequestOrFail(pending.request, frame -> sendFromRequest(List.of(frame)));
+                    } catch (UncheckedIOException e) {
+                        //the connection was closed while the request was running, so the rest of its response is dropped
+                        if (!responseFlow.isClosed())
+                            throw e;
+                    } finally {
+                        ioLoop.execute(() -> {
+                            busy = false;
+                            dispatchNextRequest();
+                        });
+                    }
+                });
+            }
+        }
+
+        /**
+         * Runs a request next to the other requests of the connection.<br>
+         * The response frames are collected and sent together, so the responses of concurrent requests don't interleave.
+         */
+        private void dispatchConcurrentRequest(byte[] request, AdmissionController.Ticket ticket) {
+            execute(request, ticket, () -> {
+                List<ByteBuffer> responseFrames = new ArrayList<>();
+
+                try {
+                    //a failed request still gets a response with its id, so the client doesn't wait for it forever
+                    frameHandler.handleRequestOrFail(request, responseFrames::add);
+                } finally {
+                    sendFromRequest(responseFrames);
+                }
+            });
+        }
+
+        /**
+         * Runs an admitted request on the compute pool.
+         *
+         * @return true if the request was dispatched, false if it was answered with a busy response.
+         */
+        private boolean execute(byte[] request, AdmissionController.Ticket ticket, Runnable task) {
+            try {
+                computePool.execute(ticket.wrap(task));
+                return true;
+            } catch (RejectedExecutionException e) {
+                ticket.complete();
+
+                if (computePool.isShutdown())
+                    close();
+                else //the queue of the compute pool is full
+                    BinaryProtocol.writeBusyResponse(request, admission.getBusyRetryAfterMillis(), this::send);
+                return false;
+            }
+        }
+
+        /**
+         * Hands response frames from a running request to the I/O thread, all at once.<br>
+         * The request waits while the connection has more than {@value #MAX_QUEUED_RESPONSE_BYTES} unwritten response bytes,<br>
+         * so a request which produces its response faster than the client reads it doesn't pile the response up in memory.
+         *
+         * @throws UncheckedIOException If the connection was closed, or its client didn't read for too long.
+         */
+        private void sendFromRequest(List<ByteBuffer> frames) {
+            long bytes = 0;
+
+            for (ByteBuffer frame : frames)
+                bytes += frame.remaining();
+
+            try {
+                responseFlow.reserve(bytes);
+            } catch (IOException e) {
+                ioLoop.execute(this::close);
+                throw new UncheckedIOException(e);
+            }
+            ioLoop.execute(() -> frames.forEach(this::enqueue));
+        }
+
+        /**
+         * Sends a response frame from the I/O thread, without waiting.
+         */
+        private void send(ByteBuffer frame) {
+            responseFlow.add(frame.remaining());
+            enqueue(frame);
+        }
+
+        /**
+         * Queues a response frame whose bytes were already counted by the {@link ResponseFlow}.
+         */
+        private void enqueue(ByteBuffer frame) {
+            if (!channel.isOpen())
+                return;
+
+            responseFrames.add(frame);
+
+            try {
+                write();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Writes as many response frames as the channel accepts, and waits for the channel to be writable if any are left.<br>
+         * The connection is read, its requests are dispatched and its running requests produce their responses only while<br>
+         * its unwritten responses are below {@value #MAX_QUEUED_RESPONSE_BYTES} bytes, so all of them are resumed here<br>
+         * once the responses drain.
+         */
+        private void write() throws IOException {
+            boolean wasBlocked = responseFlow.isFull();
+
+            while (!responseFrames.isEmpty()) {
+                ByteBuffer frame = responseFrames.peek();
+                responseFlow.remove(channel.write(frame));
+
+                if (frame.hasRemaining())
+                    break;
+                responseFrames.poll();
+            }
+            boolean blocked = responseFlow.isFull();
+            int interestOps = blocked ? 0 : SelectionKey.OP_READ;
+
+            if (!responseFrames.isEmpty())
+                interestOps |= SelectionKey.OP_WRITE;
+            key.interestOps(interestOps);
+
+            if (wasBlocked && !blocked)
+                dispatchNextRequest();
+        }
+
+        private void close() {
+            key.cancel();
+            closeQuietly(channel);
+            responseFrames.clear();
+            //the running requests stop producing their responses
+            responseFlow.close();
+
+            //the queued requests won't run, so their places are freed
+            for (PendingRequest pending : requests) {
+                if (pending.ticket != null)
+                    pending.ticket.complete();
+            }
+            requests.clear();
+
+            if (!closed) {
+                closed = true;
+                admission.closeSession();
+            }
+        }
+    }
+
+    /**
+     * Counts the response bytes of a connection, from the moment they are produced until they are written,<br>
+     * and holds the running requests of the connection while there are more than {@value #MAX_QUEUED_RESPONSE_BYTES} of them.
+     */
+    private static class ResponseFlow {
+        private long unwrittenBytes;
+        private long lastWriteNanos = System.nanoTime();
+        private boolean closed;
+
+        private synchronized boolean isFull() {
+            return unwrittenBytes > MAX_QUEUED_RESPONSE_BYTES;
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private synchronized void add(long bytes) {
+            unwrittenBytes += bytes;
+        }
+
+        /**
+         * Waits until the unwritten bytes are below the limit, then adds the given bytes.
+         *
+         * @throws ClosedChannelException        If the connection was closed.
+         * @throws InterruptedByTimeoutException If nothing was written to the client for {@value #RESPONSE_STALL_TIMEOUT_MILLIS} ms.
+         * @throws InterruptedIOException        If the request was interrupted, since the server is shutting down.
+         */
+        private synchronized void reserve(long bytes) throws IOException {
+            long waitStartNanos = System.nanoTime();
+
+            while (!closed && isFull()) {
+                long stallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - Math.max(waitStartNanos, lastWriteNanos));
+
+                if (stallMillis >= RESPONSE_STALL_TIMEOUT_MILLIS)
+                    throw new InterruptedByTimeoutException();
+                try {
+                    wait(RESPONSE_STALL_TIMEOUT_MILLIS - stallMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the client to read");
+                }
+            }
+            if (closed)
+                throw new ClosedChannelException();
+            unwrittenBytes += bytes;
+        }
+
+        private synchronized void remove(long writtenBytes) {
+            if (writtenBytes == 0)
+                return;
+
+            unwrittenBytes -= writtenBytes;
+            lastWriteNanos = System.nanoTime();
+
+            if (!isFull())
+                notifyAll();
+        }
+
+        private synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * A request which waits for the previous requests of its connection.<br>
+     * A rejected request has no ticket, and it's answered with a busy response.
+     */
+    private static class PendingRequest {
+        private final byte[] request;
+        private final AdmissionController.Ticket ticket;
+        private final int retryAfterMillis;
+
+        private PendingRequest(byte[] request, AdmissionController.Ticket ticket, int retryAfterMillis) {
+            this.request = request;
+            this.ticket = ticket;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+}
@@ -1,31 +1,81 @@
 package clientserver;
 
+import algorithms.ComputePool;
+import algorithms.DeltaSteppingLightestPaths;
+import components.RowKernels;
+
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Scanner;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 /**
  * This class listens to client requests over a socket using a TPC connection<br>
  * and uses the {@link IHandler} interface to execute the required task.
  */
 public class Server {
+    //amount of threads which read & write the connections of the non-blocking front end
+    private static final int IO_THREADS = 2;
+
     private final int port;
     //using 'volatile' keyword to ensure that updates to the variable propagate predictably to other threads.
     private volatile boolean activeServer;
     private ThreadPoolExecutor clientsPool;
+    private SelectorServer selectorServer;
+    private ExecutorService connectionsPool;
+    private ExecutorService computePool;
+    private volatile ServerSocket serverSocket;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final AdmissionController admission;
 
     public Server(int port) throws IllegalArgumentException {
+        this(port, new AdmissionController());
+    }
+
+    /**
+     * @param port      The port to listen on.
+     * @param admission Limits the sessions & requests that the server takes, in the framed modes.
+     */
+    public Server(int port, AdmissionController admission) throws IllegalArgumentException {
         if (!validatePort(port))
             throw new IllegalArgumentException("Invalid port");
 
         this.port = port;
         this.activeServer = true;
+        this.admission = admission;
+        registerComputeMetrics();
+        admission.registerMetrics(metrics);
 
         System.out.println("Server is live.");
     }
 
+    /**
+     * @return The metrics registry of the server.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers the metrics of the shared {@link ComputePool} of the algorithms.
+     */
+    private void registerComputeMetrics() {
+        metrics.register("compute.parallelism", ComputePool::getParallelism);
+        metrics.register("compute.poolSize", ComputePool::getPoolSize);
+        metrics.register("compute.activeThreads", ComputePool::getActiveThreadsCount);
+        metrics.register("compute.runningThreads", ComputePool::getRunningThreadsCount);
+        metrics.register("compute.queuedTasks", ComputePool::getQueuedTasksCount);
+        metrics.register("compute.steals", ComputePool::getStealsCount);
+        metrics.register("deltaStepping.delta", DeltaSteppingLightestPaths::getDefaultDelta);
+        metrics.register("deltaStepping.searches", DeltaSteppingLightestPaths::getSearchesCount);
+        metrics.register("deltaStepping.buckets", DeltaSteppingLightestPaths::getBucketsCount);
+        metrics.register("deltaStepping.phases", DeltaSteppingLightestPaths::getPhasesCount);
+        metrics.register("deltaStepping.relaxations", DeltaSteppingLightestPaths::getRelaxationsCount);
+        metrics.register("deltaStepping.bucketsMicros", DeltaSteppingLightestPaths::getBucketsMicros);
+    }
+
     /**
      * A method to validate the port number.<br>
      * Valid ports are from 1024 to 49151 inclusive (Registered ports).
@@ -96,31 +146,195 @@ public class Server {
         }).start();
     }
 
+    /**
+     * This method listens for client requests on a non-blocking {@link SelectorServer}.<br>
+     * Connections are multiplexed on a few I/O threads, so idle clients don't hold threads,<br>
+     * and only complete requests are executed on the clients pool.<br>
+     * The queue of the clients pool is bounded by the in-flight limit, so requests over the limit get a busy response.
+     *
+     * @param frameHandler The handler of the requests.
+     */
+    public void handleClientsNonBlocking(FrameHandler frameHandler) {
+        this.clientsPool = new ThreadPoolExecutor(10, 20, 500,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(admission.getMaxInFlight()));
+        this.selectorServer = new SelectorServer(this.port, IO_THREADS, frameHandler, clientsPool, admission);
+
+        try {
+            selectorServer.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method listens for client requests, and serves each connection on its own thread.<br>
+     * In {@link ServerMode#VIRTUAL_THREADS} mode each connection gets a virtual thread, which is cheap to block,<br>
+     * and the requests run on a platform threads compute pool, sized by the available processors.<br>
+     * In {@link ServerMode#THREAD_POOL} mode the connections & their requests run on the clients pool.<br>
+     * Both pools have bounded queues, and connections over the sessions limit get a busy response & are closed<br>
+     * as soon as they're accepted.
+     *
+     * @param frameHandler The handler of the requests.
+     * @param mode         {@link ServerMode#VIRTUAL_THREADS} or {@link ServerMode#THREAD_POOL}.
+     */
+    public void handleClientsPerConnection(FrameHandler frameHandler, ServerMode mode) {
+        if (mode == ServerMode.VIRTUAL_THREADS) {
+            this.connectionsPool = newVirtualThreadPerTaskExecutor(admission.getMaxSessions());
+            int processors = Runtime.getRuntime().availableProcessors();
+            this.computePool = new ThreadPoolExecutor(processors, processors, 0,
+                    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(admission.getMaxInFlight()));
+        } else if (mode == ServerMode.THREAD_POOL) {
+            this.clientsPool = new ThreadPoolExecutor(10, 20, 500,
+                    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(admission.getMaxSessions()));
+            this.connectionsPool = clientsPool;
+        } else
+            throw new IllegalArgumentException("Connections can't be served on their own threads in " + mode + " mode");
+
+        new Thread(() -> {
+            try (ServerSocket serverSocket = new ServerSocket(this.port, 20)) {
+                this.serverSocket = serverSocket;
+
+                while (activeServer) {
+                    Socket serverToSpecificClient = serverSocket.accept();
+
+                    if (!admission.tryOpenSession()) {
+                        rejectSession(serverToSpecificClient);
+                        continue;
+                    }
+                    try {
+                        connectionsPool.execute(new FramedConnection(serverToSpecificClient, frameHandler, computePool, admission));
+                    } catch (RejectedExecutionException e) {
+                        admission.closeSession();
+                        serverToSpecificClient.close();
+
+                        if (connectionsPool.isShutdown())
+                            throw e;
+                    }
+                }
+            } catch (IOException | RejectedExecutionException e) {
+                //closing the server socket stops the accept call
+                if (activeServer)
+                    e.printStackTrace();
+            }
+        }).start();
+    }
+
+    /**
+     * This method listens for client requests in the given mode.
+     *
+     * @param frameHandler The handler of the requests.
+     * @param mode         The way to serve the clients.
+     */
+    public void handleClients(FrameHandler frameHandler, ServerMode mode) {
+        switch (mode) {
+            case SELECTOR -> handleClientsNonBlocking(frameHandler);
+            case VIRTUAL_THREADS, THREAD_POOL -> handleClientsPerConnection(frameHandler, mode);
+        }
+    }
+
+    /**
+     * This method listens for client requests in the given mode, and runs each request on a new {@link IHandler}.
+     *
+     * @param handlerFactory Creates a new {@link IHandler} for every request.
+     * @param mode           The way to serve the clients.
+     */
+    public void handleClients(Supplier<IHandler> handlerFactory, ServerMode mode) {
+        handleClients(new HandlerAdapter(handlerFactory), mode);
+    }
+
+    /**
+     * Answers a connection over the sessions limit with a busy response, so the client can tell an overloaded server<br>
+     * from a network failure, and closes it.
+     */
+    private void rejectSession(Socket socket) {
+        try (socket) {
+            socket.getOutputStream().write(BinaryProtocol.busySessionResponse(admission.getBusyRetryAfterMillis()));
+            socket.shutdownOutput();
+        } catch (IOException ignored) {
+            //the client is already gone
+        }
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each task.<br>
+     * Virtual threads exist only from Java 21, so on older runtimes the tasks run on a pool of platform threads instead,<br>
+     * which starts threads on demand up to the given bound, and lets idle threads end.
+     *
+     * @param maxThreads The bound of the platform threads - no more connections than the sessions limit run at once.
+     * @return The executor.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(int maxThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            ThreadPoolExecutor platformThreads = new ThreadPoolExecutor(maxThreads, maxThreads, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            platformThreads.allowCoreThreadTimeOut(true);
+            return platformThreads;
+        }
+    }
+
     /**
      * This method responsible for closing the server.<br>
      * The method invokes the 'shutdown()' method of the {@link ThreadPoolExecutor} class.
      */
-    private void closeServer() {
+    public void closeServer() {
         if (this.activeServer) {
             this.activeServer = false;
 
+            if (this.selectorServer != null)
+                //Stop listening & close the connections of the non-blocking front end
+                selectorServer.stop();
+
+            if (this.serverSocket != null) {
+                try {
+                    //Stop listening for incoming connections
+                    serverSocket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
             if (this.clientsPool != null)
                 //Stop accepting tasks and finish current running tasks
                 clientsPool.shutdown();
+
+            if (this.connectionsPool != null)
+                connectionsPool.shutdown();
+
+            if (this.computePool != null)
+                computePool.shutdown();
         }
         System.out.println("Server closed.");
     }
 
+    /**
+     * Starts the server on port 8010.
+     *
+     * @param args Optional {@link ServerMode} name (selector, virtual_threads or thread_pool), selector by default.
+     */
     public static void main(String[] args) {
+        ServerMode mode = args.length > 0 ? ServerMode.valueOf(args[0].toUpperCase()) : ServerMode.SELECTOR;
+
         Server server = new Server(8010);
-        server.handleClients(new MatrixHandler());
+        //both protocols share a single store, so a matrix uploaded once can be queried by every client
+        MatrixService matrixService = new MatrixService();
+        matrixService.registerMetrics(server.getMetrics());
+
+        //binary requests are told apart from serialized objects by their first bytes
+        server.handleClients(new ProtocolRouter(new HandlerAdapter(() -> new MatrixHandler(matrixService)),
+                new BinaryMatrixHandler(matrixService)), mode);
+        System.out.println("Serving clients in " + mode + " mode, with " + RowKernels.get().getName() + " row kernels.");
 
         Scanner in = new Scanner(System.in);
 
-        System.out.println("Type 'stop' to shutdown the server.");
+        System.out.println("Type 'metrics' to print the server metrics, or 'stop' to shutdown the server.");
 
-        while (!in.next().equalsIgnoreCase("stop")) {
-            System.out.println("Invalid command, try again!");
+        for (String command = in.next(); !command.equalsIgnoreCase("stop"); command = in.next()) {
+            if (command.equalsIgnoreCase("metrics"))
+                System.out.print(server.getMetrics());
+            else
+                System.out.println("Invalid command, try again!");
         }
         server.closeServer();
     }
@@ -0,0 +1,20 @@
+package clientserver;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the server rejects a request because it's overloaded, or because the client sends too many requests.<br>
+ * The request wasn't executed, so it's safe to send it again after {@link #getRetryAfterMillis()}.
+ */
+public class ServerBusyException extends IOException {
+    private final int retryAfterMillis;
+
+    public ServerBusyException(int retryAfterMillis) {
+        super("Server is busy, retry after " + retryAfterMillis + " ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
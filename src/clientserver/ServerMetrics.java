@@ -0,0 +1,44 @@
+package clientserver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of the server metrics.<br>
+ * Each component registers its counters & gauges under dotted names (for example {@code cache.hits}),<br>
+ * and the metrics are read only when a snapshot is taken, so registering a metric costs nothing on the request path.
+ */
+public class ServerMetrics {
+    private final Map<String, LongSupplier> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * @param name   The name of the metric.
+     * @param metric Reads the current value of the metric.
+     */
+    public void register(@NotNull String name, @NotNull LongSupplier metric) {
+        if (metrics.putIfAbsent(name, metric) != null)
+            throw new IllegalArgumentException("Metric " + name + " is already registered");
+    }
+
+    /**
+     * @return The current values of all the metrics, sorted by name.
+     */
+    public Map<String, Long> snapshot() {
+        TreeMap<String, Long> values = new TreeMap<>();
+
+        metrics.forEach((name, metric) -> values.put(name, metric.getAsLong()));
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder metricsString = new StringBuilder();
+
+        snapshot().forEach((name, value) -> metricsString.append(name).append(" = ").append(value).append('\n'));
+        return metricsString.toString();
+    }
+}
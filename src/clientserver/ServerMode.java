@@ -0,0 +1,21 @@
+package clientserver;
+
+/**
+ * The ways the {@link Server} can serve its clients, selected at startup.
+ */
+public enum ServerMode {
+    /**
+     * A non-blocking {@link SelectorServer}, which multiplexes the connections on a few I/O threads.
+     */
+    SELECTOR,
+    /**
+     * A virtual thread for each connection, while the requests run on a separate platform threads compute pool.<br>
+     * Virtual threads exist only from Java 21 - on older runtimes the connections run on a pool of platform threads instead,<br>
+     * which is bounded by the sessions limit of the {@link AdmissionController}.
+     */
+    VIRTUAL_THREADS,
+    /**
+     * The fixed clients pool, which holds a thread for each connection & runs its requests on it.
+     */
+    THREAD_POOL
+}
@@ -0,0 +1,256 @@
+package clientserver;
+
+import algorithms.CancellationToken;
+import algorithms.SearchCancelledException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent computations.<br>
+ * The first caller of a key starts the computation (a flight), and every caller of the same key which arrives<br>
+ * while it's running waits for it and gets the same result (or the same exception), instead of computing it again.<br>
+ * A key is forgotten as soon as its computation ends, so results are not kept - that's the job of a {@link ResultCache}.<br>
+ * <br>
+ * A cancellable computation runs on a thread of the executor, under a token of its own, so each of its callers waits<br>
+ * only until its own deadline. The token of the flight is cancelled when all of its callers gave up waiting, or at the<br>
+ * flight limit - and a caller whose deadline didn't pass yet when the flight stopped, runs the computation again<br>
+ * rather than get the timeout of another caller.
+ *
+ * @param <K> The type of the keys, which must implement equals & hashCode.
+ * @param <V> The type of the results.
+ */
+public class SingleFlight<K, V> {
+    //how often a waiting caller checks if its token was cancelled
+    private static final long CANCEL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final long flightTimeoutMillis;
+    private final AtomicLong executionsCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong abandonedCount = new AtomicLong();
+
+    /**
+     * @param executor            Runs the cancellable computations. A computation which it rejects runs on its caller,<br>
+     *                            under the token of that caller, and is still joined by the next callers.
+     * @param flightTimeoutMillis The time that a cancellable computation may run, no matter who waits for it.
+     */
+    public SingleFlight(@NotNull Executor executor, long flightTimeoutMillis) {
+        if (flightTimeoutMillis <= 0)
+            throw new IllegalArgumentException("Flight timeout must be positive");
+
+        this.executor = executor;
+        this.flightTimeoutMillis = flightTimeoutMillis;
+    }
+
+    /**
+     * Runs a computation, or joins the running computation of the same key.<br>
+     * The computation runs on the first caller, and the next callers wait for it as long as it takes.
+     *
+     * @param key         The key of the computation.
+     * @param computation Computes the result.
+     * @return The result.
+     */
+    public V run(@NotNull K key, @NotNull Supplier<? extends V> computation) {
+        Flight<V> flight = new Flight<>(null);
+        Flight<V> runningFlight = inFlight.putIfAbsent(key, flight);
+
+        if (runningFlight != null) {
+            coalescedCount.incrementAndGet();
+            return join(runningFlight.future);
+        }
+        executionsCount.incrementAndGet();
+
+        try {
+            V value = computation.get();
+            flight.future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Runs a cancellable computation, or joins the running computation of the same key,<br>
+     * and waits for it until the token of the caller is cancelled.
+     *
+     * @param key               The key of the computation.
+     * @param cancellationToken The token of the caller.
+     * @param computation       Computes the result, and stops once the given token is cancelled.
+     * @return The result.
+     * @throws SearchCancelledException If the token of the caller was cancelled before the result was ready.
+     */
+    public V run(@NotNull K key, @NotNull CancellationToken cancellationToken,
+                 @NotNull Function<CancellationToken, ? extends V> computation) {
+        while (true) {
+            Flight<V> flight = new Flight<>(CancellationToken.withTimeout(flightTimeoutMillis));
+            Flight<V> runningFlight = inFlight.putIfAbsent(key, flight);
+
+            if (runningFlight == null) {
+                executionsCount.incrementAndGet();
+                start(key, flight, cancellationToken, computation);
+            } else if (runningFlight.addWaiter()) {
+                coalescedCount.incrementAndGet();
+                flight = runningFlight;
+            } else {
+                //all the callers of the flight gave up, and it's stopping - a new flight replaces it
+                inFlight.remove(key, runningFlight);
+                continue;
+            }
+
+            try {
+                return await(key, flight, cancellationToken);
+            } catch (SearchCancelledException e) {
+                if (cancellationToken.isCancelled())
+                    throw cancellationToken.newCancelledException(e.getPhase(), e.getExpandedNodes(), e.getFoundPaths());
+                //the flight stopped while this caller has time left, so it's run again
+            }
+        }
+    }
+
+    private void start(K key, Flight<V> flight, CancellationToken cancellationToken,
+                       Function<CancellationToken, ? extends V> computation) {
+        try {
+            executor.execute(() -> complete(key, flight, () -> computation.apply(flight.cancellationToken)));
+        } catch (RejectedExecutionException e) {
+            complete(key, flight, () -> computation.apply(cancellationToken));
+        }
+    }
+
+    private void complete(K key, Flight<V> flight, Supplier<? extends V> computation) {
+        try {
+            flight.future.complete(computation.get());
+        } catch (Throwable t) {
+            flight.future.completeExceptionally(t);
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Waits for a flight until the token of the caller is cancelled.<br>
+     * The last caller which gives up stops the flight, and waits for it to stop, so its exception has the<br>
+     * statistics of the computation. The other callers which give up don't wait, and their exceptions have none.
+     */
+    private V await(K key, Flight<V> flight, CancellationToken cancellationToken) {
+        while (!cancellationToken.isCancelled()) {
+            try {
+                return flight.future.get(Math.min(cancellationToken.getRemainingNanos(), CANCEL_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                //checking the token again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancellationToken.cancel();
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        if (flight.removeWaiter()) {
+            abandonedCount.incrementAndGet();
+            inFlight.remove(key, flight);
+        } else if (!flight.future.isDone()) {
+            throw cancellationToken.newCancelledException(SearchCancelledException.Phase.SEARCH, 0, 0);
+        }
+        return join(flight.future);
+    }
+
+    /**
+     * Waits for a running computation, and throws its exception as is.
+     */
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException)
+            throw runtimeException;
+        if (cause instanceof Error error)
+            throw error;
+        throw new CompletionException(cause);
+    }
+
+    /**
+     * @return Amount of computations which are running right now.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return Amount of computations which were actually run.
+     */
+    public long getExecutionsCount() {
+        return executionsCount.get();
+    }
+
+    /**
+     * @return Amount of calls which joined a running computation instead of running it.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return Amount of cancellable computations which were stopped, because all of their callers gave up waiting.
+     */
+    public long getAbandonedCount() {
+        return abandonedCount.get();
+    }
+
+    /**
+     * A running computation, and the amount of callers which wait for it.
+     */
+    private static class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        //null if the computation can't be cancelled
+        private final CancellationToken cancellationToken;
+        private int waitersCount = 1;
+        private boolean abandoned;
+
+        private Flight(CancellationToken cancellationToken) {
+            this.cancellationToken = cancellationToken;
+        }
+
+        /**
+         * @return true if the caller joined the flight, false if the flight was abandoned.
+         */
+        private synchronized boolean addWaiter() {
+            if (abandoned)
+                return false;
+
+            waitersCount++;
+            return true;
+        }
+
+        /**
+         * @return true if the caller was the last one, so the flight was abandoned & cancelled.
+         */
+        private synchronized boolean removeWaiter() {
+            if (--waitersCount > 0 || future.isDone())
+                return false;
+
+            abandoned = true;
+            cancellationToken.cancel();
+            return true;
+        }
+    }
+}
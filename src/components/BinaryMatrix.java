@@ -0,0 +1,182 @@
+package components;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A matrix which contains only 0 & 1 values, packed as bits.<br>
+ * Each row starts at a new word of a flat {@code long[]}, so a 64 columns row takes 8 bytes instead of 256 bytes.<br>
+ * Scanning rows for ones and testing neighbors is done a whole word at a time.
+ */
+public class BinaryMatrix extends Matrix {
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public BinaryMatrix(int[][] baseMatrix) {
+        super(baseMatrix.length, baseMatrix.length == 0 ? 0 : baseMatrix[0].length);
+
+        this.wordsPerRow = (getColumns() + Long.SIZE - 1) / Long.SIZE;
+        this.words = new long[getRows() * wordsPerRow];
+
+        RowKernels kernels = RowKernels.get();
+
+        for (int row = 0; row < getRows(); row++) {
+            if (!kernels.isBinary(baseMatrix[row], 0, getColumns()))
+                throw new IllegalArgumentException("Binary matrix can contain only 0 & 1 values");
+
+            kernels.packBits(baseMatrix[row], getColumns(), words, row * wordsPerRow);
+        }
+    }
+
+    /**
+     * Creates a matrix straight from packed rows, without an int array.<br>
+     * Each row takes {@code (columns + 63) / 64} words, and column {@code c} of a row is bit {@code c % 64}<br>
+     * of word {@code c / 64}.
+     *
+     * @param rows    Amount of rows.
+     * @param columns Amount of columns.
+     * @param words   The packed rows.
+     */
+    public BinaryMatrix(int rows, int columns, long @NotNull [] words) {
+        super(rows, columns);
+
+        this.wordsPerRow = (columns + Long.SIZE - 1) / Long.SIZE;
+
+        if (words.length != rows * wordsPerRow)
+            throw new IllegalArgumentException("Words array doesn't match the matrix dimensions");
+
+        //the bits after the last column must be empty, so they are not counted as ones
+        long lastWordMask = columns % Long.SIZE == 0 ? -1L : (1L << columns) - 1;
+
+        for (int row = 0; row < rows && wordsPerRow > 0; row++) {
+            if ((words[(row + 1) * wordsPerRow - 1] & ~lastWordMask) != 0)
+                throw new IllegalArgumentException("Row " + row + " has bits after the last column");
+        }
+        this.words = words;
+    }
+
+    /**
+     * Unpacks the bits to a new 2D array.<br>
+     * Prefer {@link #getValue(int, int)} & {@link #forEachOne(CellConsumer)}, which don't copy the matrix.
+     *
+     * @return A new 2D array with the values of the matrix.
+     */
+    @Override
+    public int[][] getBaseMatrix() {
+        int[][] baseMatrix = new int[getRows()][getColumns()];
+
+        forEachOne((row, column) -> baseMatrix[row][column] = 1);
+        return baseMatrix;
+    }
+
+    @Override
+    public int getValue(int row, int column) {
+        return isOne(row, column) ? 1 : 0;
+    }
+
+    @Override
+    public boolean isOne(int row, int column) {
+        if (row < 0 || row >= getRows() || column < 0 || column >= getColumns())
+            throw new IndexOutOfBoundsException("Index (" + row + ", " + column + ") is out of bounds");
+
+        return (words[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Extracts the 3 bits window straight from the row words.
+     */
+    @Override
+    public int getRowWindow(int row, int column) {
+        if (row < 0 || row >= getRows())
+            return 0;
+
+        int rowStart = row * wordsPerRow;
+        int firstColumn = column - 1;
+        long bits;
+
+        if (firstColumn < 0) {
+            //there's no column on the left, so bit 0 stays empty
+            bits = words[rowStart] << 1;
+        } else {
+            int word = firstColumn >>> 6;
+            int offset = firstColumn & 63;
+            bits = words[rowStart + word] >>> offset;
+
+            //the window continues in the next word
+            if (offset > Long.SIZE - 3 && word + 1 < wordsPerRow)
+                bits |= words[rowStart + word + 1] << (Long.SIZE - offset);
+        }
+        return (int) (bits & 0b111);
+    }
+
+    /**
+     * Finds the next cell with value 1 in a row.
+     *
+     * @param row        The row to scan.
+     * @param fromColumn The first column to check (inclusive).
+     * @return The column of the next 1, or -1 if there are no more ones in the row.
+     */
+    public int nextOne(int row, int fromColumn) {
+        if (fromColumn >= getColumns())
+            return -1;
+
+        int rowStart = row * wordsPerRow;
+        int word = fromColumn >>> 6;
+        long bits = words[rowStart + word] & (-1L << fromColumn);
+
+        while (true) {
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word == wordsPerRow)
+                return -1;
+            bits = words[rowStart + word];
+        }
+    }
+
+    @Override
+    public void forEachOne(int fromRow, int toRow, @NotNull CellConsumer consumer) {
+        for (int row = fromRow; row < toRow; row++) {
+            int rowStart = row * wordsPerRow;
+
+            for (int word = 0; word < wordsPerRow; word++) {
+                long bits = words[rowStart + word];
+
+                while (bits != 0) {
+                    consumer.accept(row, (word << 6) + Long.numberOfTrailingZeros(bits));
+                    //clearing the lowest set bit
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int countOnes() {
+        int counter = 0;
+
+        for (long word : words)
+            counter += Long.bitCount(word);
+        return counter;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 16 + 16 + (long) Long.BYTES * words.length;
+    }
+
+    @Override
+    public int getMinValue() {
+        return getRows() * getColumns() > 0 && countOnes() == getRows() * getColumns() ? 1 : 0;
+    }
+
+    /**
+     * @param row The row.
+     * @return Amount of cells with value 1 in the given row.
+     */
+    public int countOnes(int row) {
+        int counter = 0;
+
+        for (int word = row * wordsPerRow; word < (row + 1) * wordsPerRow; word++)
+            counter += Long.bitCount(words[word]);
+        return counter;
+    }
+}
@@ -0,0 +1,10 @@
+package components;
+
+/**
+ * A functional interface which receives the row & column of a matrix cell,<br>
+ * so cells can be visited without creating an {@link Index} object for each one of them.
+ */
+@FunctionalInterface
+public interface CellConsumer {
+    void accept(int row, int column);
+}
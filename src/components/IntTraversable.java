@@ -0,0 +1,58 @@
+package components;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * This interface gives a graph the abilities of a primitive graph, whose nodes are dense int ids<br>
+ * from 0 to {@link #getNodesAmount()} - 1.<br>
+ * Algorithms that run against it can keep their state in int arrays & bit sets<br>
+ * instead of creating a {@link Node} object for every visited node.
+ *
+ * @param <T> The type of the data that each node id stands for.
+ */
+public interface IntTraversable<T> {
+    int getNodesAmount();
+
+    int toNodeId(T data);
+
+    T fromNodeId(int node);
+
+    int getValue(int node);
+
+    /**
+     * Visits the nodes that can be reached in one step from a given node (not including the node itself).
+     *
+     * @param node     The node id.
+     * @param consumer The consumer which receives the id of each reachable node.
+     */
+    void forEachReachableNode(int node, IntConsumer consumer);
+
+    /**
+     * Visits all the neighbors of a given node, regardless of their values.
+     *
+     * @param node     The node id.
+     * @param consumer The consumer which receives the id of each neighbor.
+     */
+    void forEachNeighbor(int node, IntConsumer consumer);
+
+    /**
+     * Converts a path of node ids to a path of {@link Node} objects,<br>
+     * where the parent of each node is the previous node in the path.
+     *
+     * @param path The path of node ids.
+     * @return List of nodes.
+     */
+    default List<Node<T>> toNodePath(int[] path) {
+        List<Node<T>> nodePath = new ArrayList<>(path.length);
+        Node<T> parent = null;
+
+        for (int node : path) {
+            Node<T> aNode = new Node<>(fromNodeId(node), parent);
+            nodePath.add(aNode);
+            parent = aNode;
+        }
+        return nodePath;
+    }
+}
@@ -3,17 +3,39 @@ package components;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 /**
  * Base class for all matrices types.<br>
- * It creates a 2D NxN matrix, or NxM matrices.
+ * It creates a 2D NxN matrix, or NxM matrices.<br>
+ * A matrix keeps the {@link SummedAreaTable} of its ones once it's built, so every rectangle query after the first is O(1).<br>
+ * The scans of the rows go through the {@link RowKernels}, which are SIMD accelerated when the JVM supports it.
  */
 public class Matrix implements Serializable {
+    private static final int NEIGHBORS_AMOUNT = 8;
+    private static final int DIAGONAL_NEIGHBORS_AMOUNT = 4;
+
+    //neighbors offsets: upper left, lower right, upper right, lower left, upper, lower, left & right
+    private static final int[] ROW_OFFSETS = {-1, 1, -1, 1, -1, 1, 0, 0};
+    private static final int[] COLUMN_OFFSETS = {-1, 1, 1, -1, 0, 0, -1, 1};
+
+    private static final RowKernels KERNELS = RowKernels.get();
+
     private final int[][] baseMatrix;
+    private final int rows;
+    private final int columns;
+    //built on the first rectangle query, and not serialized
+    private transient volatile SummedAreaTable summedAreaTable;
+    //hashed on the first lookup by content, and not serialized
+    private transient volatile byte[] contentDigest;
 
     public Matrix(int[][] baseMatrix) {
         List<int[]> rowsList = new ArrayList<>();
@@ -22,12 +44,57 @@ public class Matrix implements Serializable {
             rowsList.add(row.clone());
         }
         this.baseMatrix = rowsList.toArray(new int[0][]);
+        this.rows = this.baseMatrix.length;
+        this.columns = this.rows == 0 ? 0 : this.baseMatrix[0].length;
+    }
+
+    /**
+     * A constructor for subclasses which keep the cells in a different representation.
+     *
+     * @param rows    Amount of rows.
+     * @param columns Amount of columns.
+     */
+    protected Matrix(int rows, int columns) {
+        this.baseMatrix = null;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates the most compact matrix for the given 2D array.<br>
+     * If all the values are 0 or 1, a bit-packed {@link BinaryMatrix} is returned.
+     *
+     * @param baseMatrix The given 2D array.
+     * @return {@link BinaryMatrix} if the array is binary, {@link Matrix} otherwise.
+     */
+    public static Matrix of(int[][] baseMatrix) {
+        return isBinary(baseMatrix) ? new BinaryMatrix(baseMatrix) : new Matrix(baseMatrix);
+    }
+
+    /**
+     * @param baseMatrix The given 2D array.
+     * @return true if all the values of the array are 0 or 1, false otherwise.
+     */
+    public static boolean isBinary(int[][] baseMatrix) {
+        for (int[] row : baseMatrix) {
+            if (!KERNELS.isBinary(row, 0, row.length))
+                return false;
+        }
+        return true;
     }
 
     public int[][] getBaseMatrix() {
         return baseMatrix;
     }
 
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
     /**
      * Returns the value of index (x,y)
      *
@@ -35,22 +102,65 @@ public class Matrix implements Serializable {
      * @return Integer value of index (x,y)
      */
     public int getValue(@NotNull Index index) {
-        return this.baseMatrix[index.getRow()][index.getColumn()];
+        return getValue(index.getRow(), index.getColumn());
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return Integer value of the cell.
+     */
+    public int getValue(int row, int column) {
+        return this.baseMatrix[row][column];
+    }
+
+    /**
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return true if the value of the cell is 1, false otherwise.
+     */
+    public boolean isOne(int row, int column) {
+        return getValue(row, column) == 1;
     }
 
     /**
-     * This method invokes the {@link #getDiagonalNeighbors(Index)} & {@link #getNonDiagonalNeighbors(Index)}<br>
-     * methods in order to find all neighbors of a given index.
+     * Returns which cells of a row, from (column - 1) to (column + 1), have the value 1.<br>
+     * Bit 0 stands for (column - 1), bit 1 for column and bit 2 for (column + 1).<br>
+     * Cells outside the matrix are considered as 0.
+     *
+     * @param row    The row to look at.
+     * @param column The middle column of the window.
+     * @return 3 bits window of the row.
+     */
+    public int getRowWindow(int row, int column) {
+        if (row < 0 || row >= rows)
+            return 0;
+
+        int window = 0;
+
+        for (int offset = -1; offset <= 1; offset++) {
+            int aColumn = column + offset;
+
+            if (aColumn >= 0 && aColumn < columns && isOne(row, aColumn))
+                window |= 1 << (offset + 1);
+        }
+        return window;
+    }
+
+    /**
+     * This method invokes the {@link #forEachNeighbor(int, int, CellConsumer)} method<br>
+     * in order to find all neighbors of a given index.
      *
      * @param selectedIndex The selected index
      * @return Collection of neighbor indices.
      */
     public Collection<Index> getNeighbors(final @NotNull Index selectedIndex) {
-        List<Index> allNeighbors = new ArrayList<>();
-
-        allNeighbors.addAll(getDiagonalNeighbors(selectedIndex));
-        allNeighbors.addAll(getNonDiagonalNeighbors(selectedIndex));
+        List<Index> allNeighbors = new ArrayList<>(NEIGHBORS_AMOUNT);
 
+        forEachNeighbor(selectedIndex.getRow(), selectedIndex.getColumn(),
+                (row, column) -> allNeighbors.add(new Index(row, column)));
         return allNeighbors;
     }
 
@@ -61,31 +171,10 @@ public class Matrix implements Serializable {
      * @return Collection of neighbor indices
      */
     public Collection<Index> getNonDiagonalNeighbors(final @NotNull Index index) {
-        List<Index> neighbors = new ArrayList<>();
-
-        //the dummyVariable is used to trigger an exception if index is out of bounds
-        int dummyVariable = 0;
+        List<Index> neighbors = new ArrayList<>(NEIGHBORS_AMOUNT - DIAGONAL_NEIGHBORS_AMOUNT);
 
-        try {//upper index
-            dummyVariable = baseMatrix[index.getRow() - 1][index.getColumn()];
-            neighbors.add(new Index(index.getRow() - 1, index.getColumn()));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
-        }
-        try {//lower index
-            dummyVariable = baseMatrix[index.getRow() + 1][index.getColumn()];
-            neighbors.add(new Index(index.getRow() + 1, index.getColumn()));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
-        }
-        try {//left index
-            dummyVariable = baseMatrix[index.getRow()][index.getColumn() - 1];
-            neighbors.add(new Index(index.getRow(), index.getColumn() - 1));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
-        }
-        try {//right index
-            dummyVariable = baseMatrix[index.getRow()][index.getColumn() + 1];
-            neighbors.add(new Index(index.getRow(), index.getColumn() + 1));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
-        }
+        forEachNeighbor(index.getRow(), index.getColumn(), DIAGONAL_NEIGHBORS_AMOUNT, NEIGHBORS_AMOUNT,
+                (row, column) -> neighbors.add(new Index(row, column)));
         return neighbors;
     }
 
@@ -96,32 +185,93 @@ public class Matrix implements Serializable {
      * @return Collection of neighbor indices
      */
     public Collection<Index> getDiagonalNeighbors(final @NotNull Index index) {
-        List<Index> neighbors = new ArrayList<>();
+        List<Index> neighbors = new ArrayList<>(DIAGONAL_NEIGHBORS_AMOUNT);
+
+        forEachNeighbor(index.getRow(), index.getColumn(), 0, DIAGONAL_NEIGHBORS_AMOUNT,
+                (row, column) -> neighbors.add(new Index(row, column)));
+        return neighbors;
+    }
+
+    /**
+     * Visits all the neighbors of a cell (diagonal neighbors first) which are within the matrix boundaries.<br>
+     * Unlike {@link #getNeighbors(Index)}, this method doesn't allocate any objects.
+     *
+     * @param row      The row of the cell.
+     * @param column   The column of the cell.
+     * @param consumer The consumer which receives the row & column of each neighbor.
+     */
+    public void forEachNeighbor(int row, int column, @NotNull CellConsumer consumer) {
+        forEachNeighbor(row, column, 0, NEIGHBORS_AMOUNT, consumer);
+    }
 
-        //the dummyVariable is used to trigger an exception if index is out of bounds
-        int dummyVariable;
+    /**
+     * Visits the neighbors with value 1 of a cell (diagonal neighbors first), without allocating any objects.
+     *
+     * @param row      The row of the cell.
+     * @param column   The column of the cell.
+     * @param consumer The consumer which receives the row & column of each neighbor with value 1.
+     */
+    public void forEachOneNeighbor(int row, int column, @NotNull CellConsumer consumer) {
+        for (int offset = 0; offset < NEIGHBORS_AMOUNT; offset++) {
+            int neighborRow = row + ROW_OFFSETS[offset];
+            int neighborColumn = column + COLUMN_OFFSETS[offset];
 
-        try {//upper left index
-            dummyVariable = baseMatrix[index.getRow() - 1][index.getColumn() - 1];
-            neighbors.add(new Index(index.getRow() - 1, index.getColumn() - 1));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
+            if (neighborRow >= 0 && neighborRow < rows && neighborColumn >= 0 && neighborColumn < columns &&
+                    isOne(neighborRow, neighborColumn))
+                consumer.accept(neighborRow, neighborColumn);
         }
-        try {//lower right index
-            dummyVariable = baseMatrix[index.getRow() + 1][index.getColumn() + 1];
-            neighbors.add(new Index(index.getRow() + 1, index.getColumn() + 1));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
+    }
+
+    /**
+     * Visits all the neighbors of a cell, where cells are identified by (row * columns + column).
+     *
+     * @param cell     The cell id.
+     * @param consumer The consumer which receives the id of each neighbor.
+     */
+    public void forEachNeighborCell(int cell, @NotNull IntConsumer consumer) {
+        int row = cell / columns;
+        int column = cell - row * columns;
+
+        for (int offset = 0; offset < NEIGHBORS_AMOUNT; offset++) {
+            int neighborRow = row + ROW_OFFSETS[offset];
+            int neighborColumn = column + COLUMN_OFFSETS[offset];
+
+            if (neighborRow >= 0 && neighborRow < rows && neighborColumn >= 0 && neighborColumn < columns)
+                consumer.accept(neighborRow * columns + neighborColumn);
         }
-        try {//upper right index
-            dummyVariable = baseMatrix[index.getRow() - 1][index.getColumn() + 1];
-            neighbors.add(new Index(index.getRow() - 1, index.getColumn() + 1));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
+    }
+
+    /**
+     * Visits the neighbors with value 1 of a cell, where cells are identified by (row * columns + column).
+     *
+     * @param cell     The cell id.
+     * @param consumer The consumer which receives the id of each neighbor with value 1.
+     */
+    public void forEachOneNeighborCell(int cell, @NotNull IntConsumer consumer) {
+        int row = cell / columns;
+        int column = cell - row * columns;
+
+        for (int offset = 0; offset < NEIGHBORS_AMOUNT; offset++) {
+            int neighborRow = row + ROW_OFFSETS[offset];
+            int neighborColumn = column + COLUMN_OFFSETS[offset];
+
+            if (neighborRow >= 0 && neighborRow < rows && neighborColumn >= 0 && neighborColumn < columns &&
+                    isOne(neighborRow, neighborColumn))
+                consumer.accept(neighborRow * columns + neighborColumn);
         }
-        try {//lower left index
-            dummyVariable = baseMatrix[index.getRow() + 1][index.getColumn() - 1];
-            neighbors.add(new Index(index.getRow() + 1, index.getColumn() - 1));
-        } catch (IndexOutOfBoundsException | IllegalArgumentException ignore) {
+    }
+
+    /**
+     * Visits the neighbors of a cell from the offsets table, in the range [fromOffset, toOffset).
+     */
+    private void forEachNeighbor(int row, int column, int fromOffset, int toOffset, CellConsumer consumer) {
+        for (int offset = fromOffset; offset < toOffset; offset++) {
+            int neighborRow = row + ROW_OFFSETS[offset];
+            int neighborColumn = column + COLUMN_OFFSETS[offset];
+
+            if (neighborRow >= 0 && neighborRow < rows && neighborColumn >= 0 && neighborColumn < columns)
+                consumer.accept(neighborRow, neighborColumn);
         }
-        return neighbors;
     }
 
     /**
@@ -133,13 +283,136 @@ public class Matrix implements Serializable {
     public List<Index> getIndicesOfOnes() {
         List<Index> onesList = new ArrayList<>();
 
-        for (int i = 0; i < baseMatrix.length; i++) {
-            for (int j = 0; j < baseMatrix.length; j++) {
-                if (baseMatrix[i][j] == 1)
-                    onesList.add(new Index(i, j));
+        forEachOne((row, column) -> onesList.add(new Index(row, column)));
+        return onesList;
+    }
+
+    /**
+     * Visits every cell with value 1, row by row, without creating {@link Index} objects.
+     *
+     * @param consumer The consumer which receives the row & column of each cell.
+     */
+    public void forEachOne(@NotNull CellConsumer consumer) {
+        forEachOne(0, rows, consumer);
+    }
+
+    /**
+     * Visits every cell with value 1 in the given range of rows, row by row.
+     *
+     * @param fromRow  The first row (inclusive).
+     * @param toRow    The last row (exclusive).
+     * @param consumer The consumer which receives the row & column of each cell.
+     */
+    public void forEachOne(int fromRow, int toRow, @NotNull CellConsumer consumer) {
+        //each row is packed into bits, and only the set bits are visited - like the rows of a BinaryMatrix
+        long[] words = new long[(columns + Long.SIZE - 1) / Long.SIZE];
+
+        for (int row = fromRow; row < toRow; row++) {
+            Arrays.fill(words, 0);
+            KERNELS.packBits(baseMatrix[row], columns, words, 0);
+
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+
+                while (bits != 0) {
+                    consumer.accept(row, (word << 6) + Long.numberOfTrailingZeros(bits));
+                    //clearing the lowest set bit
+                    bits &= bits - 1;
+                }
             }
         }
-        return onesList;
+    }
+
+    /**
+     * @return Amount of cells with value 1.
+     */
+    public int countOnes() {
+        int counter = 0;
+
+        for (int[] row : baseMatrix)
+            counter += KERNELS.count(row, 1, 0, row.length);
+        return counter;
+    }
+
+    /**
+     * Returns the summed-area table of the ones of the matrix.<br>
+     * The table is built once, by the first caller, and kept with the matrix.
+     *
+     * @param pool The pool which sums the tiles of a large matrix, if the table isn't built yet.
+     * @return The summed-area table.
+     */
+    public SummedAreaTable getSummedAreaTable(@NotNull ForkJoinPool pool) {
+        SummedAreaTable table = summedAreaTable;
+
+        if (table == null) {
+            synchronized (this) {
+                table = summedAreaTable;
+
+                //concurrent queries of the same matrix wait for a single table
+                if (table == null)
+                    summedAreaTable = table = new SummedAreaTable(this, pool);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Hashes the dimensions & values of the matrix with SHA-256, regardless of the way the matrix keeps its cells.<br>
+     * The hash is computed once and kept with the matrix, so looking up a result by the matrix content is O(1) after the first time.
+     *
+     * @return The 32 bytes hash.
+     */
+    public byte[] getContentDigest() {
+        byte[] digest = contentDigest;
+
+        //a race only hashes the same cells twice
+        if (digest == null)
+            contentDigest = digest = computeContentDigest();
+        return digest.clone();
+    }
+
+    private byte[] computeContentDigest() {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * Math.max(2, columns));
+        buffer.putInt(rows).putInt(columns);
+        digest.update(buffer.array(), 0, buffer.position());
+
+        for (int row = 0; row < rows; row++) {
+            buffer.clear();
+
+            for (int column = 0; column < columns; column++)
+                buffer.putInt(getValue(row, column));
+            digest.update(buffer.array(), 0, buffer.position());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * An estimation of the heap memory that the matrix takes (object & array headers included).
+     *
+     * @return Estimated size in bytes.
+     */
+    public long getSizeInBytes() {
+        //16 bytes for each array header, 4 bytes for each cell
+        return 16 + 16 + (long) rows * (16 + (long) Integer.BYTES * columns);
+    }
+
+    /**
+     * @return The smallest value in the matrix, or 0 if the matrix is empty.
+     */
+    public int getMinValue() {
+        int minValue = rows * columns == 0 ? 0 : Integer.MAX_VALUE;
+
+        for (int[] row : baseMatrix)
+            minValue = Math.min(minValue, KERNELS.min(row, 0, row.length));
+        return minValue;
     }
 
     @Override
@@ -147,7 +420,7 @@ public class Matrix implements Serializable {
         //Using StringBuilder to create & return a String representation of the matrix.
         StringBuilder sb = new StringBuilder();
 
-        for (int[] row : this.baseMatrix)
+        for (int[] row : getBaseMatrix())
             sb.append(Arrays.toString(row)).append("\n");
 
         return sb.toString();
@@ -0,0 +1,78 @@
+package components;
+
+/**
+ * The element-wise loops over the int rows of a matrix, which every scan of the cells goes through.<br>
+ * Two implementations are chosen from at runtime:<br>
+ * - Vector kernels, which compare & count a whole SIMD register of cells at a time with the incubating Vector API.<br>
+ * They are used when the JVM runs with {@code --add-modules jdk.incubator.vector}, and the CPU has SIMD registers.<br>
+ * - Scalar kernels, which are used otherwise, or when the {@value #VECTOR_PROPERTY} system property is false.<br>
+ * <br>
+ * The vector kernels are loaded reflectively, so this class (and the scalar kernels) never link against the incubator module.
+ */
+public abstract class RowKernels {
+    public static final String VECTOR_PROPERTY = "matrix.vector.enabled";
+
+    private static final String VECTOR_KERNELS_CLASS = "components.VectorRowKernels";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final RowKernels KERNELS = load();
+
+    /**
+     * @return The kernels which were chosen for this JVM.
+     */
+    public static RowKernels get() {
+        return KERNELS;
+    }
+
+    private static RowKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true")) || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty())
+            return new ScalarRowKernels();
+
+        try {
+            return (RowKernels) Class.forName(VECTOR_KERNELS_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            //the vector kernels weren't compiled, or there are no SIMD registers to run them on
+            return new ScalarRowKernels();
+        }
+    }
+
+    /**
+     * @return A short description of the kernels, for logs.
+     */
+    public abstract String getName();
+
+    /**
+     * @param row   The row.
+     * @param value The value to count.
+     * @param from  The first column (inclusive).
+     * @param to    The last column (exclusive).
+     * @return Amount of columns in the range which hold the value.
+     */
+    public abstract int count(int[] row, int value, int from, int to);
+
+    /**
+     * @param row  The row.
+     * @param from The first column (inclusive).
+     * @param to   The last column (exclusive).
+     * @return The smallest value in the range, or {@link Integer#MAX_VALUE} if the range is empty.
+     */
+    public abstract int min(int[] row, int from, int to);
+
+    /**
+     * @param row  The row.
+     * @param from The first column (inclusive).
+     * @param to   The last column (exclusive).
+     * @return true if all the values in the range are 0 or 1.
+     */
+    public abstract boolean isBinary(int[] row, int from, int to);
+
+    /**
+     * Packs the ones of a row into bits - column {@code c} sets bit {@code c % 64} of word {@code offset + c / 64}.<br>
+     * Values other than 1 are packed as 0.
+     *
+     * @param row     The row.
+     * @param columns Amount of columns to pack.
+     * @param words   The words to set the bits in.
+     * @param offset  The word of the first column.
+     */
+    public abstract void packBits(int[] row, int columns, long[] words, int offset);
+}
@@ -0,0 +1,52 @@
+package components;
+
+/**
+ * The {@link RowKernels} as plain loops, which run on every JVM.
+ */
+class ScalarRowKernels extends RowKernels {
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public int count(int[] row, int value, int from, int to) {
+        int counter = 0;
+
+        for (int column = from; column < to; column++) {
+            if (row[column] == value)
+                counter++;
+        }
+        return counter;
+    }
+
+    @Override
+    public int min(int[] row, int from, int to) {
+        int minValue = Integer.MAX_VALUE;
+
+        for (int column = from; column < to; column++)
+            minValue = Math.min(minValue, row[column]);
+        return minValue;
+    }
+
+    @Override
+    public boolean isBinary(int[] row, int from, int to) {
+        for (int column = from; column < to; column++) {
+            if ((row[column] & ~1) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void packBits(int[] row, int columns, long[] words, int offset) {
+        for (int word = 0; word << 6 < columns; word++) {
+            long bits = 0;
+
+            //without branches, since the ones of a row are usually unpredictable
+            for (int column = word << 6; column < Math.min(columns, (word + 1) << 6); column++)
+                bits |= (row[column] == 1 ? 1L : 0L) << column;
+            words[offset + word] |= bits;
+        }
+    }
+}
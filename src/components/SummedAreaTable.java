@@ -0,0 +1,165 @@
+package components;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * A 2D prefix-sums index of the ones of a {@link Matrix}, which counts the ones of any rectangle in O(1).<br>
+ * Entry (row, column) of the table holds the amount of ones above & to the left of the cell (exclusive),<br>
+ * so the table has an extra zero row & column, and a rectangle is counted by 4 lookups.<br>
+ * <br>
+ * Large matrices are summed in parallel, tile by tile of rows:<br>
+ * - Each tile sums its own rows, as if it was the top of the matrix.<br>
+ * - The last rows of the tiles are carried down sequentially, so each one holds the sums of all the rows above it.<br>
+ * - Each tile adds the carried row of the previous tile to the rest of its rows.
+ */
+public class SummedAreaTable {
+    //smaller matrices are summed sequentially, since forking costs more than summing them
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int TILES_PER_THREAD = 4;
+
+    private final int rows;
+    private final int columns;
+    private final int[] sums;
+
+    /**
+     * Sums the ones of a matrix.
+     *
+     * @param matrix The matrix.
+     * @param pool   The pool which sums the tiles of large matrices.
+     */
+    public SummedAreaTable(@NotNull Matrix matrix, @NotNull ForkJoinPool pool) {
+        this.rows = matrix.getRows();
+        this.columns = matrix.getColumns();
+
+        long tableSize = (long) (rows + 1) * (columns + 1);
+
+        if (tableSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Matrix of " + rows + "x" + columns + " is too large to be summed");
+
+        this.sums = new int[(int) tableSize];
+
+        int tilesCount = (long) rows * columns < PARALLEL_THRESHOLD ? 1
+                : Math.min(rows, pool.getParallelism() * TILES_PER_THREAD);
+
+        if (tilesCount == 1) {
+            sumTile(matrix, 0, rows);
+            return;
+        }
+        int tileRows = (rows + tilesCount - 1) / tilesCount;
+
+        forEachTile(pool, tilesCount, tile -> sumTile(matrix, tile * tileRows, Math.min(rows, (tile + 1) * tileRows)));
+
+        //the last row of a tile holds its own sums, the previous last row adds the sums of all the rows above it
+        for (int tile = 1; tile < tilesCount && tile * tileRows < rows; tile++)
+            addRow(Math.min(rows, (tile + 1) * tileRows), tile * tileRows);
+
+        forEachTile(pool, tilesCount, tile -> {
+            for (int row = tile * tileRows + 1; tile > 0 && row < Math.min(rows, (tile + 1) * tileRows); row++)
+                addRow(row, tile * tileRows);
+        });
+    }
+
+    /**
+     * Sums the rows of a tile, without the rows above it.
+     *
+     * @param matrix  The matrix.
+     * @param fromRow The first row of the tile (inclusive).
+     * @param toRow   The last row of the tile (exclusive).
+     */
+    private void sumTile(Matrix matrix, int fromRow, int toRow) {
+        int width = columns + 1;
+
+        matrix.forEachOne(fromRow, toRow, (row, column) -> sums[(row + 1) * width + column + 1] = 1);
+
+        for (int row = fromRow + 1; row <= toRow; row++) {
+            int rowSum = 0;
+
+            for (int entry = row * width + 1; entry < (row + 1) * width; entry++) {
+                rowSum += sums[entry];
+                //the first row of a tile has no rows above it yet
+                sums[entry] = row == fromRow + 1 ? rowSum : rowSum + sums[entry - width];
+            }
+        }
+    }
+
+    /**
+     * Adds the entries of a table row to another table row.
+     *
+     * @param row      The table row to add to.
+     * @param addedRow The table row to add.
+     */
+    private void addRow(int row, int addedRow) {
+        int width = columns + 1;
+
+        for (int column = 1; column < width; column++)
+            sums[row * width + column] += sums[addedRow * width + column];
+    }
+
+    private static void forEachTile(ForkJoinPool pool, int tilesCount, IntConsumer tileAction) {
+        List<ForkJoinTask<?>> tiles = new ArrayList<>(tilesCount);
+
+        for (int tile = 0; tile < tilesCount; tile++) {
+            int aTile = tile;
+            tiles.add(ForkJoinTask.adapt(() -> tileAction.accept(aTile)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tiles)));
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Counts the ones of a rectangle of the matrix.
+     *
+     * @param fromRow    The top row of the rectangle (inclusive).
+     * @param fromColumn The left column of the rectangle (inclusive).
+     * @param toRow      The bottom row of the rectangle (inclusive).
+     * @param toColumn   The right column of the rectangle (inclusive).
+     * @return Amount of cells with value 1 in the rectangle.
+     * @throws IndexOutOfBoundsException If the rectangle isn't within the matrix.
+     * @throws IllegalArgumentException  If the rectangle is empty.
+     */
+    public int countOnes(int fromRow, int fromColumn, int toRow, int toColumn) {
+        if (fromRow < 0 || fromColumn < 0 || toRow >= rows || toColumn >= columns)
+            throw new IndexOutOfBoundsException("Rectangle (" + fromRow + "," + fromColumn + ") - (" + toRow + "," + toColumn +
+                    ") is out of the matrix bounds");
+        if (fromRow > toRow || fromColumn > toColumn)
+            throw new IllegalArgumentException("Rectangle top left corner must be above & to the left of its bottom right corner");
+
+        int width = columns + 1;
+
+        return sums[(toRow + 1) * width + toColumn + 1] - sums[fromRow * width + toColumn + 1]
+                - sums[(toRow + 1) * width + fromColumn] + sums[fromRow * width + fromColumn];
+    }
+
+    /**
+     * @param fromRow    The top row of the rectangle (inclusive).
+     * @param fromColumn The left column of the rectangle (inclusive).
+     * @param toRow      The bottom row of the rectangle (inclusive).
+     * @param toColumn   The right column of the rectangle (inclusive).
+     * @return true if all the cells of the rectangle have the value 1.
+     */
+    public boolean isAllOnes(int fromRow, int fromColumn, int toRow, int toColumn) {
+        return countOnes(fromRow, fromColumn, toRow, toColumn) == (toRow - fromRow + 1) * (toColumn - fromColumn + 1);
+    }
+
+    /**
+     * An estimation of the heap memory that the table takes (object & array headers included).
+     *
+     * @return Estimated size in bytes.
+     */
+    public long getSizeInBytes() {
+        return 16 + 16 + (long) Integer.BYTES * sums.length;
+    }
+}
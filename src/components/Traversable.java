@@ -3,26 +3,14 @@ package components;
 import java.util.Collection;
 
 /**
- * This interface gives a matrix the abilities of a graph
+ * This interface gives a matrix the abilities of a graph.<br>
+ * The graph keeps no state of a query - the source & destination of each traversal are passed to the algorithm,<br>
+ * so many traversals can run over the same graph at the same time.
  */
 public interface Traversable<T> {
-    Node<T> getRoot();
-
     Collection<Node<T>> getReachableNodes(Node<T> node);
 
     Collection<Node<T>> getNeighbors(Node<T> node);
 
-    void setSource(Index index);
-
-    Index getSourceIndex();
-
-    Node<Index> getSourceNode();
-
-    void setDestination(Index index);
-
-    Index getDestinationIndex();
-
-    Node<Index> getDestinationNode();
-
     int getValue(Node<T> node);
 }
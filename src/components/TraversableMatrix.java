@@ -6,69 +6,25 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 /**
  * This class implements the Adapter pattern.<br>
- * The class adapts a matrix object to the functionality of the Graph interface.
+ * The class adapts a matrix object to the functionality of the Graph interface.<br>
+ * As an {@link IntTraversable}, each cell is a node with the id (row * columns + column).<br>
+ * The adapter is immutable, so a single instance can be shared by concurrent traversals.
  */
-public class TraversableMatrix implements Traversable<Index>, Serializable {
+public class TraversableMatrix implements Traversable<Index>, IntTraversable<Index>, Serializable {
     private final Matrix matrix;
-    private Index source;
-    private Index destination;
 
     public TraversableMatrix(@NotNull Matrix matrix) {
         this.matrix = matrix;
-        this.source = new Index(0, 0);
-    }
-
-    public TraversableMatrix(@NotNull Matrix matrix, Index source, Index destination) {
-        this.matrix = matrix;
-        setSource(source);
-        setDestination(destination);
     }
 
     public Matrix getMatrix() {
         return matrix;
     }
 
-    @Override
-    public Index getSourceIndex() {
-        return source;
-    }
-
-    @Override
-    public void setSource(@NotNull Index source) {
-        if (validateIndex(source))
-            this.source = source;
-        else
-            throw new IndexOutOfBoundsException("Index " + source + " is out of bounds");
-    }
-
-    @Override
-    public Index getDestinationIndex() throws NullPointerException {
-        if (this.destination == null) throw new NullPointerException("Destination Index is not initialized");
-        return this.destination;
-    }
-
-    @Override
-    public void setDestination(@NotNull Index destination) {
-        if (validateIndex(destination))
-            this.destination = destination;
-        else
-            throw new IndexOutOfBoundsException("Index " + destination + " is out of bounds");
-    }
-
-    @Override
-    public Node<Index> getSourceNode() {
-        return new Node<>(this.source);
-    }
-
-    @Override
-    public Node<Index> getDestinationNode() {
-        //by calling 'getDestinationIndex' we can trigger an exception if destination is null
-        return new Node<>(getDestinationIndex());
-    }
-
     @Override
     public int getValue(Node<Index> node) {
         return this.matrix.getValue(node.getData());
@@ -81,13 +37,8 @@ public class TraversableMatrix implements Traversable<Index>, Serializable {
      * @return true if index within matrix boundaries, false otherwise
      */
     public boolean validateIndex(@NotNull Index index) {
-        return (index.getRow() >= 0 && index.getRow() < matrix.getBaseMatrix().length) &&
-                (index.getColumn() >= 0 && index.getColumn() < matrix.getBaseMatrix()[0].length);
-    }
-
-    @Override
-    public Node<Index> getRoot() {
-        return new Node<>(source);
+        return (index.getRow() >= 0 && index.getRow() < matrix.getRows()) &&
+                (index.getColumn() >= 0 && index.getColumn() < matrix.getColumns());
     }
 
     /**
@@ -99,34 +50,93 @@ public class TraversableMatrix implements Traversable<Index>, Serializable {
     @Override
     public Collection<Node<Index>> getReachableNodes(@NotNull Node<Index> node) {
         List<Node<Index>> reachableNodes = new ArrayList<>();
+        Index index = node.getData();
 
         //if node data is 0, it means that it can't reach other nodes, hence an empty list is returned
-        if (matrix.getValue(node.getData()) == 1) {
+        if (matrix.getValue(index) == 1) {
             reachableNodes.add(node);
-
-            for (Index neighbor : this.matrix.getNeighbors(node.getData())) {
-                if (matrix.getValue(neighbor) == 1) {
-                    reachableNodes.add(new Node<>(neighbor, node));
-                }
-            }
+            forEachReachableNeighbor(index.getRow(), index.getColumn(),
+                    (row, column) -> reachableNodes.add(new Node<>(new Index(row, column), node)));
         }
         return reachableNodes;
     }
 
+    /**
+     * Visits all the neighbors with value 1 of a given cell, without allocating any objects.<br>
+     * Cells with value 0 can't reach other cells, hence no neighbors are visited for them.
+     *
+     * @param row      The row of the cell.
+     * @param column   The column of the cell.
+     * @param consumer The consumer which receives the row & column of each reachable neighbor.
+     */
+    public void forEachReachableNeighbor(int row, int column, @NotNull CellConsumer consumer) {
+        if (!matrix.isOne(row, column))
+            return;
+
+        matrix.forEachOneNeighbor(row, column, consumer);
+    }
+
     @Override
     public Collection<Node<Index>> getNeighbors(@NotNull Node<Index> node) {
         List<Node<Index>> neighbors = new ArrayList<>();
+        Index index = node.getData();
 
-        for (Index index : this.matrix.getNeighbors(node.getData())) {
-            Node<Index> indexNode = new Node<>(index, node);
-            neighbors.add(indexNode);
-        }
+        matrix.forEachNeighbor(index.getRow(), index.getColumn(),
+                (row, column) -> neighbors.add(new Node<>(new Index(row, column), node)));
         return neighbors;
     }
 
+    @Override
+    public int getNodesAmount() {
+        return matrix.getRows() * matrix.getColumns();
+    }
+
+    @Override
+    public int toNodeId(@NotNull Index index) {
+        return index.getRow() * matrix.getColumns() + index.getColumn();
+    }
+
+    @Override
+    public Index fromNodeId(int node) {
+        return new Index(node / matrix.getColumns(), node % matrix.getColumns());
+    }
+
+    @Override
+    public int getValue(int node) {
+        return matrix.getValue(node / matrix.getColumns(), node % matrix.getColumns());
+    }
+
+    /**
+     * Visits the neighbors with value 1 of a given node, or nothing if the value of the node is 0.
+     */
+    @Override
+    public void forEachReachableNode(int node, @NotNull IntConsumer consumer) {
+        if (getValue(node) == 1)
+            matrix.forEachOneNeighborCell(node, consumer);
+    }
+
+    @Override
+    public void forEachNeighbor(int node, @NotNull IntConsumer consumer) {
+        matrix.forEachNeighborCell(node, consumer);
+    }
+
+    /**
+     * The octile distance between two nodes when a diagonal step costs the same as a straight step,<br>
+     * which is the least amount of steps between them (the distance ignores the values of the matrix).
+     *
+     * @param node      The first node id.
+     * @param otherNode The second node id.
+     * @return The least amount of steps from one node to the other.
+     */
+    public int octileDistance(int node, int otherNode) {
+        int columns = matrix.getColumns();
+
+        return Math.max(Math.abs(node / columns - otherNode / columns),
+                Math.abs(node % columns - otherNode % columns));
+    }
+
     @Override
     public String toString() {
-        return "Source: " + source.toString() + "\n" +
-                "Matrix:\n" + matrix.toString();
+        return "Matrix:\n" + matrix.toString();
     }
 }
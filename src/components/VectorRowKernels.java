@@ -0,0 +1,94 @@
+package components;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link RowKernels} with the Vector API - each step loads a whole SIMD register of cells,<br>
+ * compares them to a mask, and counts or locates the set lanes. The tail of a row which doesn't fill a register<br>
+ * is done by the scalar loops.<br>
+ * This class is compiled & loaded only with the {@code jdk.incubator.vector} module, see {@link RowKernels#get()}.
+ */
+class VectorRowKernels extends ScalarRowKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    //narrower registers don't pay for the masks
+    private static final int MIN_LANES = 4;
+    private static final IntVector ZERO = IntVector.zero(SPECIES);
+    //lane i holds bit i
+    private static final IntVector LANE_BITS = laneBits();
+
+    VectorRowKernels() {
+        //the lanes bits are packed into an int
+        if (SPECIES.length() < MIN_LANES || SPECIES.length() > Integer.SIZE)
+            throw new UnsupportedOperationException(SPECIES.length() + " int lanes in a vector register aren't supported");
+    }
+
+    private static IntVector laneBits() {
+        int[] bits = new int[SPECIES.length()];
+
+        for (int lane = 0; lane < bits.length && lane < Integer.SIZE; lane++)
+            bits[lane] = 1 << lane;
+        return IntVector.fromArray(SPECIES, bits, 0);
+    }
+
+    /**
+     * Packs a mask into an int - bit i is set if lane i is set.<br>
+     * The bits of the set lanes are or-ed across the register, which is faster than the conversions of the mask itself.
+     */
+    private static int laneBits(VectorMask<Integer> mask) {
+        return ZERO.blend(LANE_BITS, mask).reduceLanes(VectorOperators.OR);
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " int lanes)";
+    }
+
+    @Override
+    public int count(int[] row, int value, int from, int to) {
+        int column = from;
+        int counter = 0;
+
+        for (int bound = from + SPECIES.loopBound(to - from); column < bound; column += SPECIES.length())
+            counter += IntVector.fromArray(SPECIES, row, column).eq(value).trueCount();
+        return counter + super.count(row, value, column, to);
+    }
+
+    @Override
+    public int min(int[] row, int from, int to) {
+        int column = from;
+        IntVector minValues = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+
+        for (int bound = from + SPECIES.loopBound(to - from); column < bound; column += SPECIES.length())
+            minValues = minValues.min(IntVector.fromArray(SPECIES, row, column));
+        return Math.min(minValues.reduceLanes(VectorOperators.MIN), super.min(row, column, to));
+    }
+
+    @Override
+    public boolean isBinary(int[] row, int from, int to) {
+        int column = from;
+
+        for (int bound = from + SPECIES.loopBound(to - from); column < bound; column += SPECIES.length()) {
+            //any bit other than the lowest one means a value other than 0 & 1
+            if (IntVector.fromArray(SPECIES, row, column).and(~1).compare(VectorOperators.NE, 0).anyTrue())
+                return false;
+        }
+        return super.isBinary(row, column, to);
+    }
+
+    @Override
+    public void packBits(int[] row, int columns, long[] words, int offset) {
+        int column = 0;
+
+        //the lanes count divides 64, so the lanes of a register always fall in the same word
+        for (int bound = SPECIES.loopBound(columns); column < bound; column += SPECIES.length()) {
+            int ones = laneBits(IntVector.fromArray(SPECIES, row, column).eq(1));
+            words[offset + (column >>> 6)] |= Integer.toUnsignedLong(ones) << column;
+        }
+
+        for (; column < columns; column++)
+            words[offset + (column >>> 6)] |= (row[column] == 1 ? 1L : 0L) << column;
+    }
+}